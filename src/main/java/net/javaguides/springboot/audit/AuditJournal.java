@@ -0,0 +1,447 @@
+package net.javaguides.springboot.audit;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import net.javaguides.springboot.event.EmployeeChangedEvent;
+import net.javaguides.springboot.model.Employee;
+
+/**
+ * Append-only audit trail of employee changes in memory-mapped segment files on local disk.
+ *
+ * Every record takes a fixed 256-byte slot, so record n lives at a known position and a
+ * writer only has to claim a sequence number from an {@link AtomicLong} to own its slot;
+ * appends from many threads never wait for each other. The slot's segment is made to exist
+ * before the number is claimed (a compare-and-set, retried if another writer got there
+ * first), and a write that fails marks its slot skipped, so a failed append never leaves a
+ * hole that readers would stop at. A record becomes visible to readers when its state word
+ * is set with release semantics, after the rest of it has been written. Slots that were
+ * claimed but never written (the process died mid-append) are marked skipped when the
+ * journal is reopened.
+ *
+ * Appends from the change listener run after the commit and must not fail it, so their
+ * failures are logged and counted in employees.audit.append.failures instead of thrown.
+ *
+ * Segments hold a fixed number of slots each and are created as sequences reach them. A
+ * background thread forces dirty segments to disk every force interval, so a mutation costs
+ * a memory write and the fsync is shared by every record of that interval; a crash of the
+ * machine (not just the process) can lose the records of the last interval.
+ *
+ * Compaction only ever drops whole segments that are entirely older than a sequence number,
+ * e.g. once they have been shipped to long-term storage; records are never rewritten.
+ *
+ * Layout of a record (big-endian):
+ * <pre>
+ *   0  int   state: 0 empty, 1 written, 2 skipped
+ *   4  byte  type (EmployeeChangedEvent.Type ordinal)
+ *   5  byte  flags: 1 = values truncated
+ *   8  long  sequence
+ *  16  long  timestamp (epoch millis)
+ *  24  long  employee id
+ *  32  long  64-bit FNV-1a hash of the full first name, last name and email
+ *  40  first name, last name, email: each a 2-byte length and UTF-8 bytes, 216 bytes in all
+ * </pre>
+ */
+public class AuditJournal {
+
+    private static final Logger log = LoggerFactory.getLogger(AuditJournal.class);
+
+    static final int RECORD_BYTES = 256;
+
+    private static final int VALUES_OFFSET = 40;
+
+    private static final int VALUES_BYTES = RECORD_BYTES - VALUES_OFFSET;
+
+    private static final int EMPTY = 0;
+
+    private static final int WRITTEN = 1;
+
+    private static final int SKIPPED = 2;
+
+    private static final byte TRUNCATED = 1;
+
+    private static final String SUFFIX = ".audit";
+
+    private static final VarHandle STATE = MethodHandles.byteBufferViewVarHandle(int[].class, ByteOrder.BIG_ENDIAN);
+
+    private static final EmployeeChangedEvent.Type[] TYPES = EmployeeChangedEvent.Type.values();
+
+    private final Path directory;
+
+    private final int recordsPerSegment;
+
+    // keyed by the sequence of the segment's first slot
+    private final ConcurrentSkipListMap<Long, Segment> segments = new ConcurrentSkipListMap<>();
+
+    private final AtomicLong nextSequence = new AtomicLong();
+
+    private volatile Segment current;
+
+    private final Counter appendFailures;
+
+    private final ScheduledExecutorService flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "employee-audit-flush");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public AuditJournal(Path directory, int recordsPerSegment, long forceIntervalMillis, MeterRegistry meterRegistry)
+            throws IOException {
+        this.directory = directory;
+        this.recordsPerSegment = recordsPerSegment;
+        this.appendFailures = Counter.builder("employees.audit.append.failures").register(meterRegistry);
+        Files.createDirectories(directory);
+        recover();
+        flusher.scheduleWithFixedDelay(this::forceQuietly, forceIntervalMillis, forceIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onEmployeeChanged(EmployeeChangedEvent event) {
+        // the instance that made a remote change has journaled it already
+        if (event.isRemote()) {
+            return;
+        }
+        try {
+            append(event.getType(), event.getEmployeeId(), event.getEmployee());
+        } catch (RuntimeException e) {
+            appendFailures.increment();
+            log.error("Could not journal {} of employee {}", event.getType(), event.getEmployeeId(), e);
+        }
+    }
+
+    /**
+     * Appends one record and returns its sequence number. {@code employee} may be null
+     * (deletes).
+     */
+    public long append(EmployeeChangedEvent.Type type, long employeeId, Employee employee) {
+        long sequence;
+        Segment segment;
+        do {
+            sequence = nextSequence.get();
+            // throws before anything is claimed if the segment cannot be created
+            segment = segmentFor(sequence);
+        } while (!nextSequence.compareAndSet(sequence, sequence + 1));
+        int offset = (int) (sequence - segment.firstSequence) * RECORD_BYTES;
+        try {
+            segment.write(offset, sequence, type, employeeId, employee);
+        } catch (RuntimeException e) {
+            segment.skip(offset);
+            throw e;
+        }
+        return sequence;
+    }
+
+    /**
+     * Returns up to {@code max} records starting at {@code fromSequence}, in order. Records
+     * removed by compaction are skipped; reading stops early at a record that is still being
+     * written, so callers continue from the last returned sequence + 1.
+     */
+    public List<AuditRecord> read(long fromSequence, int max) {
+        List<AuditRecord> records = new ArrayList<>(Math.min(max, 1024));
+        long end = nextSequence.get();
+        long sequence = fromSequence;
+        while (records.size() < max && sequence < end) {
+            Map.Entry<Long, Segment> entry = segments.floorEntry(sequence);
+            if (entry == null || sequence >= entry.getValue().endSequence()) {
+                Long next = segments.higherKey(sequence);
+                if (next == null) {
+                    break;
+                }
+                sequence = next;
+                continue;
+            }
+            Segment segment = entry.getValue();
+            int offset = (int) (sequence - segment.firstSequence) * RECORD_BYTES;
+            int state = segment.state(offset);
+            if (state == EMPTY) {
+                break;
+            }
+            if (state == WRITTEN) {
+                records.add(segment.read(offset));
+            }
+            sequence++;
+        }
+        return records;
+    }
+
+    /**
+     * Replays every record from {@code fromSequence} that has been written so far.
+     */
+    public void replay(long fromSequence, Consumer<AuditRecord> consumer) {
+        long sequence = fromSequence;
+        List<AuditRecord> batch;
+        while (!(batch = read(sequence, 1024)).isEmpty()) {
+            batch.forEach(consumer);
+            sequence = batch.get(batch.size() - 1).getSequence() + 1;
+        }
+    }
+
+    public long getNextSequence() {
+        return nextSequence.get();
+    }
+
+    /**
+     * Deletes the segments whose records all have a sequence below {@code beforeSequence}.
+     * The segment currently written to is never deleted. Returns the number of records
+     * removed.
+     */
+    public long compact(long beforeSequence) throws IOException {
+        long removed = 0;
+        Segment writing = current;
+        for (Segment segment : segments.values()) {
+            if (segment.endSequence() > beforeSequence || segment == writing) {
+                break;
+            }
+            segments.remove(segment.firstSequence);
+            // a writer that still holds the buffer keeps its mapping valid until it lets go
+            Files.deleteIfExists(segment.path);
+            removed += segment.capacity;
+        }
+        return removed;
+    }
+
+    /**
+     * Forces every segment with unflushed records to disk.
+     */
+    public void force() {
+        for (Segment segment : segments.values()) {
+            if (segment.dirty) {
+                segment.dirty = false;
+                segment.buffer.force();
+            }
+        }
+    }
+
+    public void close() {
+        flusher.shutdown();
+        force();
+    }
+
+    private void forceQuietly() {
+        try {
+            force();
+        } catch (RuntimeException e) {
+            log.warn("Could not force the audit journal to disk", e);
+        }
+    }
+
+    private Segment segmentFor(long sequence) {
+        Segment segment = current;
+        if (segment != null && sequence >= segment.firstSequence && sequence < segment.endSequence()) {
+            return segment;
+        }
+        Map.Entry<Long, Segment> entry = segments.floorEntry(sequence);
+        if (entry != null && sequence < entry.getValue().endSequence()) {
+            return entry.getValue();
+        }
+        return createSegments(sequence);
+    }
+
+    // only taken once per segment's worth of appends
+    private synchronized Segment createSegments(long sequence) {
+        Segment last = segments.isEmpty() ? null : segments.lastEntry().getValue();
+        while (last == null || sequence >= last.endSequence()) {
+            long first = last == null ? 0 : last.endSequence();
+            try {
+                last = Segment.open(directory.resolve(String.format("%020d%s", first, SUFFIX)), first, recordsPerSegment);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Could not create audit segment", e);
+            }
+            segments.put(first, last);
+        }
+        Map.Entry<Long, Segment> entry = segments.floorEntry(sequence);
+        if (current == null || entry.getKey() > current.firstSequence) {
+            current = entry.getValue();
+        }
+        return entry.getValue();
+    }
+
+    private void recover() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path path : (Iterable<Path>) files.filter(file -> file.getFileName().toString().endsWith(SUFFIX))::iterator) {
+                String name = path.getFileName().toString();
+                long first = Long.parseLong(name.substring(0, name.length() - SUFFIX.length()));
+                int capacity = (int) (Files.size(path) / RECORD_BYTES);
+                segments.put(first, Segment.open(path, first, capacity));
+            }
+        }
+        if (segments.isEmpty()) {
+            return;
+        }
+        // a crash can leave claimed but unwritten slots behind the last written record,
+        // which may sit in the last segment or the one before it
+        long next = segments.firstKey();
+        for (Segment segment : segments.descendingMap().values()) {
+            long lastWritten = segment.lastWrittenSlot();
+            if (lastWritten >= 0) {
+                next = segment.firstSequence + lastWritten + 1;
+                break;
+            }
+        }
+        for (Segment segment : segments.headMap(next).descendingMap().values().stream().limit(2).toArray(Segment[]::new)) {
+            segment.skipEmptySlotsBefore(next);
+        }
+        nextSequence.set(next);
+        current = segments.floorEntry(next) != null ? segments.floorEntry(next).getValue() : null;
+        log.info("Opened audit journal in {} with {} segments, next sequence {}", directory, segments.size(), next);
+    }
+
+    private static final class Segment {
+
+        private final Path path;
+
+        private final long firstSequence;
+
+        private final int capacity;
+
+        private final MappedByteBuffer buffer;
+
+        private volatile boolean dirty;
+
+        private Segment(Path path, long firstSequence, int capacity, MappedByteBuffer buffer) {
+            this.path = path;
+            this.firstSequence = firstSequence;
+            this.capacity = capacity;
+            this.buffer = buffer;
+        }
+
+        static Segment open(Path path, long firstSequence, int capacity) throws IOException {
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE)) {
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, (long) capacity * RECORD_BYTES);
+                return new Segment(path, firstSequence, capacity, buffer);
+            }
+        }
+
+        long endSequence() {
+            return firstSequence + capacity;
+        }
+
+        int state(int offset) {
+            return (int) STATE.getAcquire(buffer, offset);
+        }
+
+        void write(int offset, long sequence, EmployeeChangedEvent.Type type, long employeeId, Employee employee) {
+            byte[] firstName = utf8(employee == null ? null : employee.getFirstName());
+            byte[] lastName = utf8(employee == null ? null : employee.getLastName());
+            byte[] email = utf8(employee == null ? null : employee.getEmail());
+            long hash = employee == null ? 0 : hash(firstName, lastName, email);
+            boolean truncated = firstName.length + lastName.length + email.length + 3 * Short.BYTES > VALUES_BYTES;
+            int fieldLimit = VALUES_BYTES / 3 - Short.BYTES;
+
+            ByteBuffer record = buffer.duplicate();
+            record.position(offset + Integer.BYTES);
+            record.put((byte) type.ordinal())
+                    .put(truncated ? TRUNCATED : 0)
+                    .putShort((short) 0)
+                    .putLong(sequence)
+                    .putLong(System.currentTimeMillis())
+                    .putLong(employeeId)
+                    .putLong(hash);
+            putField(record, firstName, truncated ? fieldLimit : firstName.length);
+            putField(record, lastName, truncated ? fieldLimit : lastName.length);
+            putField(record, email, truncated ? fieldLimit : email.length);
+            STATE.setRelease(buffer, offset, WRITTEN);
+            if (!dirty) {
+                dirty = true;
+            }
+        }
+
+        AuditRecord read(int offset) {
+            ByteBuffer record = buffer.duplicate();
+            record.position(offset + Integer.BYTES);
+            EmployeeChangedEvent.Type type = TYPES[record.get()];
+            boolean truncated = (record.get() & TRUNCATED) != 0;
+            record.getShort();
+            long sequence = record.getLong();
+            long timestamp = record.getLong();
+            long employeeId = record.getLong();
+            long hash = record.getLong();
+            return new AuditRecord(sequence, timestamp, type, employeeId,
+                    getField(record), getField(record), getField(record), truncated, hash);
+        }
+
+        long lastWrittenSlot() {
+            for (int slot = capacity - 1; slot >= 0; slot--) {
+                if (state(slot * RECORD_BYTES) != EMPTY) {
+                    return slot;
+                }
+            }
+            return -1;
+        }
+
+        void skip(int offset) {
+            STATE.setRelease(buffer, offset, SKIPPED);
+            dirty = true;
+        }
+
+        void skipEmptySlotsBefore(long sequence) {
+            int end = (int) Math.min(capacity, sequence - firstSequence);
+            for (int slot = 0; slot < end; slot++) {
+                if (state(slot * RECORD_BYTES) == EMPTY) {
+                    STATE.setRelease(buffer, slot * RECORD_BYTES, SKIPPED);
+                    dirty = true;
+                }
+            }
+        }
+
+        private static byte[] utf8(String value) {
+            return value == null ? new byte[0] : value.getBytes(StandardCharsets.UTF_8);
+        }
+
+        // cuts at a character boundary, never in the middle of a multi-byte sequence
+        private static void putField(ByteBuffer record, byte[] value, int limit) {
+            int length = Math.min(value.length, limit);
+            while (length < value.length && length > 0 && (value[length] & 0xC0) == 0x80) {
+                length--;
+            }
+            record.putShort((short) length).put(value, 0, length);
+        }
+
+        private static String getField(ByteBuffer record) {
+            byte[] value = new byte[record.getShort()];
+            record.get(value);
+            return new String(value, StandardCharsets.UTF_8);
+        }
+
+        private static long hash(byte[]... fields) {
+            long hash = 0xcbf29ce484222325L;
+            for (byte[] field : fields) {
+                for (byte b : field) {
+                    hash ^= b & 0xff;
+                    hash *= 0x100000001b3L;
+                }
+                // separator, so ("ab", "c") and ("a", "bc") differ
+                hash ^= 0xff;
+                hash *= 0x100000001b3L;
+            }
+            return hash;
+        }
+    }
+}
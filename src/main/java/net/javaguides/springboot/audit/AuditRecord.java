@@ -0,0 +1,33 @@
+package net.javaguides.springboot.audit;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import net.javaguides.springboot.event.EmployeeChangedEvent;
+
+/**
+ * One audited change, as read back from the journal. The name and email fields are empty
+ * for deletes, and may be cut short when together they don't fit in a record
+ * ({@link #isTruncated()}); {@link #getValuesHash()} is always computed from the full values.
+ */
+@Getter
+@AllArgsConstructor
+public class AuditRecord {
+
+    private final long sequence;
+
+    private final long timestampMillis;
+
+    private final EmployeeChangedEvent.Type type;
+
+    private final long employeeId;
+
+    private final String firstName;
+
+    private final String lastName;
+
+    private final String email;
+
+    private final boolean truncated;
+
+    private final long valuesHash;
+}
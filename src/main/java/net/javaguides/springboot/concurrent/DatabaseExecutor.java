@@ -0,0 +1,89 @@
+package net.javaguides.springboot.concurrent;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import javax.annotation.PreDestroy;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import net.javaguides.springboot.jfr.OperationRecording;
+
+/**
+ * Bounded pool that runs blocking database work off the Tomcat request threads. It has as
+ * many threads as the Hikari pool has connections, so queries queue here instead of inside
+ * the connection pool, and a slow database can no longer use up the HTTP threads.
+ *
+ * Publishes employees.db.queue (time waiting for a thread), employees.db.execution (time
+ * running) and queue/active gauges to the application's Micrometer registry. A JFR request
+ * recording attached to the submitting thread is carried over to the pool thread.
+ */
+@Component
+public class DatabaseExecutor {
+
+    private final ThreadPoolExecutor executor;
+
+    private final Timer queueTimer;
+
+    private final Timer executionTimer;
+
+    public DatabaseExecutor(@Value("${employees.db-executor.threads:${spring.datasource.hikari.maximum-pool-size:10}}") int threads,
+                            @Value("${employees.db-executor.queue-capacity:1000}") int queueCapacity,
+                            MeterRegistry meterRegistry) {
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), runnable -> {
+                    Thread thread = new Thread(runnable, "employee-db-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        this.queueTimer = Timer.builder("employees.db.queue")
+                .description("Time database work waited for an executor thread")
+                .register(meterRegistry);
+        this.executionTimer = Timer.builder("employees.db.execution")
+                .description("Time spent running database work")
+                .register(meterRegistry);
+        Gauge.builder("employees.db.queue.size", executor, pool -> pool.getQueue().size())
+                .register(meterRegistry);
+        Gauge.builder("employees.db.active", executor, ThreadPoolExecutor::getActiveCount)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Runs the task on the database pool. When the queue is full the returned future fails
+     * with a {@link RejectedExecutionException} instead of blocking the caller.
+     */
+    public <T> CompletableFuture<T> submit(Supplier<T> task) {
+        long queued = System.nanoTime();
+        OperationRecording recording = OperationRecording.current();
+        try {
+            return CompletableFuture.supplyAsync(() -> {
+                long started = System.nanoTime();
+                queueTimer.record(started - queued, TimeUnit.NANOSECONDS);
+                OperationRecording.attach(recording);
+                try {
+                    return task.get();
+                } finally {
+                    OperationRecording.detach();
+                    executionTimer.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+                }
+            }, executor);
+        } catch (RejectedExecutionException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+}
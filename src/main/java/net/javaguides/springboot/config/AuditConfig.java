@@ -0,0 +1,30 @@
+package net.javaguides.springboot.config;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import net.javaguides.springboot.audit.AuditJournal;
+
+/**
+ * Local audit journal of every employee change. Only active with employees.audit.enabled=true;
+ * each instance journals the changes it makes itself, in employees.audit.directory.
+ */
+@Configuration
+@ConditionalOnProperty(name = "employees.audit.enabled", havingValue = "true")
+public class AuditConfig {
+
+    @Bean(destroyMethod = "close")
+    public AuditJournal auditJournal(
+            @Value("${employees.audit.directory:audit}") String directory,
+            @Value("${employees.audit.records-per-segment:65536}") int recordsPerSegment,
+            @Value("${employees.audit.force-interval-ms:100}") long forceIntervalMillis,
+            MeterRegistry meterRegistry) throws IOException {
+        return new AuditJournal(Paths.get(directory), recordsPerSegment, forceIntervalMillis, meterRegistry);
+    }
+}
@@ -0,0 +1,36 @@
+package net.javaguides.springboot.config;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+/**
+ * Logs the time from JVM start to the first successfully answered request, the number that
+ * matters for autoscaling, once per process.
+ */
+@Component
+public class FirstRequestTimingFilter extends OncePerRequestFilter {
+
+    private static final Logger log = LoggerFactory.getLogger(FirstRequestTimingFilter.class);
+
+    private final AtomicBoolean reported = new AtomicBoolean();
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        filterChain.doFilter(request, response);
+        if (!reported.get() && response.getStatus() < 400 && reported.compareAndSet(false, true)) {
+            log.info("First successful request ({} {}) answered {} ms after JVM start",
+                    request.getMethod(), request.getRequestURI(), StartupTimingReporter.millisSinceJvmStart());
+        }
+    }
+}
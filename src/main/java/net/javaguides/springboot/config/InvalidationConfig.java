@@ -0,0 +1,51 @@
+package net.javaguides.springboot.config;
+
+import java.net.InetSocketAddress;
+import java.net.NetworkInterface;
+import java.net.SocketException;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import net.javaguides.springboot.invalidation.EmployeeInvalidationBus;
+import net.javaguides.springboot.invalidation.InvalidationTransport;
+import net.javaguides.springboot.invalidation.MulticastInvalidationTransport;
+import net.javaguides.springboot.service.EmployeeService;
+
+/**
+ * Cross-instance cache invalidation, for deployments that run several instances against one
+ * database. Only active with employees.invalidation.enabled=true. The transport defaults to
+ * UDP multicast; set employees.invalidation.transport to anything else and declare an
+ * {@link InvalidationTransport} bean to use another one.
+ */
+@Configuration
+@ConditionalOnProperty(name = "employees.invalidation.enabled", havingValue = "true")
+public class InvalidationConfig {
+
+    @Bean(destroyMethod = "close")
+    @ConditionalOnProperty(name = "employees.invalidation.transport", havingValue = "multicast", matchIfMissing = true)
+    public InvalidationTransport multicastInvalidationTransport(
+            @Value("${employees.invalidation.multicast.group:239.255.27.1}") String group,
+            @Value("${employees.invalidation.multicast.port:47231}") int port,
+            @Value("${employees.invalidation.multicast.interface:}") String interfaceName) throws SocketException {
+        NetworkInterface networkInterface = null;
+        if (!interfaceName.isEmpty()) {
+            networkInterface = NetworkInterface.getByName(interfaceName);
+            if (networkInterface == null) {
+                throw new IllegalArgumentException("No network interface named " + interfaceName);
+            }
+        }
+        return new MulticastInvalidationTransport(new InetSocketAddress(group, port), networkInterface);
+    }
+
+    @Bean(initMethod = "start", destroyMethod = "shutdown")
+    public EmployeeInvalidationBus employeeInvalidationBus(InvalidationTransport transport,
+            EmployeeService employeeService, ApplicationEventPublisher eventPublisher,
+            @Value("${employees.invalidation.flush-interval-ms:20}") long flushIntervalMillis,
+            @Value("${employees.invalidation.max-batch:256}") int maxBatch) {
+        return new EmployeeInvalidationBus(transport, employeeService, eventPublisher, flushIntervalMillis, maxBatch);
+    }
+}
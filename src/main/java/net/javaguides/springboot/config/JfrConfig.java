@@ -0,0 +1,37 @@
+package net.javaguides.springboot.config;
+
+import org.springframework.aop.Advisor;
+import org.springframework.aop.support.ComposablePointcut;
+import org.springframework.aop.support.DefaultPointcutAdvisor;
+import org.springframework.aop.support.RootClassFilter;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+
+import net.javaguides.springboot.jfr.EmployeeEventInterceptor;
+import net.javaguides.springboot.repository.EmployeeRepository;
+import net.javaguides.springboot.service.EmployeeService;
+
+/**
+ * Applies the JFR event interceptor to every employee service and repository bean. Both
+ * advisors run outside the transaction advice, so commit time is part of the events.
+ */
+@Configuration
+public class JfrConfig {
+
+    @Bean
+    public static Advisor employeeServiceEventAdvisor() {
+        return advisor(EmployeeService.class, new EmployeeEventInterceptor(false));
+    }
+
+    @Bean
+    public static Advisor employeeQueryEventAdvisor() {
+        return advisor(EmployeeRepository.class, new EmployeeEventInterceptor(true));
+    }
+
+    private static Advisor advisor(Class<?> type, EmployeeEventInterceptor interceptor) {
+        DefaultPointcutAdvisor advisor = new DefaultPointcutAdvisor(new ComposablePointcut(new RootClassFilter(type)), interceptor);
+        advisor.setOrder(Ordered.HIGHEST_PRECEDENCE);
+        return advisor;
+    }
+}
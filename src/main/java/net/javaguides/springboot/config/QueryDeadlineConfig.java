@@ -0,0 +1,31 @@
+package net.javaguides.springboot.config;
+
+import javax.sql.DataSource;
+
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import net.javaguides.springboot.resilience.QueryDeadlineDataSource;
+
+/**
+ * Wraps the application's DataSource so reads run under a
+ * {@link net.javaguides.springboot.resilience.QueryDeadline} get a JDBC query timeout,
+ * whichever path (Hibernate, JdbcTemplate) creates their statements.
+ */
+@Configuration
+public class QueryDeadlineConfig {
+
+    @Bean
+    public static BeanPostProcessor queryDeadlineDataSourcePostProcessor() {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (bean instanceof DataSource && !(bean instanceof QueryDeadlineDataSource)) {
+                    return new QueryDeadlineDataSource((DataSource) bean);
+                }
+                return bean;
+            }
+        };
+    }
+}
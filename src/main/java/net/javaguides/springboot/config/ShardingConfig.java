@@ -0,0 +1,59 @@
+package net.javaguides.springboot.config;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.sql.DataSource;
+
+import com.zaxxer.hikari.HikariDataSource;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import net.javaguides.springboot.resilience.QueryDeadlineDataSource;
+import net.javaguides.springboot.shard.ShardedEmployeeStore;
+
+/**
+ * Builds one pooled DataSource per entry of employees.sharding.urls and migrates each of
+ * them. Only active with employees.sharding.enabled=true, which also swaps in the sharded
+ * employee service.
+ *
+ * The in-memory view loads from the primary datasource, so it cannot be combined with
+ * sharding; startup fails if both are enabled.
+ */
+@Configuration
+@ConditionalOnProperty(name = "employees.sharding.enabled", havingValue = "true")
+public class ShardingConfig {
+
+    @Bean(destroyMethod = "shutdown")
+    public ShardedEmployeeStore shardedEmployeeStore(@Value("${employees.sharding.urls}") String[] urls,
+            @Value("${employees.sharding.username:${spring.datasource.username:}}") String username,
+            @Value("${employees.sharding.password:${spring.datasource.password:}}") String password,
+            @Value("${employees.view.enabled:false}") boolean viewEnabled) {
+        if (viewEnabled) {
+            throw new IllegalStateException(
+                    "employees.view.enabled=true is not supported with employees.sharding.enabled=true");
+        }
+        List<DataSource> dataSources = new ArrayList<>(urls.length);
+        for (String url : urls) {
+            dataSources.add(new QueryDeadlineDataSource(DataSourceBuilder.create()
+                    .type(HikariDataSource.class)
+                    .url(url.trim())
+                    .username(username)
+                    .password(password)
+                    .build()));
+        }
+        // the pools aren't beans; the store closes them on shutdown
+        ShardedEmployeeStore store = new ShardedEmployeeStore(dataSources);
+        try {
+            store.migrate();
+        } catch (RuntimeException e) {
+            store.shutdown();
+            throw e;
+        }
+        return store;
+    }
+}
@@ -0,0 +1,67 @@
+package net.javaguides.springboot.config;
+
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.boot.context.metrics.buffering.BufferingApplicationStartup;
+import org.springframework.boot.context.metrics.buffering.StartupTimeline;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.metrics.ApplicationStartup;
+import org.springframework.core.metrics.StartupStep;
+import org.springframework.stereotype.Component;
+
+/**
+ * Logs how long the main startup phases took once the application is ready. Phase timings
+ * come from the {@link BufferingApplicationStartup} installed in main(); without it (e.g. in
+ * tests) only the total time since JVM start is reported.
+ */
+@Component
+public class StartupTimingReporter {
+
+    private static final Logger log = LoggerFactory.getLogger(StartupTimingReporter.class);
+
+    // bean name -> label of the phase its instantiation stands for
+    private static final Map<String, String> BEAN_PHASES = new LinkedHashMap<>();
+
+    static {
+        BEAN_PHASES.put("dataSource", "Hikari data source");
+        BEAN_PHASES.put("flywayInitializer", "Flyway migrations (opens the first pool connection)");
+        BEAN_PHASES.put("entityManagerFactory", "JPA bootstrap");
+    }
+
+    @EventListener
+    public void onApplicationReady(ApplicationReadyEvent event) {
+        Map<String, Duration> phases = new LinkedHashMap<>();
+        ApplicationStartup applicationStartup = event.getApplicationContext().getApplicationStartup();
+        if (applicationStartup instanceof BufferingApplicationStartup) {
+            StartupTimeline timeline = ((BufferingApplicationStartup) applicationStartup).getBufferedTimeline();
+            for (StartupTimeline.TimelineEvent timelineEvent : timeline.getEvents()) {
+                StartupStep step = timelineEvent.getStartupStep();
+                if ("spring.context.refresh".equals(step.getName())) {
+                    phases.put("Context refresh", timelineEvent.getDuration());
+                } else if ("spring.beans.instantiate".equals(step.getName())) {
+                    for (StartupStep.Tag tag : step.getTags()) {
+                        if ("beanName".equals(tag.getKey()) && BEAN_PHASES.containsKey(tag.getValue())) {
+                            phases.put(BEAN_PHASES.get(tag.getValue()), timelineEvent.getDuration());
+                        }
+                    }
+                }
+            }
+        }
+
+        StringBuilder report = new StringBuilder("Startup timing:");
+        phases.forEach((phase, duration) -> report.append("\n  ").append(phase).append(": ")
+                .append(duration.toMillis()).append(" ms"));
+        report.append("\n  Ready after: ").append(millisSinceJvmStart()).append(" ms since JVM start");
+        log.info(report.toString());
+    }
+
+    static long millisSinceJvmStart() {
+        return System.currentTimeMillis() - ManagementFactory.getRuntimeMXBean().getStartTime();
+    }
+}
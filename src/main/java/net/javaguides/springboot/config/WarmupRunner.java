@@ -0,0 +1,147 @@
+package net.javaguides.springboot.config;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import javax.sql.DataSource;
+
+import com.zaxxer.hikari.HikariDataSource;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.availability.AvailabilityChangeEvent;
+import org.springframework.boot.availability.ReadinessState;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Component;
+
+import net.javaguides.springboot.json.EmployeeJsonCodec;
+import net.javaguides.springboot.model.Employee;
+import net.javaguides.springboot.service.EmployeeService;
+
+/**
+ * Warms the JIT, Hibernate's query plan cache and the connection pool before the instance
+ * reports ready. Runners execute before Spring Boot publishes ACCEPTING_TRAFFIC, so the
+ * readiness probe stays OUT_OF_SERVICE for as long as this takes.
+ *
+ * Everything it runs is read-only: lookups by id, a bounded first page of employees and
+ * JSON serialization of the results through the same codec the controller uses.
+ */
+@Component
+public class WarmupRunner implements ApplicationRunner {
+
+    private static final Logger log = LoggerFactory.getLogger(WarmupRunner.class);
+
+    private static final int SAMPLE = 100;
+
+    private final EmployeeService employeeService;
+
+    private final DataSource dataSource;
+
+    private final ApplicationEventPublisher eventPublisher;
+
+    private final boolean enabled;
+
+    private final int iterations;
+
+    private final int listLimit;
+
+    private final int connections;
+
+    private final long maxDurationMillis;
+
+    public WarmupRunner(EmployeeService employeeService, DataSource dataSource, ApplicationEventPublisher eventPublisher,
+                        @Value("${employees.warmup.enabled:false}") boolean enabled,
+                        @Value("${employees.warmup.iterations:5000}") int iterations,
+                        @Value("${employees.warmup.list-limit:100}") int listLimit,
+                        @Value("${employees.warmup.connections:${spring.datasource.hikari.maximum-pool-size:10}}") int connections,
+                        @Value("${employees.warmup.max-duration-ms:30000}") long maxDurationMillis) {
+        this.employeeService = employeeService;
+        this.dataSource = dataSource;
+        this.eventPublisher = eventPublisher;
+        this.enabled = enabled;
+        this.iterations = iterations;
+        this.listLimit = listLimit;
+        this.connections = connections;
+        this.maxDurationMillis = maxDurationMillis;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        if (!enabled) {
+            return;
+        }
+        AvailabilityChangeEvent.publish(eventPublisher, this, ReadinessState.REFUSING_TRAFFIC);
+        long start = System.nanoTime();
+        try {
+            openConnections();
+            warmUp(start);
+        } catch (RuntimeException | SQLException | IOException e) {
+            // a failed warm-up only costs latency; don't keep the instance out of rotation for it
+            log.warn("Warm-up aborted, continuing startup", e);
+        }
+        log.info("Warm-up finished in {} ms", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+    }
+
+    // borrows the connections one after another and holds them all, so the pool has to open
+    // each of them now rather than on first use
+    private void openConnections() throws SQLException {
+        int count = connections;
+        if (dataSource.isWrapperFor(HikariDataSource.class)) {
+            // asking for more than the pool holds would block until Hikari's connection timeout
+            count = Math.min(count, dataSource.unwrap(HikariDataSource.class).getMaximumPoolSize());
+        }
+        List<Connection> borrowed = new ArrayList<>(count);
+        try {
+            for (int i = 0; i < count; i++) {
+                borrowed.add(dataSource.getConnection());
+            }
+        } finally {
+            for (Connection connection : borrowed) {
+                connection.close();
+            }
+        }
+        log.info("Warm-up opened {} pooled connections", borrowed.size());
+    }
+
+    private void warmUp(long start) throws IOException {
+        List<Employee> page = employeeService.getEmployeesAfter(0, listLimit);
+        long[] ids = page.stream().mapToLong(Employee::getId).toArray();
+        long deadline = start + TimeUnit.MILLISECONDS.toNanos(maxDurationMillis);
+
+        long[] latencies = new long[iterations];
+        int completed = 0;
+        for (; completed < iterations && System.nanoTime() < deadline; completed++) {
+            long operationStart = System.nanoTime();
+            // unknown ids (empty table) still exercise the whole lookup path
+            long id = ids.length == 0 ? -1 : ids[completed % ids.length];
+            EmployeeJsonCodec.write(employeeService.getEmployeeById(id).orElse(null), OutputStream.nullOutputStream());
+            if (completed % 10 == 0) {
+                EmployeeJsonCodec.writeList(employeeService.getEmployeesAfter(0, listLimit), OutputStream.nullOutputStream());
+            }
+            latencies[completed] = System.nanoTime() - operationStart;
+        }
+
+        int sample = Math.min(SAMPLE, completed / 2);
+        if (sample > 0) {
+            log.info("Warm-up ran {} iterations: mean latency {} us for the first {}, {} us for the last {}",
+                    completed, meanMicros(latencies, 0, sample), sample,
+                    meanMicros(latencies, completed - sample, completed), sample);
+        }
+    }
+
+    private static long meanMicros(long[] latencies, int from, int to) {
+        long total = 0;
+        for (int i = from; i < to; i++) {
+            total += latencies[i];
+        }
+        return TimeUnit.NANOSECONDS.toMicros(total / (to - from));
+    }
+}
@@ -0,0 +1,26 @@
+package net.javaguides.springboot.config;
+
+import java.util.List;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import net.javaguides.springboot.jfr.EmployeeOperationRecorder;
+import net.javaguides.springboot.json.EmployeeJsonHttpMessageConverter;
+
+@Configuration
+public class WebConfig implements WebMvcConfigurer {
+
+    @Override
+    public void extendMessageConverters(List<HttpMessageConverter<?>> converters) {
+        // ahead of Jackson, which still handles every other body type
+        converters.add(0, new EmployeeJsonHttpMessageConverter());
+    }
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(new EmployeeOperationRecorder()).addPathPatterns("/api/employees/**");
+    }
+}
@@ -1,64 +1,342 @@
 package net.javaguides.springboot.controller;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PatchMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
+import org.springframework.web.util.UriComponentsBuilder;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import net.javaguides.springboot.concurrent.DatabaseExecutor;
+import net.javaguides.springboot.exception.DatabaseUnavailableException;
+import net.javaguides.springboot.feed.EmployeeChangeFeed;
+import net.javaguides.springboot.json.EmployeeResponseCache;
+import net.javaguides.springboot.json.EncodedJson;
+import net.javaguides.springboot.model.EmailDomainChange;
 import net.javaguides.springboot.model.Employee;
+import net.javaguides.springboot.model.EmployeeDelta;
+import net.javaguides.springboot.model.EmployeeFields;
+import net.javaguides.springboot.model.EmployeeSort;
+import net.javaguides.springboot.model.EmployeeUpsertResult;
+import net.javaguides.springboot.resilience.ReadResult;
+import net.javaguides.springboot.resilience.ResilientEmployeeReads;
+import net.javaguides.springboot.search.EmployeeSearchIndex;
 import net.javaguides.springboot.service.EmployeeService;
+import net.javaguides.springboot.service.EmployeeStreamService;
+import net.javaguides.springboot.stats.EmployeeStats;
+import net.javaguides.springboot.stats.EmployeeStatsSnapshot;
+import reactor.core.publisher.Flux;
 
 @RestController
 @RequestMapping("/api/employees")
 public class EmployeeController {
 
+    private static final int MAX_SEARCH_LIMIT = 100;
+
+    private static final int MAX_PAGE_LIMIT = 1000;
+
+    private static final int MAX_UPSERT_BATCH = 5000;
+
     @Autowired
     private EmployeeService employeeService;
 
+    @Autowired
+    private EmployeeStreamService employeeStreamService;
+
+    @Autowired
+    private DatabaseExecutor databaseExecutor;
+
+    @Autowired
+    private ResilientEmployeeReads resilientEmployeeReads;
+
+    @Autowired
+    private EmployeeSearchIndex employeeSearchIndex;
+
+    @Autowired
+    private EmployeeStats employeeStats;
+
+    @Autowired
+    private EmployeeResponseCache employeeResponseCache;
+
+    @Lazy
+    @Autowired
+    private EmployeeChangeFeed employeeChangeFeed;
+
     @PostMapping
     @ResponseStatus(HttpStatus.CREATED)
-    public Employee createEmployee(@RequestBody Employee employee) {
-        return employeeService.saveEmployee(employee);
+    public CompletableFuture<Employee> createEmployee(@RequestBody Employee employee) {
+        return databaseExecutor.submit(() -> employeeService.saveEmployee(employee));
     }
 
+    // JSON is written from cached bytes while the data is unchanged; other formats go through the converters
     @GetMapping
-    public List<Employee> getAllEmployees() {
-        return employeeService.getAllEmployees();
+    public CompletableFuture<ResponseEntity<?>> getAllEmployees(@RequestHeader HttpHeaders headers) {
+        if (!acceptsJson(headers)) {
+            return resilientEmployeeReads.getAllEmployees()
+                    .thenApply(result -> withStaleness(ResponseEntity.ok(), result).body(result.getValue()));
+        }
+        EncodedJson cached = employeeResponseCache.getAll();
+        if (cached != null) {
+            return CompletableFuture.completedFuture(encoded(ResponseEntity.ok(), cached, headers));
+        }
+        long version = employeeResponseCache.version();
+        return resilientEmployeeReads.getAllEmployees().thenApply(result -> encoded(withStaleness(ResponseEntity.ok(), result),
+                result.isStale()
+                        ? employeeResponseCache.encode(result.getValue())
+                        : employeeResponseCache.putAll(version, result.getValue()),
+                headers));
+    }
+
+    @GetMapping(params = "fields")
+    public CompletableFuture<List<Map<String, Object>>> getAllEmployees(@RequestParam("fields") String fields) {
+        List<String> selected = parseFields(fields);
+        return databaseExecutor.submit(() -> employeeService.getAllEmployees(selected));
+    }
+
+    // delta sync: pass the watermark of the previous response, or 0 for everything; changes near the
+    // watermark are sent again, so clients apply them by id
+    @GetMapping(params = { "modifiedSince", "!fields", "!sort" })
+    public CompletableFuture<EmployeeDelta> getEmployeesModifiedSince(@RequestParam("modifiedSince") long modifiedSince) {
+        if (modifiedSince < 0) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "modifiedSince must not be negative");
+        }
+        return databaseExecutor.submit(() -> employeeService.getChangesSince(modifiedSince));
+    }
+
+    // keyset pages; a full page carries a Link header pointing at the next one
+    @GetMapping(params = { "sort", "!fields" })
+    public CompletableFuture<ResponseEntity<List<Employee>>> getSortedEmployees(@RequestParam("sort") String sort,
+            @RequestParam(value = "after", required = false) String after,
+            @RequestParam(value = "limit", defaultValue = "100") int limit) {
+        if (limit < 1 || limit > MAX_PAGE_LIMIT) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "limit must be between 1 and " + MAX_PAGE_LIMIT);
+        }
+        EmployeeSort employeeSort;
+        Employee afterEmployee;
+        try {
+            employeeSort = EmployeeSort.parse(sort);
+            afterEmployee = after == null ? null : employeeSort.parseCursor(after);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage(), e);
+        }
+        // built here, the request is no longer bound to the thread once the query runs
+        UriComponentsBuilder next = ServletUriComponentsBuilder.fromCurrentRequest();
+        return databaseExecutor.submit(() -> {
+            List<Employee> page = employeeService.getEmployeesSorted(employeeSort, afterEmployee, limit);
+            ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+            if (page.size() == limit) {
+                String cursor = employeeSort.cursorAfter(page.get(page.size() - 1));
+                response.header(HttpHeaders.LINK,
+                        "<" + next.replaceQueryParam("after", cursor).toUriString() + ">; rel=\"next\"");
+            }
+            return response.body(page);
+        });
+    }
+
+    // ranked in memory; the rows come from the view, or from one primary-key query without it
+    @GetMapping("search")
+    public CompletableFuture<List<Employee>> searchEmployees(@RequestParam("q") String query,
+            @RequestParam(value = "limit", defaultValue = "10") int limit) {
+        if (!employeeSearchIndex.isEnabled()) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Search is disabled");
+        }
+        if (limit < 1 || limit > MAX_SEARCH_LIMIT) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "limit must be between 1 and " + MAX_SEARCH_LIMIT);
+        }
+        return databaseExecutor.submit(() -> employeeSearchIndex.search(query, limit));
+    }
+
+    @GetMapping("stats")
+    public EmployeeStatsSnapshot getStats(@RequestParam(value = "top", defaultValue = "10") int top) {
+        if (top < 1 || top > MAX_SEARCH_LIMIT) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "top must be between 1 and " + MAX_SEARCH_LIMIT);
+        }
+        return employeeStats.snapshot(top);
+    }
+
+    // one JSON document per line, written as the pages are read
+    @GetMapping(path = "stream", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public Flux<Employee> streamAllEmployees() {
+        return employeeStreamService.streamAllEmployees();
+    }
+
+    @GetMapping(path = "changes", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamChanges(@RequestHeader(value = "Last-Event-ID", required = false) Long lastEventId) {
+        return employeeChangeFeed.subscribe(lastEventId);
     }
 
     @GetMapping("{id}")
-    public ResponseEntity<Employee> getEmployeeById(@PathVariable("id") long id) {
-        return employeeService.getEmployeeById(id)
+    public CompletableFuture<ResponseEntity<?>> getEmployeeById(@PathVariable("id") long id,
+            @RequestHeader HttpHeaders headers) {
+        if (!acceptsJson(headers)) {
+            return resilientEmployeeReads.getEmployeeById(id).thenApply(result -> result.getValue()
+                    .<ResponseEntity<?>>map(employee -> withStaleness(ResponseEntity.ok(), result).body(employee))
+                    .orElseGet(() -> withStaleness(ResponseEntity.status(HttpStatus.NOT_FOUND), result).build()));
+        }
+        EncodedJson cached = employeeResponseCache.getEmployee(id);
+        if (cached != null) {
+            return CompletableFuture.completedFuture(encoded(ResponseEntity.ok(), cached, headers));
+        }
+        long version = employeeResponseCache.version();
+        return resilientEmployeeReads.getEmployeeById(id).thenApply(result -> result.getValue()
+                .<ResponseEntity<?>>map(employee -> encoded(withStaleness(ResponseEntity.ok(), result),
+                        result.isStale() ? EncodedJson.of(employee) : employeeResponseCache.putEmployee(version, employee),
+                        headers))
+                .orElseGet(() -> withStaleness(ResponseEntity.status(HttpStatus.NOT_FOUND), result).build()));
+    }
+
+    @GetMapping(path = "{id}", params = "fields")
+    public CompletableFuture<ResponseEntity<Map<String, Object>>> getEmployeeById(@PathVariable("id") long id,
+            @RequestParam("fields") String fields) {
+        List<String> selected = parseFields(fields);
+        return databaseExecutor.submit(() -> employeeService.getEmployeeById(id, selected)
                 .map(ResponseEntity::ok)
-                .orElseGet(() -> ResponseEntity.notFound().build());
+                .orElseGet(() -> ResponseEntity.notFound().build()));
     }
 
     @PutMapping("{id}")
-    public ResponseEntity<Employee> updateEmployeeById(@PathVariable("id") long id, @RequestBody Employee employee) {
-        return employeeService.getEmployeeById(id)
+    public CompletableFuture<ResponseEntity<Employee>> updateEmployeeById(@PathVariable("id") long id,
+            @RequestBody Employee employee) {
+        return databaseExecutor.submit(() -> employeeService.getEmployeeById(id)
             .map(savedEmployee -> {
                 savedEmployee.setFirstName(employee.getFirstName());
                 savedEmployee.setLastName(employee.getLastName());
                 savedEmployee.setEmail(employee.getEmail());
                 Employee updatedEmployee = employeeService.updateEmployee(savedEmployee);
                 return new ResponseEntity<>(updatedEmployee, HttpStatus.OK);
-            }).orElseGet(()-> ResponseEntity.notFound().build());
+            }).orElseGet(()-> ResponseEntity.notFound().build()));
+    }
+
+    @PutMapping("by-email/{email}")
+    public CompletableFuture<ResponseEntity<Employee>> upsertEmployeeByEmail(@PathVariable("email") String email,
+            @RequestBody Employee employee) {
+        Employee keyed = employee.toBuilder().id(0).email(email).build();
+        return databaseExecutor.submit(() -> {
+            EmployeeUpsertResult result = employeeService.upsertEmployees(List.of(keyed));
+            if (!result.getInserted().isEmpty()) {
+                return new ResponseEntity<>(result.getInserted().get(0), HttpStatus.CREATED);
+            }
+            return ResponseEntity.ok(result.getUpdated().isEmpty() ? keyed : result.getUpdated().get(0));
+        });
+    }
+
+    @PutMapping("by-email")
+    public CompletableFuture<EmployeeUpsertResult> upsertEmployeesByEmail(@RequestBody List<Employee> employees) {
+        if (employees.size() > MAX_UPSERT_BATCH) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "at most " + MAX_UPSERT_BATCH + " employees per batch");
+        }
+        if (employees.stream().anyMatch(employee -> employee.getEmail() == null || employee.getEmail().isBlank())) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "every employee needs an email");
+        }
+        return databaseExecutor.submit(() -> employeeService.upsertEmployees(employees));
+    }
+
+    @PatchMapping("email-domain")
+    public CompletableFuture<Map<String, Integer>> changeEmailDomain(@RequestBody EmailDomainChange change) {
+        if (!isDomain(change.getFrom()) || !isDomain(change.getTo())) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "from and to must be email domains");
+        }
+        return databaseExecutor.submit(() ->
+                Map.of("updated", employeeService.changeEmailDomain(change.getFrom(), change.getTo())));
     }
 
     @DeleteMapping("{id}")
-    public ResponseEntity<String> deleteEmployee(@PathVariable("id") long id){
-        employeeService.deleteEmployee(id);
-        return new ResponseEntity<String>("Deleted Successfully", HttpStatus.OK);
+    public CompletableFuture<ResponseEntity<String>> deleteEmployee(@PathVariable("id") long id){
+        return databaseExecutor.submit(() -> {
+            employeeService.deleteEmployee(id);
+            return new ResponseEntity<String>("Deleted Successfully", HttpStatus.OK);
+        });
+    }
+
+    // the database pool is saturated; tell the client to back off instead of queueing forever
+    @ExceptionHandler(RejectedExecutionException.class)
+    public ResponseEntity<Void> handleRejected() {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).header("Retry-After", "1").build();
+    }
+
+    // the database is failing and there is no earlier result to fall back on
+    @ExceptionHandler(DatabaseUnavailableException.class)
+    public ResponseEntity<Void> handleDatabaseUnavailable() {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).header("Retry-After", "5").build();
+    }
+
+    private static ResponseEntity.BodyBuilder withStaleness(ResponseEntity.BodyBuilder response, ReadResult<?> result) {
+        if (result.isStale()) {
+            response.header(HttpHeaders.AGE, Long.toString(result.getAgeSeconds()))
+                    .header(HttpHeaders.WARNING, "110 - \"Response is Stale\"");
+        }
+        return response;
+    }
+
+    private static ResponseEntity<?> encoded(ResponseEntity.BodyBuilder response, EncodedJson body,
+            HttpHeaders requestHeaders) {
+        response.contentType(MediaType.APPLICATION_JSON);
+        byte[] gzipped = body.getGzipped();
+        if (gzipped == null) {
+            return response.body(body.getBytes());
+        }
+        response.header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        if (acceptsGzip(requestHeaders)) {
+            return response.header(HttpHeaders.CONTENT_ENCODING, "gzip").body(gzipped);
+        }
+        return response.body(body.getBytes());
+    }
+
+    // true when JSON is the client's first choice, or it has none
+    private static boolean acceptsJson(HttpHeaders headers) {
+        try {
+            List<MediaType> mediaTypes = new ArrayList<>(headers.getAccept());
+            MediaType.sortBySpecificityAndQuality(mediaTypes);
+            return mediaTypes.isEmpty() || mediaTypes.get(0).includes(MediaType.APPLICATION_JSON);
+        } catch (InvalidMediaTypeException e) {
+            return false;
+        }
+    }
+
+    private static boolean acceptsGzip(HttpHeaders headers) {
+        for (String coding : String.join(",", headers.getOrEmpty(HttpHeaders.ACCEPT_ENCODING)).split(",")) {
+            String[] parts = coding.trim().split(";");
+            if (parts[0].trim().equalsIgnoreCase("gzip")) {
+                return parts.length == 1 || !parts[1].replace(" ", "").matches("q=0(\\.0*)?");
+            }
+        }
+        return false;
+    }
+
+    private static boolean isDomain(String domain) {
+        return domain != null && domain.matches("[^@\\s]+");
+    }
+
+    private static List<String> parseFields(String fields) {
+        try {
+            return EmployeeFields.parse(fields);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage(), e);
+        }
     }
 
 }
@@ -0,0 +1,56 @@
+package net.javaguides.springboot.event;
+
+import lombok.Getter;
+import net.javaguides.springboot.model.Employee;
+
+/**
+ * Published by the employee service after every successful create, update or delete.
+ * Carries a detached snapshot of the employee so listeners never share the managed entity.
+ *
+ * Remote events replay a change another instance made; they refresh the local caches but are
+ * never sent back out on the invalidation bus. A remote event without an employee only says
+ * which employee changed: listeners drop what they hold for it and read it again when needed.
+ */
+@Getter
+public class EmployeeChangedEvent {
+
+    public enum Type {
+        CREATED, UPDATED, DELETED
+    }
+
+    private final Type type;
+
+    private final long employeeId;
+
+    // null for DELETED and for remote invalidations
+    private final Employee employee;
+
+    private final boolean remote;
+
+    private EmployeeChangedEvent(Type type, long employeeId, Employee employee, boolean remote) {
+        this.type = type;
+        this.employeeId = employeeId;
+        this.employee = employee;
+        this.remote = remote;
+    }
+
+    public static EmployeeChangedEvent created(Employee employee) {
+        return new EmployeeChangedEvent(Type.CREATED, employee.getId(), employee.toBuilder().build(), false);
+    }
+
+    public static EmployeeChangedEvent updated(Employee employee) {
+        return new EmployeeChangedEvent(Type.UPDATED, employee.getId(), employee.toBuilder().build(), false);
+    }
+
+    public static EmployeeChangedEvent deleted(long employeeId) {
+        return new EmployeeChangedEvent(Type.DELETED, employeeId, null, false);
+    }
+
+    public static EmployeeChangedEvent invalidated(Type type, long employeeId) {
+        return new EmployeeChangedEvent(type, employeeId, null, true);
+    }
+
+    public EmployeeChangedEvent toRemote() {
+        return new EmployeeChangedEvent(type, employeeId, employee, true);
+    }
+}
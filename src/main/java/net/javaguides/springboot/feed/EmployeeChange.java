@@ -0,0 +1,22 @@
+package net.javaguides.springboot.feed;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import net.javaguides.springboot.event.EmployeeChangedEvent;
+import net.javaguides.springboot.model.Employee;
+
+/**
+ * One entry of the change feed. The sequence number is also used as the SSE event id.
+ */
+@Getter
+@AllArgsConstructor
+public class EmployeeChange {
+
+    private final long sequence;
+
+    private final EmployeeChangedEvent.Type type;
+
+    private final long employeeId;
+
+    private final Employee employee;
+}
@@ -0,0 +1,214 @@
+package net.javaguides.springboot.feed;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.annotation.PreDestroy;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import net.javaguides.springboot.event.EmployeeChangedEvent;
+
+/**
+ * Fixed-size ring buffer of employee changes, streamed to subscribers as Server-Sent Events.
+ *
+ * Writers only append to the ring and wake subscribers; the actual sends happen on a small
+ * bounded dispatcher pool, so a slow consumer never stalls the write path. A subscriber that
+ * falls more than one ring behind is sent a "resync" event by the dispatcher and
+ * disconnected. One that cannot be scheduled because the dispatcher is saturated is only
+ * completed, without writing to it on the writer's thread; it reconnects with Last-Event-ID
+ * and is replayed from the ring, or sent the resync then.
+ *
+ * Lazy, so the dispatcher pool is only created once the first change or subscriber arrives.
+ */
+@Lazy
+@Component
+public class EmployeeChangeFeed {
+
+    static final String RESYNC_EVENT = "resync";
+
+    private static final int SEND_BATCH = 256;
+
+    private final EmployeeChange[] ring;
+
+    // guarded by "this"
+    private long lastSequence;
+
+    private final Set<Subscriber> subscribers = ConcurrentHashMap.newKeySet();
+
+    private final ExecutorService dispatcher;
+
+    private final long emitterTimeout;
+
+    public EmployeeChangeFeed(@Value("${employees.changes.capacity:1024}") int capacity,
+                              @Value("${employees.changes.dispatcher-threads:2}") int dispatcherThreads,
+                              @Value("${employees.changes.dispatcher-queue:1024}") int dispatcherQueue,
+                              @Value("${employees.changes.emitter-timeout-ms:1800000}") long emitterTimeout) {
+        this.ring = new EmployeeChange[capacity];
+        this.emitterTimeout = emitterTimeout;
+        AtomicInteger threadCount = new AtomicInteger();
+        this.dispatcher = new ThreadPoolExecutor(dispatcherThreads, dispatcherThreads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(dispatcherQueue), runnable -> {
+                    Thread thread = new Thread(runnable, "employee-change-feed-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onEmployeeChanged(EmployeeChangedEvent event) {
+        // a remote invalidation is followed by the reloaded row, which is the change worth sending
+        if (event.getEmployee() == null && event.getType() != EmployeeChangedEvent.Type.DELETED) {
+            return;
+        }
+        append(event);
+    }
+
+    public EmployeeChange append(EmployeeChangedEvent event) {
+        EmployeeChange change;
+        synchronized (this) {
+            long sequence = ++lastSequence;
+            change = new EmployeeChange(sequence, event.getType(), event.getEmployeeId(), event.getEmployee());
+            ring[(int) (sequence % ring.length)] = change;
+        }
+        for (Subscriber subscriber : subscribers) {
+            subscriber.schedule();
+        }
+        return change;
+    }
+
+    public synchronized long getLastSequence() {
+        return lastSequence;
+    }
+
+    /**
+     * Returns up to {@code max} changes with a sequence greater than {@code afterSequence},
+     * or empty if some of them have already been overwritten and the caller has to resync.
+     */
+    public synchronized Optional<List<EmployeeChange>> changesAfter(long afterSequence, int max) {
+        long oldest = Math.max(1, lastSequence - ring.length + 1);
+        if (afterSequence + 1 < oldest || afterSequence > lastSequence) {
+            return Optional.empty();
+        }
+        long to = Math.min(lastSequence, afterSequence + max);
+        List<EmployeeChange> changes = new ArrayList<>((int) (to - afterSequence));
+        for (long sequence = afterSequence + 1; sequence <= to; sequence++) {
+            changes.add(ring[(int) (sequence % ring.length)]);
+        }
+        return Optional.of(changes);
+    }
+
+    /**
+     * Opens a stream that first replays everything after {@code lastEventId} (when given)
+     * and then follows new changes.
+     */
+    public SseEmitter subscribe(Long lastEventId) {
+        SseEmitter emitter = new SseEmitter(emitterTimeout);
+        Subscriber subscriber = new Subscriber(emitter, lastEventId != null ? lastEventId : getLastSequence());
+        emitter.onCompletion(() -> subscribers.remove(subscriber));
+        emitter.onTimeout(() -> subscribers.remove(subscriber));
+        emitter.onError(error -> subscribers.remove(subscriber));
+        subscribers.add(subscriber);
+        subscriber.schedule();
+        return emitter;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        dispatcher.shutdownNow();
+        for (Subscriber subscriber : subscribers) {
+            subscriber.emitter.complete();
+        }
+        subscribers.clear();
+    }
+
+    private final class Subscriber implements Runnable {
+
+        private final SseEmitter emitter;
+
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+
+        private volatile long cursor;
+
+        private volatile boolean closed;
+
+        Subscriber(SseEmitter emitter, long cursor) {
+            this.emitter = emitter;
+            this.cursor = cursor;
+        }
+
+        void schedule() {
+            if (closed || !scheduled.compareAndSet(false, true)) {
+                return;
+            }
+            try {
+                dispatcher.execute(this);
+            } catch (RejectedExecutionException e) {
+                // no sends here: this is the writer's thread
+                close();
+                emitter.complete();
+            }
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (!closed) {
+                    Optional<List<EmployeeChange>> batch = changesAfter(cursor, SEND_BATCH);
+                    if (!batch.isPresent()) {
+                        resync();
+                        break;
+                    }
+                    if (batch.get().isEmpty()) {
+                        break;
+                    }
+                    for (EmployeeChange change : batch.get()) {
+                        emitter.send(SseEmitter.event()
+                                .id(Long.toString(change.getSequence()))
+                                .name(change.getType().name())
+                                .data(change, MediaType.APPLICATION_JSON));
+                        cursor = change.getSequence();
+                    }
+                }
+            } catch (IOException | IllegalStateException e) {
+                close();
+            } finally {
+                scheduled.set(false);
+            }
+            if (!closed && cursor < getLastSequence()) {
+                schedule();
+            }
+        }
+
+        private void resync() {
+            try {
+                emitter.send(SseEmitter.event().name(RESYNC_EVENT).data(getLastSequence()));
+                emitter.complete();
+            } catch (IOException | IllegalStateException e) {
+                emitter.completeWithError(e);
+            }
+            close();
+        }
+
+        private void close() {
+            closed = true;
+            subscribers.remove(this);
+        }
+    }
+}
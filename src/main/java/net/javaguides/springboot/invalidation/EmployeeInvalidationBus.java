@@ -0,0 +1,271 @@
+package net.javaguides.springboot.invalidation;
+
+import java.io.IOException;
+import java.security.SecureRandom;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import net.javaguides.springboot.event.EmployeeChangedEvent;
+import net.javaguides.springboot.model.Employee;
+import net.javaguides.springboot.service.EmployeeService;
+
+/**
+ * Keeps the local caches of several instances (the in-memory view, the search index, the
+ * stats counters) in step with writes made on any of them.
+ *
+ * After each local commit the id of the changed employee goes into a pending map, together
+ * with the change type and a version that only grows on the writing instance. Within one
+ * flush interval repeated changes to the same employee coalesce into a single entry with the
+ * highest version, and the pending entries are sent as batches over the
+ * {@link InvalidationTransport}.
+ *
+ * A receiving instance applies a batch in two steps. First, without touching the database,
+ * every named employee is published as a remote {@link EmployeeChangedEvent} without a row,
+ * so every listener drops what it holds for it. Then the employees that still exist are read
+ * again through the {@link EmployeeService} on a separate thread, retried with backoff while
+ * the database fails, and republished as remote events with the row and the original change
+ * type. An entry whose version is not newer than the last one seen from the same sender is
+ * dropped, and a reload is only published if no later change to the employee arrived while it
+ * ran. Remote events are not sent out again.
+ */
+public class EmployeeInvalidationBus {
+
+    private static final Logger log = LoggerFactory.getLogger(EmployeeInvalidationBus.class);
+
+    private static final int RELOAD_ATTEMPTS = 5;
+
+    private static final long RELOAD_BACKOFF_MILLIS = 250;
+
+    // enough to order the messages in flight; an employee that fell out is simply reloaded
+    private static final int TRACKED_EMPLOYEES = 100_000;
+
+    private final long nodeId = new SecureRandom().nextLong();
+
+    private final InvalidationTransport transport;
+
+    private final EmployeeService employeeService;
+
+    private final ApplicationEventPublisher eventPublisher;
+
+    private final long flushIntervalMillis;
+
+    private final int maxBatch;
+
+    private final AtomicLong lastVersion = new AtomicLong();
+
+    private final Map<Long, InvalidationBatch.Entry> pending = new ConcurrentHashMap<>();
+
+    // employee id -> the latest change this node knows of, local or remote
+    private final Map<Long, Seen> latest = Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, Seen> eldest) {
+            return size() > TRACKED_EMPLOYEES;
+        }
+    });
+
+    private final AtomicBoolean flushScheduled = new AtomicBoolean();
+
+    // one thread for both flushing and evicting on remote batches, so neither ever runs on a request thread
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "employee-invalidation");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // reloads wait on the database, so they get their own thread and never hold up evictions
+    private final ScheduledExecutorService reloader = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "employee-invalidation-reload");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public EmployeeInvalidationBus(InvalidationTransport transport, EmployeeService employeeService,
+                                   ApplicationEventPublisher eventPublisher, long flushIntervalMillis, int maxBatch) {
+        this.transport = transport;
+        this.employeeService = employeeService;
+        this.eventPublisher = eventPublisher;
+        this.flushIntervalMillis = flushIntervalMillis;
+        this.maxBatch = maxBatch;
+    }
+
+    public void start() throws IOException {
+        transport.start(this::receive);
+    }
+
+    public void shutdown() {
+        try {
+            executor.submit(this::flush).get(1, TimeUnit.SECONDS);
+        } catch (Exception e) {
+            log.warn("Could not send the last invalidation batch", e);
+        }
+        executor.shutdownNow();
+        reloader.shutdownNow();
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onEmployeeChanged(EmployeeChangedEvent event) {
+        if (event.isRemote()) {
+            return;
+        }
+        long version = lastVersion.updateAndGet(last -> Math.max(last + 1, System.currentTimeMillis()));
+        latest.put(event.getEmployeeId(), new Seen(nodeId, version));
+        pending.merge(event.getEmployeeId(), new InvalidationBatch.Entry(version, event.getType()),
+                InvalidationBatch.Entry::latest);
+        if (flushScheduled.compareAndSet(false, true)) {
+            try {
+                executor.schedule(this::flush, flushIntervalMillis, TimeUnit.MILLISECONDS);
+            } catch (RejectedExecutionException e) {
+                // shutting down; the final flush picks up whatever is pending
+                flushScheduled.set(false);
+            }
+        }
+    }
+
+    void flush() {
+        // cleared first, so a change that arrives while draining schedules the next flush
+        flushScheduled.set(false);
+        Map<Long, InvalidationBatch.Entry> batch = new LinkedHashMap<>();
+        for (Iterator<Long> ids = pending.keySet().iterator(); ids.hasNext(); ) {
+            Long id = ids.next();
+            InvalidationBatch.Entry entry = pending.remove(id);
+            if (entry != null) {
+                batch.put(id, entry);
+            }
+            if (batch.size() == maxBatch) {
+                send(batch);
+                batch = new LinkedHashMap<>();
+            }
+        }
+        if (!batch.isEmpty()) {
+            send(batch);
+        }
+    }
+
+    private void send(Map<Long, InvalidationBatch.Entry> entries) {
+        try {
+            transport.send(new InvalidationBatch(nodeId, entries).encode());
+        } catch (IOException | RuntimeException e) {
+            log.warn("Could not send invalidations for {} employees", entries.size(), e);
+        }
+    }
+
+    void receive(byte[] bytes) {
+        InvalidationBatch batch;
+        try {
+            batch = InvalidationBatch.decode(bytes);
+        } catch (IllegalArgumentException e) {
+            log.warn("Dropping malformed invalidation batch", e);
+            return;
+        }
+        if (batch.getNodeId() == nodeId) {
+            return;
+        }
+        try {
+            executor.execute(() -> apply(batch));
+        } catch (RejectedExecutionException e) {
+            log.debug("Dropping invalidation batch received during shutdown");
+        }
+    }
+
+    private void apply(InvalidationBatch batch) {
+        Map<Long, Reload> reloads = new LinkedHashMap<>();
+        batch.getEntries().forEach((id, entry) -> {
+            Seen seen = new Seen(batch.getNodeId(), entry.getVersion());
+            Seen previous = latest.get(id);
+            if (previous != null && previous.nodeId == seen.nodeId && previous.version >= seen.version) {
+                return;
+            }
+            latest.put(id, seen);
+            if (entry.getType() == EmployeeChangedEvent.Type.DELETED) {
+                eventPublisher.publishEvent(EmployeeChangedEvent.deleted(id).toRemote());
+            } else {
+                eventPublisher.publishEvent(EmployeeChangedEvent.invalidated(entry.getType(), id));
+                reloads.put(id, new Reload(entry.getType(), seen));
+            }
+        });
+        if (!reloads.isEmpty()) {
+            scheduleReload(reloads, 0);
+        }
+    }
+
+    private void scheduleReload(Map<Long, Reload> reloads, int attempt) {
+        long delay = attempt == 0 ? 0 : RELOAD_BACKOFF_MILLIS << (attempt - 1);
+        try {
+            reloader.schedule(() -> reload(reloads, attempt), delay, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            log.debug("Dropping invalidation reload during shutdown");
+        }
+    }
+
+    private void reload(Map<Long, Reload> reloads, int attempt) {
+        // a later change to the employee brings its own reload
+        reloads.entrySet().removeIf(entry -> latest.get(entry.getKey()) != entry.getValue().seen);
+        if (reloads.isEmpty()) {
+            return;
+        }
+        RuntimeException failure = null;
+        try {
+            for (Employee employee : employeeService.getEmployeesById(reloads.keySet())) {
+                Reload reload = reloads.remove(employee.getId());
+                if (reload == null || latest.get(employee.getId()) != reload.seen) {
+                    continue;
+                }
+                EmployeeChangedEvent event = reload.type == EmployeeChangedEvent.Type.CREATED
+                        ? EmployeeChangedEvent.created(employee)
+                        : EmployeeChangedEvent.updated(employee);
+                eventPublisher.publishEvent(event.toRemote());
+            }
+        } catch (RuntimeException e) {
+            failure = e;
+        }
+        // a row not found was deleted since (its own invalidation replaces the latest version and
+        // drops it next time), or the view couldn't read it yet
+        if (reloads.isEmpty()) {
+            return;
+        }
+        if (attempt + 1 >= RELOAD_ATTEMPTS) {
+            log.warn("Giving up reloading {} invalidated employees after {} attempts, caches read them on demand",
+                    reloads.size(), attempt + 1, failure);
+            return;
+        }
+        scheduleReload(reloads, attempt + 1);
+    }
+
+    private static final class Seen {
+
+        final long nodeId;
+
+        final long version;
+
+        Seen(long nodeId, long version) {
+            this.nodeId = nodeId;
+            this.version = version;
+        }
+    }
+
+    private static final class Reload {
+
+        final EmployeeChangedEvent.Type type;
+
+        final Seen seen;
+
+        Reload(EmployeeChangedEvent.Type type, Seen seen) {
+            this.type = type;
+            this.seen = seen;
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package net.javaguides.springboot.invalidation;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import lombok.Getter;
+import net.javaguides.springboot.event.EmployeeChangedEvent;
+
+/**
+ * Wire format of one invalidation message: a format byte, the sending node's id, an entry
+ * count and then one (employee id, version, change type) entry per employee, all big-endian.
+ * Seventeen bytes per employee, so a few hundred ids still fit in a single datagram.
+ */
+@Getter
+class InvalidationBatch {
+
+    // 1 carried no change type; its batches are rejected like any other unknown format
+    private static final byte FORMAT = 2;
+
+    private static final int HEADER_BYTES = 1 + Long.BYTES + Integer.BYTES;
+
+    private static final int ENTRY_BYTES = 2 * Long.BYTES + 1;
+
+    private static final EmployeeChangedEvent.Type[] TYPES = EmployeeChangedEvent.Type.values();
+
+    private final long nodeId;
+
+    // employee id -> latest change, in the order they were written
+    private final Map<Long, Entry> entries;
+
+    InvalidationBatch(long nodeId, Map<Long, Entry> entries) {
+        this.nodeId = nodeId;
+        this.entries = entries;
+    }
+
+    byte[] encode() {
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_BYTES + entries.size() * ENTRY_BYTES);
+        buffer.put(FORMAT).putLong(nodeId).putInt(entries.size());
+        entries.forEach((id, entry) -> buffer.putLong(id).putLong(entry.version).put((byte) entry.type.ordinal()));
+        return buffer.array();
+    }
+
+    static InvalidationBatch decode(byte[] bytes) {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        try {
+            if (buffer.get() != FORMAT) {
+                throw new IllegalArgumentException("Unknown invalidation batch format: " + bytes[0]);
+            }
+            long nodeId = buffer.getLong();
+            int count = buffer.getInt();
+            if (count < 0 || buffer.remaining() != count * ENTRY_BYTES) {
+                throw new IllegalArgumentException("Invalidation batch length does not match its entry count");
+            }
+            Map<Long, Entry> entries = new LinkedHashMap<>(count * 2);
+            for (int i = 0; i < count; i++) {
+                long id = buffer.getLong();
+                long version = buffer.getLong();
+                int type = buffer.get();
+                if (type < 0 || type >= TYPES.length) {
+                    throw new IllegalArgumentException("Unknown change type in invalidation batch: " + type);
+                }
+                entries.merge(id, new Entry(version, TYPES[type]), Entry::latest);
+            }
+            return new InvalidationBatch(nodeId, entries);
+        } catch (BufferUnderflowException e) {
+            throw new IllegalArgumentException("Truncated invalidation batch", e);
+        }
+    }
+
+    /**
+     * The latest change to one employee: the version it was made at on the sending node and
+     * what kind of change it was.
+     */
+    @Getter
+    static final class Entry {
+
+        private final long version;
+
+        private final EmployeeChangedEvent.Type type;
+
+        Entry(long version, EmployeeChangedEvent.Type type) {
+            this.version = version;
+            this.type = type;
+        }
+
+        // an employee created and then updated within one flush is still new to the receivers
+        static Entry latest(Entry left, Entry right) {
+            Entry earlier = left.version <= right.version ? left : right;
+            Entry later = earlier == left ? right : left;
+            if (earlier.type == EmployeeChangedEvent.Type.CREATED && later.type == EmployeeChangedEvent.Type.UPDATED) {
+                return new Entry(later.version, EmployeeChangedEvent.Type.CREATED);
+            }
+            return later;
+        }
+    }
+}
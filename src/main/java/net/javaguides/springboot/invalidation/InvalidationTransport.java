@@ -0,0 +1,25 @@
+package net.javaguides.springboot.invalidation;
+
+import java.io.IOException;
+import java.util.function.Consumer;
+
+/**
+ * Carries encoded invalidation batches between the instances of the application. Delivery
+ * is best effort: a lost batch only leaves a cache stale until the next change to the same
+ * employee (or the next consistency check), so transports don't need to retry.
+ *
+ * A transport may hand a batch back to the instance that sent it; the bus drops its own
+ * batches by node id.
+ */
+public interface InvalidationTransport {
+
+    /**
+     * Starts delivering batches from other instances to {@code receiver}. Called once,
+     * before the first {@link #send}.
+     */
+    void start(Consumer<byte[]> receiver) throws IOException;
+
+    void send(byte[] batch) throws IOException;
+
+    void close();
+}
@@ -0,0 +1,52 @@
+package net.javaguides.springboot.invalidation;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * In-process stand-in for a real transport. Every transport created through {@link #join()}
+ * shares one "network" with the transport it was joined from, and a batch sent by any of
+ * them is delivered synchronously to all of them, the sender included, like a multicast
+ * group with loopback on. Used to run several buses in a single JVM, mainly in tests.
+ */
+public class LoopbackInvalidationTransport implements InvalidationTransport {
+
+    private final List<LoopbackInvalidationTransport> network;
+
+    private volatile Consumer<byte[]> receiver;
+
+    public LoopbackInvalidationTransport() {
+        this(new CopyOnWriteArrayList<>());
+    }
+
+    private LoopbackInvalidationTransport(List<LoopbackInvalidationTransport> network) {
+        this.network = network;
+        network.add(this);
+    }
+
+    public LoopbackInvalidationTransport join() {
+        return new LoopbackInvalidationTransport(network);
+    }
+
+    @Override
+    public void start(Consumer<byte[]> receiver) {
+        this.receiver = receiver;
+    }
+
+    @Override
+    public void send(byte[] batch) {
+        for (LoopbackInvalidationTransport member : network) {
+            Consumer<byte[]> memberReceiver = member.receiver;
+            if (memberReceiver != null) {
+                memberReceiver.accept(batch.clone());
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        network.remove(this);
+        receiver = null;
+    }
+}
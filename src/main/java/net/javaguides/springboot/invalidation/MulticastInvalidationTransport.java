@@ -0,0 +1,91 @@
+package net.javaguides.springboot.invalidation;
+
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.InetSocketAddress;
+import java.net.MulticastSocket;
+import java.net.NetworkInterface;
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Sends each batch as one UDP datagram to a multicast group that every instance joins. No
+ * broker to run, and losing a datagram is acceptable for invalidations (see
+ * {@link InvalidationTransport}). Needs a network where multicast is routed between the
+ * instances; elsewhere plug in another transport.
+ */
+public class MulticastInvalidationTransport implements InvalidationTransport {
+
+    private static final Logger log = LoggerFactory.getLogger(MulticastInvalidationTransport.class);
+
+    private static final int MAX_DATAGRAM_BYTES = 65507;
+
+    private final InetSocketAddress group;
+
+    // null lets the operating system pick the interface
+    private final NetworkInterface networkInterface;
+
+    private volatile MulticastSocket socket;
+
+    public MulticastInvalidationTransport(InetSocketAddress group, NetworkInterface networkInterface) {
+        this.group = group;
+        this.networkInterface = networkInterface;
+    }
+
+    @Override
+    public void start(Consumer<byte[]> receiver) throws IOException {
+        MulticastSocket multicastSocket = new MulticastSocket(null);
+        multicastSocket.setReuseAddress(true);
+        multicastSocket.bind(new InetSocketAddress(group.getPort()));
+        if (networkInterface != null) {
+            multicastSocket.setNetworkInterface(networkInterface);
+        }
+        multicastSocket.joinGroup(group, networkInterface);
+        socket = multicastSocket;
+
+        Thread reader = new Thread(() -> read(multicastSocket, receiver), "employee-invalidation-receiver");
+        reader.setDaemon(true);
+        reader.start();
+        log.info("Joined invalidation multicast group {}", group);
+    }
+
+    private void read(MulticastSocket multicastSocket, Consumer<byte[]> receiver) {
+        byte[] buffer = new byte[MAX_DATAGRAM_BYTES];
+        while (!multicastSocket.isClosed()) {
+            DatagramPacket packet = new DatagramPacket(buffer, buffer.length);
+            try {
+                multicastSocket.receive(packet);
+                receiver.accept(Arrays.copyOfRange(packet.getData(), packet.getOffset(), packet.getOffset() + packet.getLength()));
+            } catch (IOException e) {
+                if (!multicastSocket.isClosed()) {
+                    log.warn("Failed to receive an invalidation batch", e);
+                }
+            } catch (RuntimeException e) {
+                log.warn("Invalidation receiver failed", e);
+            }
+        }
+    }
+
+    @Override
+    public void send(byte[] batch) throws IOException {
+        MulticastSocket multicastSocket = socket;
+        if (multicastSocket == null) {
+            throw new IllegalStateException("Transport not started");
+        }
+        if (batch.length > MAX_DATAGRAM_BYTES) {
+            throw new IOException("Invalidation batch of " + batch.length + " bytes does not fit in a datagram");
+        }
+        multicastSocket.send(new DatagramPacket(batch, batch.length, group));
+    }
+
+    @Override
+    public void close() {
+        MulticastSocket multicastSocket = socket;
+        if (multicastSocket != null) {
+            multicastSocket.close();
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package net.javaguides.springboot.jfr;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.Optional;
+
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
+import org.springframework.data.domain.Slice;
+
+import net.javaguides.springboot.model.Employee;
+import net.javaguides.springboot.model.EmployeeUpsertResult;
+
+/**
+ * Wraps the employee service or repository and emits an {@link EmployeeServiceEvent} or
+ * {@link EmployeeQueryEvent} per call. Repository time also counts as database time of the
+ * request being recorded.
+ *
+ * When neither the event nor a request recording is enabled this is just a pass-through; the
+ * event object never leaves the method, so the JIT can remove its allocation.
+ */
+public class EmployeeEventInterceptor implements MethodInterceptor {
+
+    private final boolean repository;
+
+    public EmployeeEventInterceptor(boolean repository) {
+        this.repository = repository;
+    }
+
+    @Override
+    public Object invoke(MethodInvocation invocation) throws Throwable {
+        boolean recordingRequest = OperationRecording.current() != null;
+        if (repository) {
+            EmployeeQueryEvent event = new EmployeeQueryEvent();
+            if (!event.isEnabled() && !recordingRequest) {
+                return invocation.proceed();
+            }
+            long start = System.nanoTime();
+            event.begin();
+            Object result = null;
+            try {
+                result = invocation.proceed();
+                return result;
+            } finally {
+                event.end();
+                OperationRecording.addDatabaseNanos(System.nanoTime() - start);
+                if (event.shouldCommit()) {
+                    event.operation = invocation.getMethod().getName();
+                    event.employeeId = employeeId(invocation.getArguments());
+                    event.rows = rows(result);
+                    event.commit();
+                }
+            }
+        }
+        EmployeeServiceEvent event = new EmployeeServiceEvent();
+        if (!event.isEnabled() && !recordingRequest) {
+            return invocation.proceed();
+        }
+        event.begin();
+        Object result = null;
+        try {
+            result = invocation.proceed();
+            return result;
+        } finally {
+            event.end();
+            long rows = rows(result);
+            OperationRecording.addRows(rows);
+            if (event.shouldCommit()) {
+                event.operation = invocation.getMethod().getName();
+                event.employeeId = employeeId(invocation.getArguments());
+                event.rows = rows;
+                event.commit();
+            }
+        }
+    }
+
+    static long employeeId(Object[] arguments) {
+        if (arguments.length == 0) {
+            return -1;
+        }
+        Object first = arguments[0];
+        if (first instanceof Long) {
+            return (Long) first;
+        }
+        if (first instanceof Employee) {
+            return ((Employee) first).getId();
+        }
+        return -1;
+    }
+
+    static long rows(Object result) {
+        if (result instanceof Optional) {
+            return ((Optional<?>) result).isPresent() ? 1 : 0;
+        }
+        if (result instanceof Collection) {
+            return ((Collection<?>) result).size();
+        }
+        if (result instanceof Slice) {
+            return ((Slice<?>) result).getNumberOfElements();
+        }
+        if (result instanceof EmployeeUpsertResult) {
+            EmployeeUpsertResult upserted = (EmployeeUpsertResult) result;
+            return upserted.getInserted().size() + upserted.getUpdated().size();
+        }
+        if (result instanceof Integer) {
+            return (Integer) result;
+        }
+        return result instanceof Employee || result instanceof Map ? 1 : 0;
+    }
+}
@@ -0,0 +1,44 @@
+package net.javaguides.springboot.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * One employee API request, from the handler being picked until the response is written.
+ * Database and serialization time are the parts of that duration spent in repository calls
+ * and in writing the response body.
+ */
+@Name("net.javaguides.springboot.EmployeeOperation")
+@Label("Employee Operation")
+@Category({ "Employees", "Web" })
+@Description("An employee API request with its database and serialization time")
+@StackTrace(false)
+public class EmployeeOperationEvent extends Event {
+
+    @Label("Operation")
+    String operation;
+
+    @Label("Employee Id")
+    @Description("Id from the request path, -1 when the request is not about one employee")
+    long employeeId;
+
+    @Label("Rows")
+    @Description("Rows returned or changed by the service calls of the request")
+    long rows;
+
+    @Label("Database Time")
+    @Timespan
+    long databaseTime;
+
+    @Label("Serialization Time")
+    @Timespan
+    long serializationTime;
+
+    @Label("Status")
+    int status;
+}
@@ -0,0 +1,76 @@
+package net.javaguides.springboot.jfr;
+
+import java.util.Map;
+
+import javax.servlet.DispatcherType;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.springframework.lang.Nullable;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.AsyncHandlerInterceptor;
+import org.springframework.web.servlet.HandlerMapping;
+
+/**
+ * Emits an {@link EmployeeOperationEvent} per handled request. Most employee endpoints finish
+ * on the database executor and write their response in a second (async) dispatch, so the
+ * recording is kept as a request attribute and re-attached to the thread that resumes the
+ * request.
+ */
+public class EmployeeOperationRecorder implements AsyncHandlerInterceptor {
+
+    private static final String RECORDING_ATTRIBUTE = EmployeeOperationRecorder.class.getName() + ".recording";
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        if (request.getDispatcherType() == DispatcherType.ASYNC) {
+            OperationRecording.attach((OperationRecording) request.getAttribute(RECORDING_ATTRIBUTE));
+            return true;
+        }
+        if (!(handler instanceof HandlerMethod)) {
+            return true;
+        }
+        EmployeeOperationEvent event = new EmployeeOperationEvent();
+        if (!event.isEnabled()) {
+            return true;
+        }
+        event.operation = ((HandlerMethod) handler).getMethod().getName();
+        event.employeeId = employeeId(request);
+        event.begin();
+        OperationRecording recording = new OperationRecording(event);
+        request.setAttribute(RECORDING_ATTRIBUTE, recording);
+        OperationRecording.attach(recording);
+        return true;
+    }
+
+    @Override
+    public void afterConcurrentHandlingStarted(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        OperationRecording.detach();
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler,
+            @Nullable Exception ex) {
+        OperationRecording recording = (OperationRecording) request.getAttribute(RECORDING_ATTRIBUTE);
+        if (recording == null) {
+            return;
+        }
+        OperationRecording.detach();
+        request.removeAttribute(RECORDING_ATTRIBUTE);
+        recording.commit(response.getStatus());
+    }
+
+    @SuppressWarnings("unchecked")
+    private static long employeeId(HttpServletRequest request) {
+        Map<String, String> variables = (Map<String, String>) request.getAttribute(HandlerMapping.URI_TEMPLATE_VARIABLES_ATTRIBUTE);
+        String id = variables == null ? null : variables.get("id");
+        if (id == null) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(id);
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package net.javaguides.springboot.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * One call into the employee repository, i.e. the time spent in the database (and in
+ * Hibernate) for it.
+ */
+@Name("net.javaguides.springboot.EmployeeQuery")
+@Label("Employee Repository Call")
+@Category({ "Employees", "Repository" })
+@StackTrace(false)
+public class EmployeeQueryEvent extends Event {
+
+    @Label("Operation")
+    String operation;
+
+    @Label("Employee Id")
+    @Description("-1 when the call is not about one employee")
+    long employeeId;
+
+    @Label("Rows")
+    long rows;
+}
@@ -0,0 +1,28 @@
+package net.javaguides.springboot.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * One call into the employee service.
+ */
+@Name("net.javaguides.springboot.EmployeeService")
+@Label("Employee Service Call")
+@Category({ "Employees", "Service" })
+@StackTrace(false)
+public class EmployeeServiceEvent extends Event {
+
+    @Label("Operation")
+    String operation;
+
+    @Label("Employee Id")
+    @Description("-1 when the call is not about one employee")
+    long employeeId;
+
+    @Label("Rows")
+    long rows;
+}
@@ -0,0 +1,124 @@
+package net.javaguides.springboot.jfr;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.ParseException;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+import javax.annotation.PreDestroy;
+
+import org.springframework.boot.actuate.endpoint.InvalidEndpointRequestException;
+import org.springframework.boot.actuate.endpoint.annotation.DeleteOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.boot.actuate.endpoint.web.WebEndpointResponse;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+
+import jdk.jfr.Configuration;
+import jdk.jfr.Recording;
+
+/**
+ * Actuator endpoint that runs one Flight Recorder recording with the employee events next to
+ * the JVM's own GC, lock and I/O events:
+ *
+ * POST /actuator/jfr starts it ({"settings": "profile" or "default", "maxAgeSeconds": n}),
+ * GET /actuator/jfr downloads everything recorded so far as a .jfr file, and
+ * DELETE /actuator/jfr stops it.
+ *
+ * A recording can expose request data and costs some overhead, so the endpoint only exists
+ * with employees.jfr.endpoint.enabled=true, and jfr still has to be listed in
+ * management.endpoints.web.exposure.include.
+ */
+@Component
+@Endpoint(id = "jfr")
+@ConditionalOnProperty(name = "employees.jfr.endpoint.enabled", havingValue = "true")
+public class JfrRecordingEndpoint {
+
+    private static final Set<String> SETTINGS = Set.of("default", "profile");
+
+    private static final long DEFAULT_MAX_AGE_SECONDS = 900;
+
+    // both guarded by "this"
+    private Recording recording;
+
+    private Path lastDump;
+
+    @WriteOperation
+    public synchronized Map<String, Object> start(@Nullable String settings, @Nullable Long maxAgeSeconds) {
+        if (recording == null) {
+            String settingsName = settings == null ? "profile" : settings;
+            if (!SETTINGS.contains(settingsName)) {
+                throw new InvalidEndpointRequestException("Unknown JFR settings: " + settingsName, "Unknown JFR settings");
+            }
+            Recording started;
+            try {
+                started = new Recording(Configuration.getConfiguration(settingsName));
+            } catch (IOException | ParseException e) {
+                throw new IllegalStateException("Could not load JFR settings " + settingsName, e);
+            }
+            started.setName("employees");
+            started.setToDisk(true);
+            started.setMaxAge(Duration.ofSeconds(maxAgeSeconds == null ? DEFAULT_MAX_AGE_SECONDS : maxAgeSeconds));
+            started.enable(EmployeeOperationEvent.class);
+            started.enable(EmployeeServiceEvent.class);
+            started.enable(EmployeeQueryEvent.class);
+            started.start();
+            recording = started;
+        }
+        return describe(recording);
+    }
+
+    @ReadOperation(produces = "application/octet-stream")
+    public synchronized WebEndpointResponse<Resource> dump() throws IOException {
+        if (recording == null) {
+            return new WebEndpointResponse<>(WebEndpointResponse.STATUS_NOT_FOUND);
+        }
+        // only the latest dump is kept around
+        deleteLastDump();
+        lastDump = Files.createTempFile("employees-", ".jfr");
+        recording.dump(lastDump);
+        return new WebEndpointResponse<>(new FileSystemResource(lastDump));
+    }
+
+    @DeleteOperation
+    public synchronized Map<String, Object> stop() throws IOException {
+        Map<String, Object> stopped = recording == null ? Map.of() : describe(recording);
+        if (recording != null) {
+            recording.close();
+            recording = null;
+        }
+        deleteLastDump();
+        return stopped;
+    }
+
+    @PreDestroy
+    public void close() throws IOException {
+        stop();
+    }
+
+    private void deleteLastDump() throws IOException {
+        if (lastDump != null) {
+            Files.deleteIfExists(lastDump);
+            lastDump = null;
+        }
+    }
+
+    private static Map<String, Object> describe(Recording recording) {
+        Map<String, Object> description = new LinkedHashMap<>();
+        description.put("id", recording.getId());
+        description.put("name", recording.getName());
+        description.put("state", recording.getState().name());
+        description.put("startTime", String.valueOf(recording.getStartTime()));
+        description.put("maxAgeSeconds", recording.getMaxAge().getSeconds());
+        return description;
+    }
+}
@@ -0,0 +1,77 @@
+package net.javaguides.springboot.jfr;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Collects the parts of one request that happen on other layers and threads (rows, database
+ * time, serialization time) into its {@link EmployeeOperationEvent}.
+ *
+ * It only exists while the event is enabled in a running recording. The thread working on
+ * the request has it attached; the database executor carries it over to its own threads.
+ * Every static method is a no-op when nothing is attached, so instrumented code pays one
+ * ThreadLocal read when JFR is off.
+ */
+public final class OperationRecording {
+
+    private static final ThreadLocal<OperationRecording> CURRENT = new ThreadLocal<>();
+
+    private final EmployeeOperationEvent event;
+
+    private final LongAdder rows = new LongAdder();
+
+    private final LongAdder databaseNanos = new LongAdder();
+
+    private final LongAdder serializationNanos = new LongAdder();
+
+    OperationRecording(EmployeeOperationEvent event) {
+        this.event = event;
+    }
+
+    public static OperationRecording current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Makes {@code recording} (which may be null) the current one on this thread.
+     */
+    public static void attach(OperationRecording recording) {
+        if (recording == null) {
+            CURRENT.remove();
+        } else {
+            CURRENT.set(recording);
+        }
+    }
+
+    public static void detach() {
+        CURRENT.remove();
+    }
+
+    static void addRows(long count) {
+        OperationRecording recording = CURRENT.get();
+        if (recording != null) {
+            recording.rows.add(count);
+        }
+    }
+
+    static void addDatabaseNanos(long nanos) {
+        OperationRecording recording = CURRENT.get();
+        if (recording != null) {
+            recording.databaseNanos.add(nanos);
+        }
+    }
+
+    public void addSerializationNanos(long nanos) {
+        serializationNanos.add(nanos);
+    }
+
+    void commit(int status) {
+        event.end();
+        if (event.shouldCommit()) {
+            event.rows = rows.sum();
+            event.databaseTime = databaseNanos.sum();
+            event.serializationTime = serializationNanos.sum();
+            event.status = status;
+            event.commit();
+        }
+    }
+}
@@ -0,0 +1,482 @@
+package net.javaguides.springboot.json;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+import net.javaguides.springboot.model.Employee;
+
+/**
+ * Hand-written JSON encoding for {@link Employee}, producing the same document Jackson does
+ * ({"id":..,"firstName":..,"lastName":..,"email":..}) without reflection or intermediate
+ * objects. Field names are pre-encoded, strings are escaped straight into a per-thread
+ * byte buffer that is reused across requests, and the buffer is flushed to the output in
+ * large blocks.
+ */
+public final class EmployeeJsonCodec {
+
+    private static final byte[] ID = ascii("{\"id\":");
+    private static final byte[] FIRST_NAME = ascii(",\"firstName\":");
+    private static final byte[] LAST_NAME = ascii(",\"lastName\":");
+    private static final byte[] EMAIL = ascii(",\"email\":");
+    private static final byte[] NULL = ascii("null");
+    private static final byte[] HEX = ascii("0123456789ABCDEF");
+
+    private static final int FLUSH_THRESHOLD = 8192;
+
+    // buffers that grew past this while writing one huge document are not kept
+    private static final int MAX_RETAINED_BUFFER = 64 * 1024;
+
+    private static final ThreadLocal<Buffer> BUFFERS = ThreadLocal.withInitial(Buffer::new);
+
+    private EmployeeJsonCodec() {
+    }
+
+    public static void write(Employee employee, OutputStream out) throws IOException {
+        Buffer buffer = BUFFERS.get();
+        try {
+            writeEmployee(employee, buffer);
+            buffer.flush(out);
+        } finally {
+            buffer.reset();
+        }
+    }
+
+    public static void writeList(List<?> employees, OutputStream out) throws IOException {
+        Buffer buffer = BUFFERS.get();
+        try {
+            buffer.put((byte) '[');
+            for (int i = 0; i < employees.size(); i++) {
+                if (i > 0) {
+                    buffer.put((byte) ',');
+                }
+                writeEmployee((Employee) employees.get(i), buffer);
+                if (buffer.size > FLUSH_THRESHOLD) {
+                    buffer.flush(out);
+                }
+            }
+            buffer.put((byte) ']');
+            buffer.flush(out);
+        } finally {
+            buffer.reset();
+        }
+    }
+
+    public static byte[] toBytes(Employee employee) {
+        Buffer buffer = BUFFERS.get();
+        try {
+            writeEmployee(employee, buffer);
+            return Arrays.copyOf(buffer.bytes, buffer.size);
+        } finally {
+            buffer.reset();
+        }
+    }
+
+    public static Employee read(InputStream in) throws IOException {
+        return new Parser(in.readAllBytes()).readEmployee();
+    }
+
+    public static Employee read(byte[] json) {
+        return new Parser(json).readEmployee();
+    }
+
+    private static void writeEmployee(Employee employee, Buffer buffer) {
+        if (employee == null) {
+            buffer.put(NULL);
+            return;
+        }
+        buffer.put(ID);
+        buffer.putLong(employee.getId());
+        buffer.put(FIRST_NAME);
+        writeString(employee.getFirstName(), buffer);
+        buffer.put(LAST_NAME);
+        writeString(employee.getLastName(), buffer);
+        buffer.put(EMAIL);
+        writeString(employee.getEmail(), buffer);
+        buffer.put((byte) '}');
+    }
+
+    // escapes like Jackson's defaults: quote, backslash, control characters and surrogates
+    private static void writeString(String value, Buffer buffer) {
+        if (value == null) {
+            buffer.put(NULL);
+            return;
+        }
+        int length = value.length();
+        buffer.ensure(length * 6 + 2);
+        byte[] bytes = buffer.bytes;
+        int pos = buffer.size;
+        bytes[pos++] = '"';
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                if (c >= 0x20 && c != '"' && c != '\\') {
+                    bytes[pos++] = (byte) c;
+                } else {
+                    pos = escape(c, bytes, pos);
+                }
+            } else if (c < 0x800) {
+                bytes[pos++] = (byte) (0xC0 | (c >> 6));
+                bytes[pos++] = (byte) (0x80 | (c & 0x3F));
+            } else if (Character.isSurrogate(c)) {
+                // Jackson writes surrogates as escapes rather than 4-byte sequences
+                bytes[pos++] = '\\';
+                bytes[pos++] = 'u';
+                bytes[pos++] = HEX[c >> 12];
+                bytes[pos++] = HEX[(c >> 8) & 0xF];
+                bytes[pos++] = HEX[(c >> 4) & 0xF];
+                bytes[pos++] = HEX[c & 0xF];
+            } else {
+                bytes[pos++] = (byte) (0xE0 | (c >> 12));
+                bytes[pos++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                bytes[pos++] = (byte) (0x80 | (c & 0x3F));
+            }
+        }
+        bytes[pos++] = '"';
+        buffer.size = pos;
+    }
+
+    private static int escape(char c, byte[] bytes, int pos) {
+        bytes[pos++] = '\\';
+        switch (c) {
+            case '"':
+                bytes[pos++] = '"';
+                break;
+            case '\\':
+                bytes[pos++] = '\\';
+                break;
+            case '\n':
+                bytes[pos++] = 'n';
+                break;
+            case '\r':
+                bytes[pos++] = 'r';
+                break;
+            case '\t':
+                bytes[pos++] = 't';
+                break;
+            case '\b':
+                bytes[pos++] = 'b';
+                break;
+            case '\f':
+                bytes[pos++] = 'f';
+                break;
+            default:
+                bytes[pos++] = 'u';
+                bytes[pos++] = '0';
+                bytes[pos++] = '0';
+                bytes[pos++] = HEX[c >> 4];
+                bytes[pos++] = HEX[c & 0xF];
+                break;
+        }
+        return pos;
+    }
+
+    private static byte[] ascii(String value) {
+        return value.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    private static final class Buffer {
+
+        private byte[] bytes = new byte[FLUSH_THRESHOLD * 2];
+
+        private int size;
+
+        void ensure(int extra) {
+            if (size + extra > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, size + extra));
+            }
+        }
+
+        void put(byte b) {
+            ensure(1);
+            bytes[size++] = b;
+        }
+
+        void put(byte[] value) {
+            ensure(value.length);
+            System.arraycopy(value, 0, bytes, size, value.length);
+            size += value.length;
+        }
+
+        void putLong(long value) {
+            if (value == Long.MIN_VALUE) {
+                put(ascii(Long.toString(value)));
+                return;
+            }
+            ensure(20);
+            if (value < 0) {
+                bytes[size++] = '-';
+                value = -value;
+            }
+            int digits = 1;
+            for (long v = value; v >= 10; v /= 10) {
+                digits++;
+            }
+            for (int i = size + digits - 1; i >= size; i--) {
+                bytes[i] = (byte) ('0' + value % 10);
+                value /= 10;
+            }
+            size += digits;
+        }
+
+        void flush(OutputStream out) throws IOException {
+            out.write(bytes, 0, size);
+            size = 0;
+        }
+
+        void reset() {
+            size = 0;
+            if (bytes.length > MAX_RETAINED_BUFFER) {
+                bytes = new byte[FLUSH_THRESHOLD * 2];
+            }
+        }
+    }
+
+    /**
+     * Minimal parser for a single employee object. Unknown properties are skipped, like the
+     * application's ObjectMapper does.
+     */
+    private static final class Parser {
+
+        private final byte[] json;
+
+        private int pos;
+
+        Parser(byte[] json) {
+            this.json = json;
+        }
+
+        Employee readEmployee() {
+            Employee employee = new Employee();
+            skipWhitespace();
+            expect('{');
+            skipWhitespace();
+            if (peek() == '}') {
+                pos++;
+                return finish(employee);
+            }
+            while (true) {
+                skipWhitespace();
+                String name = readString();
+                skipWhitespace();
+                expect(':');
+                skipWhitespace();
+                switch (name) {
+                    case "id":
+                        employee.setId(readId());
+                        break;
+                    case "firstName":
+                        employee.setFirstName(readNullableString());
+                        break;
+                    case "lastName":
+                        employee.setLastName(readNullableString());
+                        break;
+                    case "email":
+                        employee.setEmail(readNullableString());
+                        break;
+                    default:
+                        skipValue();
+                }
+                skipWhitespace();
+                byte next = next();
+                if (next == '}') {
+                    return finish(employee);
+                }
+                if (next != ',') {
+                    throw error("Expected ',' or '}'");
+                }
+            }
+        }
+
+        private Employee finish(Employee employee) {
+            skipWhitespace();
+            if (pos != json.length) {
+                throw error("Unexpected content after the employee object");
+            }
+            return employee;
+        }
+
+        private long readId() {
+            if (peek() == 'n') {
+                readLiteral("null");
+                return 0;
+            }
+            if (peek() == '"') {
+                return parseLong(readString());
+            }
+            int start = pos;
+            while (pos < json.length && isNumberChar(json[pos])) {
+                pos++;
+            }
+            return parseLong(new String(json, start, pos - start, StandardCharsets.US_ASCII));
+        }
+
+        private long parseLong(String value) {
+            try {
+                return Long.parseLong(value);
+            } catch (NumberFormatException e) {
+                throw error("Invalid id '" + value + "'");
+            }
+        }
+
+        private String readNullableString() {
+            if (peek() == 'n') {
+                readLiteral("null");
+                return null;
+            }
+            return readString();
+        }
+
+        private String readString() {
+            expect('"');
+            int start = pos;
+            while (pos < json.length && json[pos] != '"' && json[pos] != '\\') {
+                pos++;
+            }
+            if (pos < json.length && json[pos] == '"') {
+                return new String(json, start, pos++ - start, StandardCharsets.UTF_8);
+            }
+            // escapes are ASCII, so splitting the input at them never cuts a UTF-8 sequence
+            StringBuilder value = new StringBuilder().append(new String(json, start, pos - start, StandardCharsets.UTF_8));
+            while (true) {
+                if (pos >= json.length) {
+                    throw error("Unterminated string");
+                }
+                byte b = json[pos];
+                if (b == '"') {
+                    pos++;
+                    return value.toString();
+                }
+                if (b == '\\') {
+                    pos++;
+                    value.append(readEscape());
+                    continue;
+                }
+                int runStart = pos;
+                while (pos < json.length && json[pos] != '"' && json[pos] != '\\') {
+                    pos++;
+                }
+                value.append(new String(json, runStart, pos - runStart, StandardCharsets.UTF_8));
+            }
+        }
+
+        private char readEscape() {
+            byte b = next();
+            switch (b) {
+                case '"':
+                    return '"';
+                case '\\':
+                    return '\\';
+                case '/':
+                    return '/';
+                case 'b':
+                    return '\b';
+                case 'f':
+                    return '\f';
+                case 'n':
+                    return '\n';
+                case 'r':
+                    return '\r';
+                case 't':
+                    return '\t';
+                case 'u':
+                    if (pos + 4 > json.length) {
+                        throw error("Truncated unicode escape");
+                    }
+                    int c = 0;
+                    for (int i = 0; i < 4; i++) {
+                        int digit = Character.digit(json[pos++], 16);
+                        if (digit < 0) {
+                            throw error("Invalid unicode escape");
+                        }
+                        c = (c << 4) | digit;
+                    }
+                    return (char) c;
+                default:
+                    throw error("Invalid escape");
+            }
+        }
+
+        private void skipValue() {
+            byte b = peek();
+            if (b == '"') {
+                readString();
+            } else if (b == '{' || b == '[') {
+                skipContainer();
+            } else if (b == 't') {
+                readLiteral("true");
+            } else if (b == 'f') {
+                readLiteral("false");
+            } else if (b == 'n') {
+                readLiteral("null");
+            } else {
+                int start = pos;
+                while (pos < json.length && isNumberChar(json[pos])) {
+                    pos++;
+                }
+                if (pos == start) {
+                    throw error("Unexpected character");
+                }
+            }
+        }
+
+        private void skipContainer() {
+            int depth = 0;
+            do {
+                byte b = next();
+                if (b == '"') {
+                    pos--;
+                    readString();
+                } else if (b == '{' || b == '[') {
+                    depth++;
+                } else if (b == '}' || b == ']') {
+                    depth--;
+                }
+            } while (depth > 0);
+        }
+
+        private void readLiteral(String literal) {
+            for (int i = 0; i < literal.length(); i++) {
+                if (next() != literal.charAt(i)) {
+                    throw error("Expected " + literal);
+                }
+            }
+        }
+
+        private void skipWhitespace() {
+            while (pos < json.length && (json[pos] == ' ' || json[pos] == '\n' || json[pos] == '\r' || json[pos] == '\t')) {
+                pos++;
+            }
+        }
+
+        private void expect(char c) {
+            if (next() != c) {
+                throw error("Expected '" + c + "'");
+            }
+        }
+
+        private byte peek() {
+            if (pos >= json.length) {
+                throw error("Unexpected end of input");
+            }
+            return json[pos];
+        }
+
+        private byte next() {
+            byte b = peek();
+            pos++;
+            return b;
+        }
+
+        private static boolean isNumberChar(byte b) {
+            return (b >= '0' && b <= '9') || b == '-' || b == '+' || b == '.' || b == 'e' || b == 'E';
+        }
+
+        private IllegalArgumentException error(String message) {
+            return new IllegalArgumentException(message + " at offset " + pos);
+        }
+    }
+}
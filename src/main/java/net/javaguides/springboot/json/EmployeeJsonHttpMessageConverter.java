@@ -0,0 +1,100 @@
+package net.javaguides.springboot.json;
+
+import java.io.IOException;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.lang.reflect.WildcardType;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.AbstractGenericHttpMessageConverter;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+import org.springframework.lang.Nullable;
+
+import net.javaguides.springboot.jfr.OperationRecording;
+import net.javaguides.springboot.model.Employee;
+
+/**
+ * Reads and writes {@link Employee} and {@code List<Employee>} bodies with
+ * {@link EmployeeJsonCodec} instead of going through Jackson. Registered ahead of the
+ * Jackson converter; every other type still falls through to Jackson.
+ */
+public class EmployeeJsonHttpMessageConverter extends AbstractGenericHttpMessageConverter<Object> {
+
+    public EmployeeJsonHttpMessageConverter() {
+        super(MediaType.APPLICATION_JSON, new MediaType("application", "*+json"));
+        setDefaultCharset(StandardCharsets.UTF_8);
+    }
+
+    @Override
+    protected boolean supports(Class<?> clazz) {
+        return Employee.class == clazz;
+    }
+
+    @Override
+    public boolean canRead(Type type, @Nullable Class<?> contextClass, @Nullable MediaType mediaType) {
+        return type == Employee.class && canRead(mediaType);
+    }
+
+    @Override
+    public boolean canWrite(@Nullable Type type, Class<?> clazz, @Nullable MediaType mediaType) {
+        return (type == null ? supports(clazz) : type == Employee.class || isEmployeeList(type)) && canWrite(mediaType);
+    }
+
+    @Override
+    protected void writeInternal(Object body, @Nullable Type type, HttpOutputMessage outputMessage) throws IOException {
+        OperationRecording recording = OperationRecording.current();
+        if (recording == null) {
+            writeBody(body, outputMessage);
+            return;
+        }
+        long start = System.nanoTime();
+        try {
+            writeBody(body, outputMessage);
+        } finally {
+            recording.addSerializationNanos(System.nanoTime() - start);
+        }
+    }
+
+    private static void writeBody(Object body, HttpOutputMessage outputMessage) throws IOException {
+        if (body instanceof List) {
+            EmployeeJsonCodec.writeList((List<?>) body, outputMessage.getBody());
+        } else {
+            EmployeeJsonCodec.write((Employee) body, outputMessage.getBody());
+        }
+    }
+
+    @Override
+    protected Object readInternal(Class<?> clazz, HttpInputMessage inputMessage) throws IOException {
+        try {
+            return EmployeeJsonCodec.read(inputMessage.getBody());
+        } catch (IllegalArgumentException e) {
+            throw new HttpMessageNotReadableException("JSON parse error: " + e.getMessage(), e, inputMessage);
+        }
+    }
+
+    @Override
+    public Object read(Type type, @Nullable Class<?> contextClass, HttpInputMessage inputMessage) throws IOException {
+        return readInternal(Employee.class, inputMessage);
+    }
+
+    private static boolean isEmployeeList(Type type) {
+        if (!(type instanceof ParameterizedType)) {
+            return false;
+        }
+        ParameterizedType parameterized = (ParameterizedType) type;
+        if (!(parameterized.getRawType() instanceof Class)
+                || !List.class.isAssignableFrom((Class<?>) parameterized.getRawType())) {
+            return false;
+        }
+        Type element = parameterized.getActualTypeArguments()[0];
+        if (element instanceof WildcardType) {
+            Type[] upperBounds = ((WildcardType) element).getUpperBounds();
+            element = upperBounds.length == 1 ? upperBounds[0] : null;
+        }
+        return element == Employee.class;
+    }
+}
@@ -0,0 +1,126 @@
+package net.javaguides.springboot.json;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import net.javaguides.springboot.event.EmployeeChangedEvent;
+import net.javaguides.springboot.model.Employee;
+
+/**
+ * Encoded JSON bodies of the employee list and of the most recently read employees, so that
+ * repeated reads of unchanged data skip serialization and are written straight from bytes.
+ *
+ * Entries are keyed by a data version that moves on every change event, i.e. after each write
+ * through the service has committed (and on changes made by other instances). A caller reads
+ * {@link #version()} before it loads the data and hands that version to the put methods; if a
+ * change arrived in between, the freshly encoded body is returned but not kept, so a body read
+ * before a commit is never served after it.
+ *
+ * The list is one entry, dropped by any change. Single employees are kept in a bounded LRU
+ * map and only dropped by a change to that employee, so the hot ones survive unrelated writes.
+ */
+@Component
+public class EmployeeResponseCache {
+
+    private final boolean enabled;
+
+    private final boolean gzip;
+
+    private final int gzipMinBytes;
+
+    private final AtomicLong version = new AtomicLong();
+
+    private volatile Entry all;
+
+    private final Map<Long, EncodedJson> employees;
+
+    public EmployeeResponseCache(@Value("${employees.response-cache.enabled:true}") boolean enabled,
+                                 @Value("${employees.response-cache.hot-employees:1000}") int hotEmployees,
+                                 @Value("${employees.response-cache.gzip:true}") boolean gzip,
+                                 @Value("${employees.response-cache.gzip-min-bytes:1024}") int gzipMinBytes) {
+        this.enabled = enabled;
+        this.gzip = gzip;
+        this.gzipMinBytes = gzipMinBytes;
+        this.employees = Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, EncodedJson> eldest) {
+                return size() > hotEmployees;
+            }
+        });
+    }
+
+    public long version() {
+        return version.get();
+    }
+
+    @Nullable
+    public EncodedJson getAll() {
+        Entry current = all;
+        return current != null && current.version == version.get() ? current.body : null;
+    }
+
+    /**
+     * Encodes the list read at {@code readVersion} and keeps it if nothing changed since.
+     */
+    public EncodedJson putAll(long readVersion, List<Employee> employees) {
+        EncodedJson body = encode(employees);
+        if (enabled && readVersion == version.get()) {
+            all = new Entry(readVersion, body);
+        }
+        return body;
+    }
+
+    @Nullable
+    public EncodedJson getEmployee(long id) {
+        return enabled ? employees.get(id) : null;
+    }
+
+    /**
+     * Encodes the employee read at {@code readVersion} and keeps it if nothing changed since.
+     */
+    public EncodedJson putEmployee(long readVersion, Employee employee) {
+        EncodedJson body = EncodedJson.of(employee);
+        if (enabled && readVersion == version.get()) {
+            employees.put(employee.getId(), body);
+            // a change that moved the version after the check above may already have evicted
+            if (readVersion != version.get()) {
+                employees.remove(employee.getId(), body);
+            }
+        }
+        return body;
+    }
+
+    /**
+     * Encodes a list that must not be cached, e.g. a stale fallback.
+     */
+    public EncodedJson encode(List<Employee> employees) {
+        return EncodedJson.of(employees, gzip ? gzipMinBytes : -1);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onEmployeeChanged(EmployeeChangedEvent event) {
+        version.incrementAndGet();
+        all = null;
+        employees.remove(event.getEmployeeId());
+    }
+
+    private static final class Entry {
+
+        private final long version;
+
+        private final EncodedJson body;
+
+        Entry(long version, EncodedJson body) {
+            this.version = version;
+            this.body = body;
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package net.javaguides.springboot.json;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+import org.springframework.lang.Nullable;
+
+import net.javaguides.springboot.model.Employee;
+
+/**
+ * A response body that has already been encoded as JSON, written out as-is. The gzip
+ * variant is compressed once, by the first request that accepts it, and then reused.
+ */
+public final class EncodedJson {
+
+    private final byte[] bytes;
+
+    private final boolean compressible;
+
+    private volatile byte[] gzipped;
+
+    EncodedJson(byte[] bytes, boolean compressible) {
+        this.bytes = bytes;
+        this.compressible = compressible;
+    }
+
+    public static EncodedJson of(Employee employee) {
+        return new EncodedJson(EmployeeJsonCodec.toBytes(employee), false);
+    }
+
+    /**
+     * Encodes the list; its gzip variant is offered when the JSON is at least
+     * {@code gzipMinBytes} long (never when negative).
+     */
+    public static EncodedJson of(List<Employee> employees, int gzipMinBytes) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(employees.size() * 96 + 2);
+        try {
+            EmployeeJsonCodec.writeList(employees, out);
+        } catch (IOException e) {
+            // a ByteArrayOutputStream doesn't throw
+            throw new UncheckedIOException(e);
+        }
+        return new EncodedJson(out.toByteArray(), gzipMinBytes >= 0 && out.size() >= gzipMinBytes);
+    }
+
+    public byte[] getBytes() {
+        return bytes;
+    }
+
+    /**
+     * Returns the gzip-compressed body, or null when this body isn't worth compressing.
+     */
+    @Nullable
+    public byte[] getGzipped() {
+        if (!compressible) {
+            return null;
+        }
+        byte[] compressed = gzipped;
+        if (compressed == null) {
+            // two requests may both compress it; either result is fine to keep
+            compressed = gzip(bytes);
+            gzipped = compressed;
+        }
+        return compressed;
+    }
+
+    private static byte[] gzip(byte[] bytes) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(bytes.length / 4 + 64);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out, 8192)) {
+            gzip.write(bytes);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,21 @@
+package net.javaguides.springboot.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/**
+ * Body of PATCH /api/employees/email-domain: moves every employee whose email ends in
+ * "@" + from to the same local part "@" + to.
+ */
+@Setter
+@Getter
+@AllArgsConstructor
+@NoArgsConstructor
+public class EmailDomainChange {
+
+    private String from;
+
+    private String to;
+}
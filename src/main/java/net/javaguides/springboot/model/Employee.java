@@ -5,8 +5,13 @@ import javax.persistence.Entity;
 import javax.persistence.GeneratedValue;
 import javax.persistence.GenerationType;
 import javax.persistence.Id;
+import javax.persistence.Index;
+import javax.persistence.PrePersist;
+import javax.persistence.PreUpdate;
 import javax.persistence.Table;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Getter;
@@ -17,9 +22,14 @@ import lombok.Setter;
 @Getter
 @AllArgsConstructor
 @NoArgsConstructor
-@Builder
+@Builder(toBuilder = true)
 @Entity
-@Table(name = "employees")
+@Table(name = "employees", indexes = {
+        @Index(name = "idx_employees_name_id", columnList = "last_name, first_name, id"),
+        @Index(name = "idx_employees_email_id", columnList = "email, id"),
+        @Index(name = "uk_employees_email", columnList = "email", unique = true),
+        @Index(name = "idx_employees_updated_at_id", columnList = "updated_at, id")
+})
 public class Employee {
     
     @Id
@@ -34,4 +44,22 @@ public class Employee {
 
     @Column(nullable = false)
     private String email;    
+
+    // epoch millis of the last write, for delta sync; not part of the API representation
+    @JsonIgnore
+    @Column(name = "updated_at", nullable = false)
+    private long updatedAt;
+
+    public Employee(long id, String firstName, String lastName, String email) {
+        this.id = id;
+        this.firstName = firstName;
+        this.lastName = lastName;
+        this.email = email;
+    }
+
+    @PrePersist
+    @PreUpdate
+    void touch() {
+        updatedAt = System.currentTimeMillis();
+    }
 }
@@ -0,0 +1,43 @@
+package net.javaguides.springboot.model;
+
+import java.util.List;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Employees created or updated, and ids deleted, after a watermark, plus the watermark to
+ * ask from next time.
+ *
+ * Writes stamp their time before they commit, so a row stamped before the read may not have
+ * been visible to it yet. Write transactions are rolled back after
+ * {@link #WRITE_TIMEOUT_SECONDS}, and the next watermark trails the read by
+ * {@link #COMMIT_WINDOW_MILLIS}, twice that: anything stamped before the watermark has
+ * committed before the read or never will, with the second half covering clock differences
+ * between instances. The price is duplicates: every change in the window is sent again on
+ * the next sync, so clients must apply changes idempotently by id.
+ */
+@Getter
+@AllArgsConstructor
+public class EmployeeDelta {
+
+    /**
+     * The longest a transaction that stamps updated_at or writes a tombstone may run.
+     */
+    public static final int WRITE_TIMEOUT_SECONDS = 60;
+
+    public static final long COMMIT_WINDOW_MILLIS = 2 * WRITE_TIMEOUT_SECONDS * 1000L;
+
+    private final List<Employee> changed;
+
+    private final List<Long> deleted;
+
+    private final long watermark;
+
+    /**
+     * @param readStartedMillis the time taken just before the changes were read
+     */
+    public static EmployeeDelta of(List<Employee> changed, List<Long> deleted, long since, long readStartedMillis) {
+        return new EmployeeDelta(changed, deleted, Math.max(since, readStartedMillis - COMMIT_WINDOW_MILLIS));
+    }
+}
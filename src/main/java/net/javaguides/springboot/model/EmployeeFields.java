@@ -0,0 +1,63 @@
+package net.javaguides.springboot.model;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Parses and applies sparse fieldsets (?fields=id,email) for {@link Employee}.
+ */
+public final class EmployeeFields {
+
+    public static final List<String> ALL = List.of("id", "firstName", "lastName", "email");
+
+    private EmployeeFields() {
+    }
+
+    /**
+     * Splits a comma separated list of property names, dropping duplicates and blanks.
+     *
+     * @throws IllegalArgumentException for names that are not {@link Employee} properties
+     */
+    public static List<String> parse(String fields) {
+        List<String> parsed = new ArrayList<>();
+        for (String field : fields.split(",")) {
+            String name = field.trim();
+            if (name.isEmpty() || parsed.contains(name)) {
+                continue;
+            }
+            if (!ALL.contains(name)) {
+                throw new IllegalArgumentException("Unknown employee field: " + name);
+            }
+            parsed.add(name);
+        }
+        if (parsed.isEmpty()) {
+            throw new IllegalArgumentException("No employee fields requested");
+        }
+        return parsed;
+    }
+
+    public static Map<String, Object> project(Employee employee, List<String> fields) {
+        Map<String, Object> values = new LinkedHashMap<>();
+        for (String field : fields) {
+            switch (field) {
+                case "id":
+                    values.put(field, employee.getId());
+                    break;
+                case "firstName":
+                    values.put(field, employee.getFirstName());
+                    break;
+                case "lastName":
+                    values.put(field, employee.getLastName());
+                    break;
+                case "email":
+                    values.put(field, employee.getEmail());
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown employee field: " + field);
+            }
+        }
+        return values;
+    }
+}
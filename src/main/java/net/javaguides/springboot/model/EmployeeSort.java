@@ -0,0 +1,107 @@
+package net.javaguides.springboot.model;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.List;
+
+/**
+ * Sort orders for the employee listing (?sort=lastName,firstName or ?sort=email). Every order
+ * ends with the id, which makes it total, so the last row of a page is a keyset cursor for the
+ * next one. Each order has a composite index with the same columns, so the database walks
+ * the index instead of sorting the table.
+ *
+ * Rows are always ordered by the database, under its collation (case- and accent-insensitive
+ * on MySQL); there is deliberately no Java comparator that could drift from it.
+ */
+public enum EmployeeSort {
+
+    NAME(List.of("lastName", "firstName")),
+    EMAIL(List.of("email"));
+
+    private static final char SEPARATOR = '\u0000';
+
+    private final List<String> properties;
+
+    EmployeeSort(List<String> properties) {
+        this.properties = properties;
+    }
+
+    /**
+     * Sort properties, before the implicit id tie-breaker.
+     */
+    public List<String> getProperties() {
+        return properties;
+    }
+
+    /**
+     * @throws IllegalArgumentException for anything but lastName[,firstName] or email
+     */
+    public static EmployeeSort parse(String sort) {
+        switch (sort.replace(" ", "")) {
+            case "lastName":
+            case "lastName,firstName":
+                return NAME;
+            case "email":
+                return EMAIL;
+            default:
+                throw new IllegalArgumentException("Unsupported sort: " + sort + " (use lastName,firstName or email)");
+        }
+    }
+
+    /**
+     * Opaque, URL-safe cursor pointing just past {@code last}.
+     */
+    public String cursorAfter(Employee last) {
+        StringBuilder cursor = new StringBuilder();
+        for (String property : properties) {
+            cursor.append(value(last, property)).append(SEPARATOR);
+        }
+        cursor.append(last.getId());
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(cursor.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Decodes a cursor into an employee carrying only the sort properties and the id.
+     *
+     * @throws IllegalArgumentException if the cursor was not produced for this order
+     */
+    public Employee parseCursor(String cursor) {
+        String[] parts;
+        long id;
+        try {
+            parts = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8)
+                    .split(String.valueOf(SEPARATOR), -1);
+            if (parts.length != properties.size() + 1) {
+                throw new IllegalArgumentException("Malformed cursor");
+            }
+            id = Long.parseLong(parts[parts.length - 1]);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Malformed cursor: " + cursor, e);
+        }
+        Employee after = Employee.builder().id(id).build();
+        for (int i = 0; i < properties.size(); i++) {
+            switch (properties.get(i)) {
+                case "lastName":
+                    after.setLastName(parts[i]);
+                    break;
+                case "firstName":
+                    after.setFirstName(parts[i]);
+                    break;
+                default:
+                    after.setEmail(parts[i]);
+            }
+        }
+        return after;
+    }
+
+    private static String value(Employee employee, String property) {
+        switch (property) {
+            case "lastName":
+                return employee.getLastName();
+            case "firstName":
+                return employee.getFirstName();
+            default:
+                return employee.getEmail();
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package net.javaguides.springboot.model;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Index;
+import javax.persistence.Table;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/**
+ * Marks a deleted employee, so that delta sync can tell clients to drop it.
+ */
+@Setter
+@Getter
+@AllArgsConstructor
+@NoArgsConstructor
+@Entity
+@Table(name = "employee_tombstones", indexes = {
+        @Index(name = "idx_employee_tombstones_deleted_at", columnList = "deleted_at, employee_id")
+})
+public class EmployeeTombstone {
+
+    @Id
+    @Column(name = "employee_id")
+    private long employeeId;
+
+    // epoch millis
+    @Column(name = "deleted_at", nullable = false)
+    private long deletedAt;
+}
@@ -0,0 +1,19 @@
+package net.javaguides.springboot.model;
+
+import java.util.List;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Outcome of an upsert by email: which employees were created and which already existed
+ * and were overwritten.
+ */
+@Getter
+@AllArgsConstructor
+public class EmployeeUpsertResult {
+
+    private final List<Employee> inserted;
+
+    private final List<Employee> updated;
+}
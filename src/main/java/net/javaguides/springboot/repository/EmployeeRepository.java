@@ -1,17 +1,38 @@
 package net.javaguides.springboot.repository;
 
+import java.util.List;
 import java.util.Optional;
 
+import javax.persistence.LockModeType;
+
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
 import net.javaguides.springboot.model.Employee;
 
-public interface EmployeeRepository extends JpaRepository<Employee, Long> {
+public interface EmployeeRepository extends JpaRepository<Employee, Long>, EmployeeRepositoryCustom {
 
     Optional<Employee> findByEmail(String email);
 
+    List<Employee> findByIdGreaterThanOrderByIdAsc(long id, Pageable pageable);
+
+    List<Employee> findByFirstNameAndLastName(String firstName, String lastName);
+
+    // delta sync: a range scan on idx_employees_updated_at_id
+    List<Employee> findByUpdatedAtGreaterThanOrderByUpdatedAtAscIdAsc(long updatedAt);
+
+    /**
+     * Returns the employees written after {@code since} (epoch millis). A sync from 0 also
+     * returns rows stamped 0, which were created before the updated_at column existed.
+     */
+    default List<Employee> findModifiedSince(long since) {
+        return findByUpdatedAtGreaterThanOrderByUpdatedAtAscIdAsc(since == 0 ? -1 : since);
+    }
+
     @Query("select e from Employee e where e.firstName =?1 and e.lastName = ?2")
     Employee findByJPQL(String firstName, String lastName);
 
@@ -21,4 +42,22 @@ public interface EmployeeRepository extends JpaRepository<Employee, Long> {
     @Query(value = "select * from employees e where e.first_name =:firstName and e.last_name =:lastName", nativeQuery = true)
     Employee findByNativeSQL(@Param("firstName") String firstName, @Param("lastName") String lastName);
 
+    // email domain rewrites: patterns are "%@" + domain, with LIKE wildcards escaped by '!'
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select new net.javaguides.springboot.model.Employee(e.id, e.firstName, e.lastName, e.email)"
+            + " from Employee e where e.email like :pattern escape '!'")
+    List<Employee> findByEmailPatternForUpdate(@Param("pattern") String pattern);
+
+    @Query("select count(e) from Employee e where e.email like :pattern escape '!' and exists"
+            + " (select o.id from Employee o where o.email = concat(substring(e.email, 1, length(e.email) - :fromLength), :toDomain))")
+    long countEmailDomainConflicts(@Param("pattern") String pattern, @Param("fromLength") int fromLength,
+            @Param("toDomain") String toDomain);
+
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("update Employee e set e.email = concat(substring(e.email, 1, length(e.email) - :fromLength), :toDomain),"
+            + " e.updatedAt = :updatedAt where e.email like :pattern escape '!'")
+    int rewriteEmailDomain(@Param("pattern") String pattern, @Param("fromLength") int fromLength,
+            @Param("toDomain") String toDomain, @Param("updatedAt") long updatedAt);
+
 }
@@ -0,0 +1,36 @@
+package net.javaguides.springboot.repository;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import net.javaguides.springboot.model.Employee;
+import net.javaguides.springboot.model.EmployeeSort;
+import net.javaguides.springboot.model.EmployeeUpsertResult;
+
+/**
+ * Queries that can't be expressed as derived or annotated queries on {@link EmployeeRepository}.
+ */
+public interface EmployeeRepositoryCustom {
+
+    /**
+     * Selects only the given {@code Employee} properties, keyed by property name in the
+     * requested order. Results are plain values, not managed entities.
+     */
+    List<Map<String, Object>> findAllProjected(List<String> fields);
+
+    Optional<Map<String, Object>> findProjectedById(long id, List<String> fields);
+
+    /**
+     * Returns up to {@code limit} employees in {@code sort} order, starting just past the
+     * keyset of {@code after} (or from the beginning when null).
+     */
+    List<Employee> findSorted(EmployeeSort sort, Employee after, int limit);
+
+    /**
+     * Inserts each employee, or overwrites the names of the one that already has its email,
+     * with one native upsert statement per row sent as a single JDBC batch. When an email
+     * appears more than once, the last occurrence wins.
+     */
+    EmployeeUpsertResult upsertByEmail(List<Employee> employees);
+}
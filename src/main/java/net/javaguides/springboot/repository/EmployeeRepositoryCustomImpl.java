@@ -0,0 +1,211 @@
+package net.javaguides.springboot.repository;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.persistence.Tuple;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.Order;
+import javax.persistence.criteria.Path;
+import javax.persistence.criteria.Predicate;
+import javax.persistence.criteria.Root;
+
+import org.hibernate.Session;
+import org.springframework.dao.InvalidDataAccessResourceUsageException;
+import org.springframework.transaction.annotation.Transactional;
+
+import net.javaguides.springboot.model.Employee;
+import net.javaguides.springboot.model.EmployeeFields;
+import net.javaguides.springboot.model.EmployeeSort;
+import net.javaguides.springboot.model.EmployeeUpsertResult;
+
+@Transactional(readOnly = true)
+public class EmployeeRepositoryCustomImpl implements EmployeeRepositoryCustom {
+
+    private static final String MYSQL_UPSERT = "insert into employees (first_name, last_name, email, updated_at) values (?, ?, ?, ?)"
+            + " on duplicate key update first_name = values(first_name), last_name = values(last_name),"
+            + " updated_at = values(updated_at)";
+
+    private static final String H2_UPSERT = "merge into employees (first_name, last_name, email, updated_at) key (email)"
+            + " values (?, ?, ?, ?)";
+
+    private static final int IN_LIST_CHUNK = 1000;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public List<Map<String, Object>> findAllProjected(List<String> fields) {
+        CriteriaQuery<Tuple> query = projection(fields);
+        return entityManager.createQuery(query).getResultList().stream()
+                .map(tuple -> toMap(tuple, fields))
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public Optional<Map<String, Object>> findProjectedById(long id, List<String> fields) {
+        CriteriaBuilder builder = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Tuple> query = projection(fields);
+        Root<?> root = query.getRoots().iterator().next();
+        query.where(builder.equal(root.get("id"), id));
+        return entityManager.createQuery(query).getResultList().stream()
+                .findFirst()
+                .map(tuple -> toMap(tuple, fields));
+    }
+
+    @Override
+    public List<Employee> findSorted(EmployeeSort sort, Employee after, int limit) {
+        CriteriaBuilder builder = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Employee> query = builder.createQuery(Employee.class);
+        Root<Employee> root = query.from(Employee.class);
+        List<Order> orders = new ArrayList<>();
+        for (String property : sort.getProperties()) {
+            orders.add(builder.asc(root.get(property)));
+        }
+        orders.add(builder.asc(root.get("id")));
+        query.orderBy(orders);
+        if (after != null) {
+            query.where(keysetAfter(builder, root, sort, after));
+        }
+        return entityManager.createQuery(query).setMaxResults(limit).getResultList();
+    }
+
+    @Override
+    @Transactional
+    public EmployeeUpsertResult upsertByEmail(List<Employee> employees) {
+        Map<String, Employee> byEmail = new LinkedHashMap<>();
+        for (Employee employee : employees) {
+            byEmail.remove(employee.getEmail());
+            byEmail.put(employee.getEmail(), employee);
+        }
+        if (byEmail.isEmpty()) {
+            return new EmployeeUpsertResult(List.of(), List.of());
+        }
+        entityManager.flush();
+        return entityManager.unwrap(Session.class).doReturningWork(connection -> {
+            String upsert = upsertStatement(connection.getMetaData().getDatabaseProductName());
+            List<String> emails = new ArrayList<>(byEmail.keySet());
+            // the update counts can't tell inserts from updates (Connector/J reports a matched,
+            // unchanged row as 1, H2's MERGE always does), so find the existing emails first;
+            // the lock also keeps a concurrent insert from changing the answer
+            Set<String> existing = findByEmails(connection, emails, true).keySet();
+            executeBatch(connection, upsert, byEmail);
+            List<Employee> insertedRows = new ArrayList<>();
+            List<Employee> updatedRows = new ArrayList<>();
+            Map<String, Employee> stored = findByEmails(connection, emails, false);
+            for (String email : emails) {
+                Employee row = stored.get(email);
+                if (row != null) {
+                    (existing.contains(email) ? updatedRows : insertedRows).add(row);
+                }
+            }
+            return new EmployeeUpsertResult(insertedRows, updatedRows);
+        });
+    }
+
+    // MariaDB shares MySQL's upsert syntax; anything else fails before a row is locked
+    static String upsertStatement(String databaseProductName) {
+        String product = databaseProductName.toLowerCase(Locale.ROOT);
+        if (product.contains("mysql") || product.contains("mariadb")) {
+            return MYSQL_UPSERT;
+        }
+        if (product.equals("h2")) {
+            return H2_UPSERT;
+        }
+        throw new InvalidDataAccessResourceUsageException("Upsert by email is not supported on " + databaseProductName);
+    }
+
+    private static int[] executeBatch(Connection connection, String sql, Map<String, Employee> byEmail) throws SQLException {
+        long updatedAt = System.currentTimeMillis();
+        try (PreparedStatement statement = connection.prepareStatement(sql)) {
+            for (Employee employee : byEmail.values()) {
+                statement.setString(1, employee.getFirstName());
+                statement.setString(2, employee.getLastName());
+                statement.setString(3, employee.getEmail());
+                statement.setLong(4, updatedAt);
+                statement.addBatch();
+            }
+            return statement.executeBatch();
+        }
+    }
+
+    private static Map<String, Employee> findByEmails(Connection connection, List<String> emails, boolean forUpdate)
+            throws SQLException {
+        Map<String, Employee> found = new HashMap<>();
+        for (int from = 0; from < emails.size(); from += IN_LIST_CHUNK) {
+            List<String> chunk = emails.subList(from, Math.min(emails.size(), from + IN_LIST_CHUNK));
+            String placeholders = String.join(", ", Collections.nCopies(chunk.size(), "?"));
+            try (PreparedStatement statement = connection.prepareStatement(
+                    "select id, first_name, last_name, email from employees where email in (" + placeholders + ")"
+                    + (forUpdate ? " for update" : ""))) {
+                for (int i = 0; i < chunk.size(); i++) {
+                    statement.setString(i + 1, chunk.get(i));
+                }
+                try (ResultSet rs = statement.executeQuery()) {
+                    while (rs.next()) {
+                        found.put(rs.getString("email"), Employee.builder()
+                                .id(rs.getLong("id"))
+                                .firstName(rs.getString("first_name"))
+                                .lastName(rs.getString("last_name"))
+                                .email(rs.getString("email"))
+                                .build());
+                    }
+                }
+            }
+        }
+        return found;
+    }
+
+    /**
+     * (k1, k2, id) > (v1, v2, after.id), written out as nested comparisons. The redundant
+     * k1 >= v1 conjunct gives the optimizer a plain range on the index's leading column.
+     */
+    private static Predicate keysetAfter(CriteriaBuilder builder, Root<Employee> root, EmployeeSort sort, Employee after) {
+        List<String> properties = sort.getProperties();
+        Predicate predicate = builder.greaterThan(root.get("id"), after.getId());
+        for (int i = properties.size() - 1; i >= 0; i--) {
+            Path<String> key = root.get(properties.get(i));
+            String value = keyValue(after, properties.get(i));
+            predicate = builder.or(builder.greaterThan(key, value), builder.and(builder.equal(key, value), predicate));
+        }
+        Path<String> leading = root.get(properties.get(0));
+        return builder.and(builder.greaterThanOrEqualTo(leading, keyValue(after, properties.get(0))), predicate);
+    }
+
+    private static String keyValue(Employee employee, String property) {
+        return (String) EmployeeFields.project(employee, List.of(property)).get(property);
+    }
+
+    // select only the requested columns instead of loading full entities
+    private CriteriaQuery<Tuple> projection(List<String> fields) {
+        CriteriaQuery<Tuple> query = entityManager.getCriteriaBuilder().createTupleQuery();
+        Root<Employee> root = query.from(Employee.class);
+        query.multiselect(fields.stream()
+                .map(field -> root.get(field).alias(field))
+                .collect(Collectors.toList()));
+        return query;
+    }
+
+    private static Map<String, Object> toMap(Tuple tuple, List<String> fields) {
+        Map<String, Object> values = new LinkedHashMap<>();
+        for (String field : fields) {
+            values.put(field, tuple.get(field));
+        }
+        return values;
+    }
+}
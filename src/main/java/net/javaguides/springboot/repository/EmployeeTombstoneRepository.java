@@ -0,0 +1,16 @@
+package net.javaguides.springboot.repository;
+
+import java.util.List;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import net.javaguides.springboot.model.EmployeeTombstone;
+
+public interface EmployeeTombstoneRepository extends JpaRepository<EmployeeTombstone, Long> {
+
+    // a range scan on idx_employee_tombstones_deleted_at
+    @Query("select t.employeeId from EmployeeTombstone t where t.deletedAt > :since order by t.deletedAt, t.employeeId")
+    List<Long> findEmployeeIdsDeletedAfter(@Param("since") long since);
+}
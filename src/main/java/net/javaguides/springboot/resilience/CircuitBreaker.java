@@ -0,0 +1,89 @@
+package net.javaguides.springboot.resilience;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Consecutive-failure circuit breaker. After {@code failureThreshold} failures in a row it
+ * opens and refuses every call for {@code openMillis}; then it lets exactly one probe call
+ * through. A successful probe closes it again, a failed one re-opens it for another period.
+ */
+public class CircuitBreaker {
+
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    private final int failureThreshold;
+
+    private final long openNanos;
+
+    private final LongSupplier nanoClock;
+
+    // all guarded by "this"
+    private State state = State.CLOSED;
+
+    private int consecutiveFailures;
+
+    private long openedAt;
+
+    private boolean probeInFlight;
+
+    public CircuitBreaker(int failureThreshold, long openMillis) {
+        this(failureThreshold, openMillis, System::nanoTime);
+    }
+
+    CircuitBreaker(int failureThreshold, long openMillis, LongSupplier nanoClock) {
+        this.failureThreshold = failureThreshold;
+        this.openNanos = TimeUnit.MILLISECONDS.toNanos(openMillis);
+        this.nanoClock = nanoClock;
+    }
+
+    /**
+     * Returns whether a call may go ahead. Every permitted call must be followed by exactly
+     * one of {@link #onSuccess()}, {@link #onFailure()} or {@link #release()}.
+     */
+    public synchronized boolean tryAcquire() {
+        switch (state) {
+        case CLOSED:
+            return true;
+        case OPEN:
+            if (nanoClock.getAsLong() - openedAt < openNanos) {
+                return false;
+            }
+            state = State.HALF_OPEN;
+            probeInFlight = true;
+            return true;
+        default:
+            if (probeInFlight) {
+                return false;
+            }
+            probeInFlight = true;
+            return true;
+        }
+    }
+
+    public synchronized void onSuccess() {
+        state = State.CLOSED;
+        consecutiveFailures = 0;
+        probeInFlight = false;
+    }
+
+    public synchronized void onFailure() {
+        consecutiveFailures++;
+        if (state == State.HALF_OPEN || consecutiveFailures >= failureThreshold) {
+            state = State.OPEN;
+            openedAt = nanoClock.getAsLong();
+        }
+        probeInFlight = false;
+    }
+
+    // the call never reached the database, so it says nothing about its health
+    public synchronized void release() {
+        probeInFlight = false;
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+}
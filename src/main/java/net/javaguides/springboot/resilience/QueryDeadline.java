@@ -0,0 +1,67 @@
+package net.javaguides.springboot.resilience;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import org.springframework.dao.QueryTimeoutException;
+
+/**
+ * A per-thread deadline for the JDBC statements of one read. {@link QueryDeadlineDataSource}
+ * gives every statement created while a deadline is set a query timeout of the time left, so
+ * the driver cancels it on the server instead of letting it hold a connection.
+ *
+ * JDBC query timeouts are whole seconds, so the time left is rounded up; callers that need
+ * an exact limit stop waiting on their side as well.
+ */
+public final class QueryDeadline {
+
+    private static final ThreadLocal<Long> DEADLINE = new ThreadLocal<>();
+
+    private QueryDeadline() {
+    }
+
+    /**
+     * Runs the query with the given {@link System#nanoTime()} deadline in force, failing
+     * without touching the database when it has already passed.
+     */
+    public static <T> T call(long deadlineNanos, Supplier<T> query) {
+        if (deadlineNanos - System.nanoTime() <= 0) {
+            throw new QueryTimeoutException("Read deadline passed before the query started");
+        }
+        Long previous = DEADLINE.get();
+        DEADLINE.set(deadlineNanos);
+        try {
+            return query.get();
+        } finally {
+            if (previous == null) {
+                DEADLINE.remove();
+            } else {
+                DEADLINE.set(previous);
+            }
+        }
+    }
+
+    /**
+     * Returns the deadline of the calling thread, or null when none is set; lets work handed
+     * to another thread carry it along.
+     */
+    public static Long current() {
+        return DEADLINE.get();
+    }
+
+    /**
+     * Returns the query timeout for a statement created now, in seconds: 0 (none) without a
+     * deadline, at least 1 with one.
+     */
+    static int remainingSeconds() {
+        Long deadline = DEADLINE.get();
+        if (deadline == null) {
+            return 0;
+        }
+        long remaining = deadline - System.nanoTime();
+        if (remaining <= 0) {
+            throw new QueryTimeoutException("Read deadline passed before the statement was created");
+        }
+        return (int) Math.max(1, (remaining + TimeUnit.SECONDS.toNanos(1) - 1) / TimeUnit.SECONDS.toNanos(1));
+    }
+}
@@ -0,0 +1,65 @@
+package net.javaguides.springboot.resilience;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import javax.sql.DataSource;
+
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+/**
+ * Hands out connections whose statements get a JDBC query timeout from the
+ * {@link QueryDeadline} of the thread that creates them. Statements created without a
+ * deadline are left alone.
+ */
+public class QueryDeadlineDataSource extends DelegatingDataSource {
+
+    public QueryDeadlineDataSource(DataSource target) {
+        super(target);
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return withQueryTimeouts(super.getConnection());
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return withQueryTimeouts(super.getConnection(username, password));
+    }
+
+    private static Connection withQueryTimeouts(Connection connection) {
+        return (Connection) Proxy.newProxyInstance(QueryDeadlineDataSource.class.getClassLoader(),
+                new Class<?>[] { Connection.class }, (proxy, method, args) -> {
+                    Object result = invoke(connection, method, args);
+                    if (result instanceof Statement) {
+                        applyQueryTimeout((Statement) result);
+                    }
+                    return result;
+                });
+    }
+
+    private static void applyQueryTimeout(Statement statement) throws SQLException {
+        try {
+            int timeout = QueryDeadline.remainingSeconds();
+            if (timeout > 0) {
+                statement.setQueryTimeout(timeout);
+            }
+        } catch (RuntimeException | SQLException e) {
+            statement.close();
+            throw e;
+        }
+    }
+
+    private static Object invoke(Connection connection, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(connection, args);
+        } catch (InvocationTargetException e) {
+            throw e.getTargetException();
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package net.javaguides.springboot.resilience;
+
+import lombok.Getter;
+
+/**
+ * A value read for a request, and whether it came straight from the database or is the last
+ * known value served because the database could not answer in time.
+ */
+@Getter
+public class ReadResult<T> {
+
+    private final T value;
+
+    private final boolean stale;
+
+    // whole seconds since the value was read from the database, 0 when fresh
+    private final long ageSeconds;
+
+    private ReadResult(T value, boolean stale, long ageSeconds) {
+        this.value = value;
+        this.stale = stale;
+        this.ageSeconds = ageSeconds;
+    }
+
+    public static <T> ReadResult<T> fresh(T value) {
+        return new ReadResult<>(value, false, 0);
+    }
+
+    public static <T> ReadResult<T> stale(T value, long loadedAtMillis) {
+        return new ReadResult<>(value, true, Math.max(0, (System.currentTimeMillis() - loadedAtMillis) / 1000));
+    }
+}
@@ -0,0 +1,212 @@
+package net.javaguides.springboot.resilience;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import net.javaguides.springboot.concurrent.DatabaseExecutor;
+import net.javaguides.springboot.event.EmployeeChangedEvent;
+import net.javaguides.springboot.exception.DatabaseUnavailableException;
+import net.javaguides.springboot.model.Employee;
+import net.javaguides.springboot.service.EmployeeService;
+
+/**
+ * Keeps the employee-by-id and list reads answering while the database browns out.
+ *
+ * Every read runs under a {@link QueryDeadline}, so the JDBC driver cancels a stuck
+ * statement, and the caller stops waiting after the same time even if the query is still
+ * queued or waiting for a connection. No transaction is opened here: a read the
+ * {@link net.javaguides.springboot.view.EmployeeView} answers never borrows a connection,
+ * and a repository read runs in Spring Data's own read-only transaction. When a read fails or times out, the
+ * last value read for the same key is served instead (marked stale) and a background refresh
+ * retries with backoff. A circuit
+ * breaker stops sending reads to a database that keeps failing; while it is open, reads
+ * are served stale or fail fast with {@link DatabaseUnavailableException}.
+ *
+ * The last known values are kept in a bounded LRU map. Any committed change to an employee
+ * drops its entry and the list, so a fallback doesn't keep serving a value that a later
+ * write replaced.
+ */
+@Component
+public class ResilientEmployeeReads {
+
+    private static final Logger log = LoggerFactory.getLogger(ResilientEmployeeReads.class);
+
+    private static final String ALL = "all";
+
+    private static final long REFRESH_BACKOFF_MILLIS = 250;
+
+    private final EmployeeService employeeService;
+
+    private final DatabaseExecutor databaseExecutor;
+
+    private final long timeoutMillis;
+
+    private final int refreshAttempts;
+
+    private final long maxRefreshDelayMillis;
+
+    private final CircuitBreaker circuitBreaker;
+
+    private final Map<Object, LastKnown> lastKnown;
+
+    private final Set<Object> refreshing = ConcurrentHashMap.newKeySet();
+
+    private final ScheduledExecutorService refresher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "employee-read-refresh");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public ResilientEmployeeReads(EmployeeService employeeService, DatabaseExecutor databaseExecutor,
+                                  @Value("${employees.reads.timeout-ms:2000}") long timeoutMillis,
+                                  @Value("${employees.reads.last-known-entries:10000}") int lastKnownEntries,
+                                  @Value("${employees.reads.refresh-attempts:5}") int refreshAttempts,
+                                  @Value("${employees.reads.breaker.failure-threshold:5}") int failureThreshold,
+                                  @Value("${employees.reads.breaker.open-ms:10000}") long openMillis,
+                                  MeterRegistry meterRegistry) {
+        this.employeeService = employeeService;
+        this.databaseExecutor = databaseExecutor;
+        this.timeoutMillis = timeoutMillis;
+        this.refreshAttempts = refreshAttempts;
+        this.maxRefreshDelayMillis = openMillis;
+        this.circuitBreaker = new CircuitBreaker(failureThreshold, openMillis);
+        this.lastKnown = Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Object, LastKnown> eldest) {
+                return size() > lastKnownEntries;
+            }
+        });
+        Gauge.builder("employees.db.circuit.open", circuitBreaker,
+                breaker -> breaker.getState() == CircuitBreaker.State.CLOSED ? 0 : 1)
+                .register(meterRegistry);
+    }
+
+    public CompletableFuture<ReadResult<Optional<Employee>>> getEmployeeById(long id) {
+        return read(id, () -> employeeService.getEmployeeById(id));
+    }
+
+    public CompletableFuture<ReadResult<List<Employee>>> getAllEmployees() {
+        return read(ALL, employeeService::getAllEmployees);
+    }
+
+    public CircuitBreaker.State getCircuitState() {
+        return circuitBreaker.getState();
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onEmployeeChanged(EmployeeChangedEvent event) {
+        lastKnown.remove(event.getEmployeeId());
+        lastKnown.remove(ALL);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        refresher.shutdownNow();
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> CompletableFuture<ReadResult<T>> read(Object key, Supplier<T> query) {
+        return load(key, query).handle((value, error) -> {
+            if (error == null) {
+                return ReadResult.fresh(value);
+            }
+            Throwable cause = unwrap(error);
+            LastKnown fallback = lastKnown.get(key);
+            if (fallback == null) {
+                if (cause instanceof RejectedExecutionException || cause instanceof DatabaseUnavailableException) {
+                    throw (RuntimeException) cause;
+                }
+                throw new DatabaseUnavailableException("Employee read failed and no earlier result is cached", cause);
+            }
+            scheduleRefresh(key, query, 0);
+            return ReadResult.stale((T) fallback.value, fallback.loadedAtMillis);
+        });
+    }
+
+    private <T> CompletableFuture<T> load(Object key, Supplier<T> query) {
+        if (!circuitBreaker.tryAcquire()) {
+            return CompletableFuture.failedFuture(new DatabaseUnavailableException("Database circuit breaker is open"));
+        }
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        CompletableFuture<T> running = databaseExecutor.submit(
+                () -> QueryDeadline.call(deadline, query));
+        // remembered even when it completes after the caller gave up on it
+        running.thenAccept(value -> lastKnown.put(key, new LastKnown(value, System.currentTimeMillis())));
+        return running.copy()
+                .orTimeout(timeoutMillis, TimeUnit.MILLISECONDS)
+                .whenComplete((value, error) -> {
+                    if (error == null) {
+                        circuitBreaker.onSuccess();
+                    } else if (unwrap(error) instanceof RejectedExecutionException) {
+                        circuitBreaker.release();
+                    } else {
+                        circuitBreaker.onFailure();
+                    }
+                });
+    }
+
+    private <T> void scheduleRefresh(Object key, Supplier<T> query, int attempt) {
+        if (attempt == 0 && !refreshing.add(key)) {
+            return;
+        }
+        if (attempt >= refreshAttempts) {
+            log.warn("Giving up refreshing employee read {} after {} attempts", key, attempt);
+            refreshing.remove(key);
+            return;
+        }
+        long delay = Math.min(REFRESH_BACKOFF_MILLIS << attempt, maxRefreshDelayMillis);
+        try {
+            refresher.schedule(() -> load(key, query).whenComplete((value, error) -> {
+                if (error == null) {
+                    refreshing.remove(key);
+                } else {
+                    scheduleRefresh(key, query, attempt + 1);
+                }
+            }), delay, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            refreshing.remove(key);
+        }
+    }
+
+    private static Throwable unwrap(Throwable error) {
+        while ((error instanceof CompletionException || error instanceof ExecutionException) && error.getCause() != null) {
+            error = error.getCause();
+        }
+        return error;
+    }
+
+    private static final class LastKnown {
+
+        private final Object value;
+
+        private final long loadedAtMillis;
+
+        LastKnown(Object value, long loadedAtMillis) {
+            this.value = value;
+            this.loadedAtMillis = loadedAtMillis;
+        }
+    }
+}
@@ -0,0 +1,441 @@
+package net.javaguides.springboot.search;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import javax.annotation.PostConstruct;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import net.javaguides.springboot.event.EmployeeChangedEvent;
+import net.javaguides.springboot.model.Employee;
+import net.javaguides.springboot.service.EmployeeService;
+
+/**
+ * Type-ahead search over first name, last name and email. It is built from the service at
+ * startup and kept current from {@link EmployeeChangedEvent}s. Set
+ * employees.search.enabled=false to skip building it; searches are then refused.
+ *
+ * The index holds no employees, only ids and, per id, the dictionary terms it was indexed
+ * under. The rows of a result page are read through the service, so they come from the
+ * in-memory view when that is enabled, else from one primary-key query.
+ *
+ * Terms are the lower-cased names, the full email and the parts of the email's local part.
+ * They are kept in a sorted dictionary, so a prefix query is a range scan, and each term
+ * points at a {@link Postings} list of employee ids. Terms are also indexed by trigram, so a
+ * query word with a typo can still find terms whose leading characters are within one or
+ * two edits of it.
+ *
+ * Each query word scores 3 for an exact term, 2 for a prefix and 1 for a fuzzy match. An
+ * employee has to match every word, and the best-scoring employees are returned.
+ *
+ * Results are approximate for very short prefixes: a word collects at most
+ * employees.search.max-candidates ids (exact term matches first, then prefix terms in
+ * dictionary order) and ranking only considers those, so a better match beyond the cap
+ * can be missed.
+ */
+@Component
+public class EmployeeSearchIndex {
+
+    private static final Logger log = LoggerFactory.getLogger(EmployeeSearchIndex.class);
+
+    private static final int EXACT = 3;
+
+    private static final int PREFIX = 2;
+
+    private static final int FUZZY = 1;
+
+    private final EmployeeService employeeService;
+
+    private final boolean enabled;
+
+    private final int maxCandidates;
+
+    private final NavigableMap<String, Postings> terms = new TreeMap<>();
+
+    private final Map<String, Set<String>> trigrams = new HashMap<>();
+
+    // employee id -> the terms it is indexed under, the same instances as the dictionary keys
+    private final Map<Long, String[]> indexedTerms = new HashMap<>();
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    public EmployeeSearchIndex(EmployeeService employeeService,
+                               @Value("${employees.search.enabled:true}") boolean enabled,
+                               @Value("${employees.search.max-candidates:10000}") int maxCandidates) {
+        this.employeeService = employeeService;
+        this.enabled = enabled;
+        this.maxCandidates = maxCandidates;
+    }
+
+    @PostConstruct
+    public void load() {
+        if (!enabled) {
+            return;
+        }
+        long start = System.nanoTime();
+        List<Employee> all = employeeService.getAllEmployees();
+        Lock writeLock = lock.writeLock();
+        writeLock.lock();
+        try {
+            terms.clear();
+            trigrams.clear();
+            indexedTerms.clear();
+            all.forEach(this::put);
+        } finally {
+            writeLock.unlock();
+        }
+        long bytes = estimatedBytes();
+        log.info("Indexed {} employees ({} terms) for search in {} ms, ~{} KB estimated, ~{} MB per million employees",
+                all.size(), terms.size(), (System.nanoTime() - start) / 1_000_000, bytes / 1024,
+                all.isEmpty() ? 0 : bytes * 1_000_000 / all.size() / (1024 * 1024));
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onEmployeeChanged(EmployeeChangedEvent event) {
+        if (!enabled) {
+            return;
+        }
+        Lock writeLock = lock.writeLock();
+        writeLock.lock();
+        try {
+            remove(event.getEmployeeId());
+            if (event.getEmployee() != null) {
+                put(event.getEmployee());
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public int size() {
+        Lock readLock = lock.readLock();
+        readLock.lock();
+        try {
+            return indexedTerms.size();
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    /**
+     * Returns up to {@code limit} employees matching every word of the query, best first.
+     *
+     * @throws IllegalStateException if the index is disabled
+     */
+    public List<Employee> search(String query, int limit) {
+        if (!enabled) {
+            throw new IllegalStateException("Employee search is disabled (employees.search.enabled=false)");
+        }
+        List<String> words = words(query);
+        if (words.isEmpty() || limit <= 0) {
+            return List.of();
+        }
+        // read outside the lock: the rows may come from the database
+        return load(rank(words, limit));
+    }
+
+    private List<Long> rank(List<String> words, int limit) {
+        Lock readLock = lock.readLock();
+        readLock.lock();
+        try {
+            Map<Long, Integer> scores = null;
+            for (String word : words) {
+                Map<Long, Integer> wordScores = score(word, limit);
+                if (scores == null) {
+                    scores = wordScores;
+                } else {
+                    Map<Long, Integer> both = new HashMap<>();
+                    for (Map.Entry<Long, Integer> entry : scores.entrySet()) {
+                        Integer score = wordScores.get(entry.getKey());
+                        if (score != null) {
+                            both.put(entry.getKey(), entry.getValue() + score);
+                        }
+                    }
+                    scores = both;
+                }
+                if (scores.isEmpty()) {
+                    return List.of();
+                }
+            }
+            return topK(scores, limit);
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    // in rank order; an employee deleted since it was ranked is left out
+    private List<Employee> load(List<Long> ranked) {
+        if (ranked.isEmpty()) {
+            return List.of();
+        }
+        Map<Long, Employee> rows = new HashMap<>();
+        for (Employee employee : employeeService.getEmployeesById(ranked)) {
+            rows.put(employee.getId(), employee);
+        }
+        List<Employee> results = new ArrayList<>(ranked.size());
+        for (Long id : ranked) {
+            Employee employee = rows.get(id);
+            if (employee != null) {
+                results.add(employee);
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Rough heap footprint of the index: dictionary, trigrams, postings and per-id terms.
+     */
+    public long estimatedBytes() {
+        Lock readLock = lock.readLock();
+        readLock.lock();
+        try {
+            long bytes = 0;
+            for (Map.Entry<String, Postings> entry : terms.entrySet()) {
+                bytes += 40 + stringBytes(entry.getKey()) + entry.getValue().estimatedBytes();
+            }
+            for (Set<String> trigramTerms : trigrams.values()) {
+                // map entry + key string + the set and its entries, which share the term strings
+                bytes += 32 + stringBytes("$ab") + 64 + 36L * trigramTerms.size();
+            }
+            for (String[] termsOfEmployee : indexedTerms.values()) {
+                // map entry + boxed id + the array, whose strings are the dictionary's
+                bytes += 32 + 16 + 16 + 4L * termsOfEmployee.length;
+            }
+            return bytes;
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    private Map<Long, Integer> score(String word, int limit) {
+        Map<Long, Integer> scores = new HashMap<>();
+        for (Map.Entry<String, Postings> entry : terms.subMap(word, true, word + Character.MAX_VALUE, true).entrySet()) {
+            int score = entry.getKey().equals(word) ? EXACT : PREFIX;
+            entry.getValue().forEach(id -> scores.merge(id, score, Math::max));
+            // a one- or two-letter prefix can match most of the index; stop collecting early,
+            // which makes the ranking approximate (see the class comment)
+            if (scores.size() >= maxCandidates) {
+                return scores;
+            }
+        }
+        if (word.length() >= 3 && scores.size() < limit) {
+            int maxEdits = word.length() < 6 ? 1 : 2;
+            for (String term : fuzzyCandidates(word, maxEdits)) {
+                String head = term.substring(0, Math.min(term.length(), word.length()));
+                if (!term.startsWith(word) && editDistance(word, head, maxEdits) <= maxEdits) {
+                    terms.get(term).forEach(id -> scores.merge(id, FUZZY, Math::max));
+                }
+            }
+        }
+        return scores;
+    }
+
+    /**
+     * Terms sharing enough leading-padded trigrams with the word to possibly be within
+     * {@code maxEdits} of it: each edit destroys at most three trigrams.
+     */
+    private Set<String> fuzzyCandidates(String word, int maxEdits) {
+        List<String> wordTrigrams = trigramsOf(word);
+        int required = Math.max(1, wordTrigrams.size() - 3 * maxEdits);
+        Map<String, Integer> shared = new HashMap<>();
+        for (String trigram : wordTrigrams) {
+            Set<String> matches = trigrams.get(trigram);
+            if (matches != null) {
+                for (String term : matches) {
+                    shared.merge(term, 1, Integer::sum);
+                }
+            }
+        }
+        Set<String> candidates = new HashSet<>();
+        shared.forEach((term, count) -> {
+            if (count >= required) {
+                candidates.add(term);
+            }
+        });
+        return candidates;
+    }
+
+    private List<Long> topK(Map<Long, Integer> scores, int limit) {
+        Comparator<Map.Entry<Long, Integer>> better = Map.Entry.<Long, Integer>comparingByValue()
+                .reversed()
+                .thenComparing(Map.Entry.comparingByKey());
+        PriorityQueue<Map.Entry<Long, Integer>> top = new PriorityQueue<>(limit + 1, better.reversed());
+        for (Map.Entry<Long, Integer> entry : scores.entrySet()) {
+            top.add(entry);
+            if (top.size() > limit) {
+                top.poll();
+            }
+        }
+        List<Map.Entry<Long, Integer>> ranked = new ArrayList<>(top);
+        ranked.sort(better);
+        List<Long> ids = new ArrayList<>(ranked.size());
+        for (Map.Entry<Long, Integer> entry : ranked) {
+            ids.add(entry.getKey());
+        }
+        return ids;
+    }
+
+    // callers hold the write lock
+    private void put(Employee employee) {
+        Set<String> termsOfEmployee = termsOf(employee);
+        String[] indexed = new String[termsOfEmployee.size()];
+        int i = 0;
+        for (String term : termsOfEmployee) {
+            Map.Entry<String, Postings> entry = terms.ceilingEntry(term);
+            if (entry == null || !entry.getKey().equals(term)) {
+                terms.put(term, new Postings());
+                if (isWord(term)) {
+                    for (String trigram : trigramsOf(term)) {
+                        trigrams.computeIfAbsent(trigram, key -> new HashSet<>()).add(term);
+                    }
+                }
+                entry = terms.ceilingEntry(term);
+            }
+            entry.getValue().add(employee.getId());
+            // the dictionary's instance, so each term string exists once
+            indexed[i++] = entry.getKey();
+        }
+        indexedTerms.put(employee.getId(), indexed);
+    }
+
+    // callers hold the write lock
+    private void remove(long id) {
+        String[] existing = indexedTerms.remove(id);
+        if (existing == null) {
+            return;
+        }
+        for (String term : existing) {
+            Postings postings = terms.get(term);
+            if (postings != null && postings.remove(id) && postings.isEmpty()) {
+                terms.remove(term);
+                for (String trigram : isWord(term) ? trigramsOf(term) : List.<String>of()) {
+                    Set<String> trigramTerms = trigrams.get(trigram);
+                    if (trigramTerms != null && trigramTerms.remove(term) && trigramTerms.isEmpty()) {
+                        trigrams.remove(trigram);
+                    }
+                }
+            }
+        }
+    }
+
+    static Set<String> termsOf(Employee employee) {
+        Set<String> result = new LinkedHashSet<>();
+        addWords(result, employee.getFirstName());
+        addWords(result, employee.getLastName());
+        if (employee.getEmail() != null) {
+            String email = normalize(employee.getEmail());
+            result.add(email);
+            int at = email.indexOf('@');
+            addWords(result, (at >= 0 ? email.substring(0, at) : email).replaceAll("[._+-]", " "));
+        }
+        return result;
+    }
+
+    // full emails and tokens with digits (jsmith2, 1984) are only matched exactly or by
+    // prefix; fuzzy matching them mostly adds noise, and they would swamp the trigram sets
+    private static boolean isWord(String term) {
+        for (int i = 0; i < term.length(); i++) {
+            char c = term.charAt(i);
+            if (c == '@' || Character.isDigit(c)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static void addWords(Set<String> result, String text) {
+        if (text != null) {
+            result.addAll(words(text));
+        }
+    }
+
+    private static List<String> words(String text) {
+        List<String> words = new ArrayList<>();
+        if (text == null) {
+            return words;
+        }
+        for (String word : normalize(text).split("\\s+")) {
+            if (!word.isEmpty()) {
+                words.add(word);
+            }
+        }
+        return words;
+    }
+
+    private static String normalize(String text) {
+        return text.trim().toLowerCase(Locale.ROOT);
+    }
+
+    // padded at the start, so the first letters of a term get trigrams of their own
+    private static List<String> trigramsOf(String term) {
+        String padded = "$$" + term;
+        List<String> result = new ArrayList<>(padded.length() - 2);
+        for (int i = 0; i + 3 <= padded.length(); i++) {
+            result.add(padded.substring(i, i + 3));
+        }
+        return result;
+    }
+
+    /**
+     * Edit distance counting insertions, deletions, substitutions and transpositions of
+     * adjacent letters (optimal string alignment). Gives up with {@code max + 1} once a
+     * whole row exceeds {@code max}.
+     */
+    static int editDistance(String a, String b, int max) {
+        if (Math.abs(a.length() - b.length()) > max) {
+            return max + 1;
+        }
+        int[] beforePrevious = new int[b.length() + 1];
+        int[] previous = new int[b.length() + 1];
+        int[] current = new int[b.length() + 1];
+        for (int j = 0; j <= b.length(); j++) {
+            previous[j] = j;
+        }
+        for (int i = 1; i <= a.length(); i++) {
+            current[0] = i;
+            int rowMin = current[0];
+            for (int j = 1; j <= b.length(); j++) {
+                int cost = a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1;
+                current[j] = Math.min(previous[j - 1] + cost, Math.min(previous[j], current[j - 1]) + 1);
+                if (i > 1 && j > 1 && a.charAt(i - 1) == b.charAt(j - 2) && a.charAt(i - 2) == b.charAt(j - 1)) {
+                    current[j] = Math.min(current[j], beforePrevious[j - 2] + 1);
+                }
+                rowMin = Math.min(rowMin, current[j]);
+            }
+            if (rowMin > max) {
+                return max + 1;
+            }
+            int[] recycled = beforePrevious;
+            beforePrevious = previous;
+            previous = current;
+            current = recycled;
+        }
+        return previous[b.length()];
+    }
+
+    private static long stringBytes(String value) {
+        return value == null ? 0 : 40 + value.length();
+    }
+}
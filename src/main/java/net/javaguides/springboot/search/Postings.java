@@ -0,0 +1,61 @@
+package net.javaguides.springboot.search;
+
+import java.util.Arrays;
+import java.util.function.LongConsumer;
+
+/**
+ * Sorted, duplicate-free list of employee ids backed by a primitive array: 8 bytes per
+ * posting instead of a boxed Long plus a set entry.
+ */
+final class Postings {
+
+    private long[] ids = new long[2];
+
+    private int size;
+
+    boolean add(long id) {
+        int index = Arrays.binarySearch(ids, 0, size, id);
+        if (index >= 0) {
+            return false;
+        }
+        int insertAt = -index - 1;
+        if (size == ids.length) {
+            ids = Arrays.copyOf(ids, size * 2);
+        }
+        System.arraycopy(ids, insertAt, ids, insertAt + 1, size - insertAt);
+        ids[insertAt] = id;
+        size++;
+        return true;
+    }
+
+    boolean remove(long id) {
+        int index = Arrays.binarySearch(ids, 0, size, id);
+        if (index < 0) {
+            return false;
+        }
+        System.arraycopy(ids, index + 1, ids, index, size - index - 1);
+        size--;
+        if (size > 0 && size * 4 < ids.length) {
+            ids = Arrays.copyOf(ids, Math.max(2, ids.length / 2));
+        }
+        return true;
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    void forEach(LongConsumer consumer) {
+        for (int i = 0; i < size; i++) {
+            consumer.accept(ids[i]);
+        }
+    }
+
+    long estimatedBytes() {
+        return 16 + 16 + 8L * ids.length;
+    }
+}
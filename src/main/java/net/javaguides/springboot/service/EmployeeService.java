@@ -1,9 +1,14 @@
 package net.javaguides.springboot.service;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 import net.javaguides.springboot.model.Employee;
+import net.javaguides.springboot.model.EmployeeDelta;
+import net.javaguides.springboot.model.EmployeeSort;
+import net.javaguides.springboot.model.EmployeeUpsertResult;
 
 public interface EmployeeService {
     Employee saveEmployee(Employee employee);
@@ -12,7 +17,45 @@ public interface EmployeeService {
 
     Optional<Employee> getEmployeeById(long id);
 
+    /**
+     * Returns the employees that exist among {@code ids}, in no particular order.
+     */
+    List<Employee> getEmployeesById(Collection<Long> ids);
+
+    Optional<Employee> getEmployeeByEmail(String email);
+
+    List<Employee> getEmployeesByName(String firstName, String lastName);
+
+    /**
+     * Returns up to {@code limit} employees with an id greater than {@code afterId}, in id
+     * order, for reading the whole collection in keyset pages.
+     */
+    List<Employee> getEmployeesAfter(long afterId, int limit);
+
+    List<Map<String, Object>> getAllEmployees(List<String> fields);
+
+    Optional<Map<String, Object>> getEmployeeById(long id, List<String> fields);
+
+    List<Employee> getEmployeesSorted(EmployeeSort sort, Employee after, int limit);
+
     Employee updateEmployee(Employee updatedEmployee);
 
     void deleteEmployee(long id);
+
+    /**
+     * Creates or overwrites employees keyed by email, reporting which were created.
+     */
+    EmployeeUpsertResult upsertEmployees(List<Employee> employees);
+
+    /**
+     * Moves every employee with an email in {@code fromDomain} to {@code toDomain} and
+     * returns how many were changed.
+     */
+    int changeEmailDomain(String fromDomain, String toDomain);
+
+    /**
+     * Returns the employees written and the ids deleted after {@code since} (epoch millis,
+     * 0 for everything), always read from the database.
+     */
+    EmployeeDelta getChangesSince(long since);
 }
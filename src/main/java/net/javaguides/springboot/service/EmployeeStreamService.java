@@ -0,0 +1,12 @@
+package net.javaguides.springboot.service;
+
+import net.javaguides.springboot.model.Employee;
+import reactor.core.publisher.Flux;
+
+public interface EmployeeStreamService {
+
+    /**
+     * Every employee in id order, read a page at a time as the subscriber asks for more.
+     */
+    Flux<Employee> streamAllEmployees();
+}
@@ -1,54 +1,198 @@
 package net.javaguides.springboot.service.impl;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.stream.Collectors;
 
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
+import net.javaguides.springboot.event.EmployeeChangedEvent;
 import net.javaguides.springboot.exception.ResourceNotFoundException;
 import net.javaguides.springboot.model.Employee;
+import net.javaguides.springboot.model.EmployeeDelta;
+import net.javaguides.springboot.model.EmployeeFields;
+import net.javaguides.springboot.model.EmployeeSort;
+import net.javaguides.springboot.model.EmployeeTombstone;
+import net.javaguides.springboot.model.EmployeeUpsertResult;
 import net.javaguides.springboot.repository.EmployeeRepository;
+import net.javaguides.springboot.repository.EmployeeTombstoneRepository;
 import net.javaguides.springboot.service.EmployeeService;
+import net.javaguides.springboot.view.EmployeeView;
 
 @Service
+@ConditionalOnProperty(name = "employees.sharding.enabled", havingValue = "false", matchIfMissing = true)
 public class EmployeeServiceImpl implements EmployeeService{
 
     private EmployeeRepository employeeRepository;
 
-    public EmployeeServiceImpl(EmployeeRepository employeeRepository) {
+    private ApplicationEventPublisher eventPublisher;
+
+    private EmployeeView employeeView;
+
+    private EmployeeTombstoneRepository tombstoneRepository;
+
+    public EmployeeServiceImpl(EmployeeRepository employeeRepository, ApplicationEventPublisher eventPublisher,
+            EmployeeView employeeView, EmployeeTombstoneRepository tombstoneRepository) {
         this.employeeRepository = employeeRepository;
+        this.eventPublisher = eventPublisher;
+        this.employeeView = employeeView;
+        this.tombstoneRepository = tombstoneRepository;
     }
 
+    // writes are bounded so delta sync's commit window covers them, see EmployeeDelta
     @Override
+    @Transactional(timeout = EmployeeDelta.WRITE_TIMEOUT_SECONDS)
     public Employee saveEmployee(Employee employee) {
         
-        Optional<Employee> savedEmployee = employeeRepository.findByEmail(employee.getEmail());
+        Optional<Employee> savedEmployee = employeeView.isEnabled()
+                ? employeeView.findByEmail(employee.getEmail())
+                : employeeRepository.findByEmail(employee.getEmail());
         
         if(savedEmployee.isPresent()) {
             throw new ResourceNotFoundException("Employee already exists with given email: " + employee.getEmail());
         }
 
-        return employeeRepository.save(employee);
+        Employee createdEmployee = employeeRepository.save(employee);
+        eventPublisher.publishEvent(EmployeeChangedEvent.created(createdEmployee));
+        return createdEmployee;
     }
 
     @Override
     public List<Employee> getAllEmployees() {
+        if (employeeView.isEnabled()) {
+            return employeeView.findAll();
+        }
         return employeeRepository.findAll();
     }
 
     @Override
-    public Optional<Employee> getEmployeeById(long id) {    
+    public Optional<Employee> getEmployeeById(long id) {
+        if (employeeView.isEnabled()) {
+            return employeeView.findById(id);
+        }
         return employeeRepository.findById(id);
     }
 
     @Override
+    public List<Employee> getEmployeesById(Collection<Long> ids) {
+        if (employeeView.isEnabled()) {
+            return employeeView.findAllById(ids);
+        }
+        return employeeRepository.findAllById(ids);
+    }
+
+    @Override
+    public Optional<Employee> getEmployeeByEmail(String email) {
+        if (employeeView.isEnabled()) {
+            return employeeView.findByEmail(email);
+        }
+        return employeeRepository.findByEmail(email);
+    }
+
+    @Override
+    public List<Employee> getEmployeesByName(String firstName, String lastName) {
+        if (employeeView.isEnabled()) {
+            return employeeView.findByName(firstName, lastName);
+        }
+        return employeeRepository.findByFirstNameAndLastName(firstName, lastName);
+    }
+
+    // the view has no id order to seek in, so pages always come from the database's primary key
+    @Override
+    public List<Employee> getEmployeesAfter(long afterId, int limit) {
+        return employeeRepository.findByIdGreaterThanOrderByIdAsc(afterId, PageRequest.of(0, limit));
+    }
+
+    @Override
+    public List<Map<String, Object>> getAllEmployees(List<String> fields) {
+        if (employeeView.isEnabled()) {
+            return employeeView.findAll().stream()
+                    .map(employee -> EmployeeFields.project(employee, fields))
+                    .collect(Collectors.toList());
+        }
+        return employeeRepository.findAllProjected(fields);
+    }
+
+    @Override
+    public Optional<Map<String, Object>> getEmployeeById(long id, List<String> fields) {
+        if (employeeView.isEnabled()) {
+            return employeeView.findById(id).map(employee -> EmployeeFields.project(employee, fields));
+        }
+        return employeeRepository.findProjectedById(id, fields);
+    }
+
+    // always the database: the order follows its collation (case-insensitive on MySQL), which
+    // the view can't reproduce, and the keyset cursors have to match it
+    @Override
+    public List<Employee> getEmployeesSorted(EmployeeSort sort, Employee after, int limit) {
+        return employeeRepository.findSorted(sort, after, limit);
+    }
+
+    @Override
+    @Transactional(timeout = EmployeeDelta.WRITE_TIMEOUT_SECONDS)
     public Employee updateEmployee(Employee updatedEmployee) {
-        return employeeRepository.save(updatedEmployee);
+        Employee savedEmployee = employeeRepository.save(updatedEmployee);
+        eventPublisher.publishEvent(EmployeeChangedEvent.updated(savedEmployee));
+        return savedEmployee;
     }
 
+    // the tombstone commits with the delete, so delta sync never misses it
     @Override
+    @Transactional(timeout = EmployeeDelta.WRITE_TIMEOUT_SECONDS)
     public void deleteEmployee(long id) {
-        employeeRepository.deleteById(id);        
+        employeeRepository.deleteById(id);
+        tombstoneRepository.save(new EmployeeTombstone(id, System.currentTimeMillis()));
+        eventPublisher.publishEvent(EmployeeChangedEvent.deleted(id));
+    }
+
+    @Override
+    @Transactional(timeout = EmployeeDelta.WRITE_TIMEOUT_SECONDS)
+    public EmployeeUpsertResult upsertEmployees(List<Employee> employees) {
+        EmployeeUpsertResult result = employeeRepository.upsertByEmail(employees);
+        result.getInserted().forEach(employee -> eventPublisher.publishEvent(EmployeeChangedEvent.created(employee)));
+        result.getUpdated().forEach(employee -> eventPublisher.publishEvent(EmployeeChangedEvent.updated(employee)));
+        return result;
     }
-    
+
+    /**
+     * One set-based UPDATE in one transaction. The affected rows are read first under a
+     * write lock, so the change events that refresh the caches name exactly the rows the
+     * UPDATE touched.
+     */
+    @Override
+    @Transactional(timeout = EmployeeDelta.WRITE_TIMEOUT_SECONDS)
+    public int changeEmailDomain(String fromDomain, String toDomain) {
+        String pattern = "%@" + fromDomain.replace("!", "!!").replace("%", "!%").replace("_", "!_");
+        List<Employee> affected = employeeRepository.findByEmailPatternForUpdate(pattern);
+        if (affected.isEmpty()) {
+            return 0;
+        }
+        if (employeeRepository.countEmailDomainConflicts(pattern, fromDomain.length(), toDomain) > 0) {
+            throw new ResourceNotFoundException("Employee already exists with an email in domain: " + toDomain);
+        }
+        int updated = employeeRepository.rewriteEmailDomain(pattern, fromDomain.length(), toDomain,
+                System.currentTimeMillis());
+        for (Employee employee : affected) {
+            String email = employee.getEmail();
+            employee.setEmail(email.substring(0, email.length() - fromDomain.length()) + toDomain);
+            eventPublisher.publishEvent(EmployeeChangedEvent.updated(employee));
+        }
+        return updated;
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public EmployeeDelta getChangesSince(long since) {
+        long readStarted = System.currentTimeMillis();
+        List<Employee> changed = employeeRepository.findModifiedSince(since);
+        List<Long> deleted = tombstoneRepository.findEmployeeIdsDeletedAfter(since);
+        return EmployeeDelta.of(changed, deleted, since, readStarted);
+    }
+
 }
@@ -0,0 +1,61 @@
+package net.javaguides.springboot.service.impl;
+
+import java.util.List;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import net.javaguides.springboot.concurrent.DatabaseExecutor;
+import net.javaguides.springboot.model.Employee;
+import net.javaguides.springboot.service.EmployeeService;
+import net.javaguides.springboot.service.EmployeeStreamService;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Backs the NDJSON listing (/api/employees/stream). This is not a reactive data stack: the
+ * application runs on Spring MVC with blocking JPA and JDBC, and every page is an ordinary
+ * blocking {@link EmployeeService} call. Flux is only used to tie the reads to the client's
+ * demand. Each page runs on the bounded {@link DatabaseExecutor}, never on a request
+ * thread, and the next page is only queried once the subscriber has asked for more. A slow
+ * client therefore holds back the reads instead of making them buffer in memory.
+ *
+ * The collection is read in id-ordered keyset pages through the service, so the stream
+ * follows the shards when sharding is enabled.
+ */
+@Service
+public class EmployeeStreamServiceImpl implements EmployeeStreamService {
+
+    private final EmployeeService employeeService;
+
+    private final DatabaseExecutor databaseExecutor;
+
+    private final int pageSize;
+
+    public EmployeeStreamServiceImpl(EmployeeService employeeService, DatabaseExecutor databaseExecutor,
+            @Value("${employees.stream.page-size:500}") int pageSize) {
+        this.employeeService = employeeService;
+        this.databaseExecutor = databaseExecutor;
+        this.pageSize = pageSize;
+    }
+
+    @Override
+    public Flux<Employee> streamAllEmployees() {
+        return pageAfter(0)
+                .expand(page -> page.size() < pageSize
+                        ? Mono.empty()
+                        : pageAfter(page.get(page.size() - 1).getId()))
+                .flatMapIterable(Function.identity(), 1);
+    }
+
+    private Mono<List<Employee>> pageAfter(long id) {
+        return onDatabase(() -> employeeService.getEmployeesAfter(id, pageSize));
+    }
+
+    // deferred so that nothing is submitted until someone subscribes
+    private <T> Mono<T> onDatabase(Supplier<T> task) {
+        return Mono.defer(() -> Mono.fromFuture(databaseExecutor.submit(task)));
+    }
+}
@@ -0,0 +1,163 @@
+package net.javaguides.springboot.service.impl;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.stereotype.Service;
+
+import net.javaguides.springboot.event.EmployeeChangedEvent;
+import net.javaguides.springboot.exception.ResourceNotFoundException;
+import net.javaguides.springboot.model.Employee;
+import net.javaguides.springboot.model.EmployeeDelta;
+import net.javaguides.springboot.model.EmployeeFields;
+import net.javaguides.springboot.model.EmployeeSort;
+import net.javaguides.springboot.model.EmployeeUpsertResult;
+import net.javaguides.springboot.service.EmployeeService;
+import net.javaguides.springboot.shard.ShardedEmployeeStore;
+
+@Service
+@ConditionalOnProperty(name = "employees.sharding.enabled", havingValue = "true")
+public class ShardedEmployeeServiceImpl implements EmployeeService {
+
+    private ShardedEmployeeStore store;
+
+    private ApplicationEventPublisher eventPublisher;
+
+    public ShardedEmployeeServiceImpl(ShardedEmployeeStore store, ApplicationEventPublisher eventPublisher) {
+        this.store = store;
+        this.eventPublisher = eventPublisher;
+    }
+
+    @Override
+    public Employee saveEmployee(Employee employee) {
+        if (store.findByEmail(employee.getEmail()).isPresent()) {
+            throw new ResourceNotFoundException("Employee already exists with given email: " + employee.getEmail());
+        }
+        Employee createdEmployee;
+        try {
+            createdEmployee = store.insert(employee);
+        } catch (DuplicateKeyException e) {
+            throw new ResourceNotFoundException("Employee already exists with given email: " + employee.getEmail(), e);
+        }
+        eventPublisher.publishEvent(EmployeeChangedEvent.created(createdEmployee));
+        return createdEmployee;
+    }
+
+    @Override
+    public List<Employee> getAllEmployees() {
+        return store.findAll();
+    }
+
+    @Override
+    public Optional<Employee> getEmployeeById(long id) {
+        return store.findById(id);
+    }
+
+    @Override
+    public List<Employee> getEmployeesById(Collection<Long> ids) {
+        return store.findAllById(ids);
+    }
+
+    @Override
+    public Optional<Employee> getEmployeeByEmail(String email) {
+        return store.findByEmail(email);
+    }
+
+    @Override
+    public List<Employee> getEmployeesByName(String firstName, String lastName) {
+        return store.findByName(firstName, lastName);
+    }
+
+    @Override
+    public List<Employee> getEmployeesAfter(long afterId, int limit) {
+        return store.findAfter(afterId, limit);
+    }
+
+    @Override
+    public List<Map<String, Object>> getAllEmployees(List<String> fields) {
+        return store.findAll().stream()
+                .map(employee -> EmployeeFields.project(employee, fields))
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public Optional<Map<String, Object>> getEmployeeById(long id, List<String> fields) {
+        return store.findById(id).map(employee -> EmployeeFields.project(employee, fields));
+    }
+
+    @Override
+    public List<Employee> getEmployeesSorted(EmployeeSort sort, Employee after, int limit) {
+        return store.findSorted(sort, after, limit);
+    }
+
+    @Override
+    public Employee updateEmployee(Employee updatedEmployee) {
+        Employee savedEmployee;
+        try {
+            savedEmployee = store.update(updatedEmployee).orElseThrow(() ->
+                    new ResourceNotFoundException("Employee not found with id: " + updatedEmployee.getId()));
+        } catch (DuplicateKeyException e) {
+            throw new ResourceNotFoundException("Employee already exists with given email: " + updatedEmployee.getEmail(), e);
+        }
+        eventPublisher.publishEvent(EmployeeChangedEvent.updated(savedEmployee));
+        return savedEmployee;
+    }
+
+    @Override
+    public void deleteEmployee(long id) {
+        store.delete(id);
+        eventPublisher.publishEvent(EmployeeChangedEvent.deleted(id));
+    }
+
+    // the email directory lives on a different shard than the row, so there is no single
+    // statement to run; each employee is an update or an insert through the store
+    @Override
+    public EmployeeUpsertResult upsertEmployees(List<Employee> employees) {
+        Map<String, Employee> byEmail = new LinkedHashMap<>();
+        employees.forEach(employee -> {
+            byEmail.remove(employee.getEmail());
+            byEmail.put(employee.getEmail(), employee);
+        });
+        List<Employee> inserted = new ArrayList<>();
+        List<Employee> updated = new ArrayList<>();
+        for (Employee employee : byEmail.values()) {
+            Optional<Employee> existing = store.findByEmail(employee.getEmail());
+            if (existing.isPresent()) {
+                Employee changed = existing.get().toBuilder()
+                        .firstName(employee.getFirstName())
+                        .lastName(employee.getLastName())
+                        .build();
+                updated.add(updateEmployee(changed));
+            } else {
+                inserted.add(saveEmployee(employee.toBuilder().id(0).build()));
+            }
+        }
+        return new EmployeeUpsertResult(inserted, updated);
+    }
+
+    @Override
+    public int changeEmailDomain(String fromDomain, String toDomain) {
+        List<Employee> moved;
+        try {
+            moved = store.rewriteEmailDomain(fromDomain, toDomain);
+        } catch (DuplicateKeyException e) {
+            throw new ResourceNotFoundException("Employee already exists with an email in domain: " + toDomain, e);
+        }
+        moved.forEach(employee -> eventPublisher.publishEvent(EmployeeChangedEvent.updated(employee)));
+        return moved.size();
+    }
+
+    @Override
+    public EmployeeDelta getChangesSince(long since) {
+        long readStarted = System.currentTimeMillis();
+        return EmployeeDelta.of(store.findModifiedSince(since), store.findDeletedSince(since), since, readStarted);
+    }
+}
@@ -0,0 +1,500 @@
+package net.javaguides.springboot.shard;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import javax.sql.DataSource;
+
+import com.zaxxer.hikari.HikariDataSource;
+
+import org.flywaydb.core.Flyway;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import net.javaguides.springboot.model.Employee;
+import net.javaguides.springboot.model.EmployeeDelta;
+import net.javaguides.springboot.model.EmployeeFields;
+import net.javaguides.springboot.model.EmployeeSort;
+import net.javaguides.springboot.resilience.QueryDeadline;
+
+/**
+ * Spreads employees over N databases. Ids encode their shard: a row stored under local key
+ * {@code k} on shard {@code s} gets the global id {@code k * N + s}, so routing by id needs
+ * no lookup and shards never have to agree on ids.
+ *
+ * New rows go to the shards round-robin. Email uniqueness is enforced by a directory table
+ * whose primary key is the email; each email lives on the shard it hashes to. The employee
+ * row is written first and the email claimed afterwards. Losing the race on a claim deletes
+ * the row again and surfaces as a {@link DuplicateKeyException}. A delete removes the row
+ * and writes its tombstone in one shard transaction and releases the email last; a claim
+ * still naming a deleted row (the release failed) is taken over by the next claimant.
+ *
+ * Lookups that cannot be routed (all employees, by name) are sent to every shard in
+ * parallel and the results merged in id order.
+ */
+public class ShardedEmployeeStore {
+
+    private static final Logger log = LoggerFactory.getLogger(ShardedEmployeeStore.class);
+
+    private static final RowMapper<Employee> LOCAL_ROW = (rs, rowNum) -> Employee.builder()
+            .id(rs.getLong("id"))
+            .firstName(rs.getString("first_name"))
+            .lastName(rs.getString("last_name"))
+            .email(rs.getString("email"))
+            .build();
+
+    private final List<JdbcTemplate> shards = new ArrayList<>();
+
+    private final List<TransactionTemplate> transactions = new ArrayList<>();
+
+    private final List<DataSource> dataSources;
+
+    private final ExecutorService fanOut;
+
+    private final AtomicLong nextInsertShard = new AtomicLong();
+
+    // null until the first sorted read asks the database what it is
+    private volatile Boolean weightStrings;
+
+    public ShardedEmployeeStore(List<DataSource> dataSources) {
+        if (dataSources.isEmpty()) {
+            throw new IllegalArgumentException("At least one shard is required");
+        }
+        this.dataSources = dataSources;
+        for (DataSource dataSource : dataSources) {
+            shards.add(new JdbcTemplate(dataSource));
+            TransactionTemplate transaction = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+            // bounded like every other write, see EmployeeDelta
+            transaction.setTimeout(EmployeeDelta.WRITE_TIMEOUT_SECONDS);
+            transactions.add(transaction);
+        }
+        AtomicInteger threadCount = new AtomicInteger();
+        this.fanOut = Executors.newFixedThreadPool(dataSources.size(), runnable -> {
+            Thread thread = new Thread(runnable, "employee-shard-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Brings every shard's schema up to date with the scripts in db/shard.
+     */
+    public void migrate() {
+        for (DataSource dataSource : dataSources) {
+            Flyway.configure()
+                    .dataSource(dataSource)
+                    .locations("classpath:db/shard")
+                    .load()
+                    .migrate();
+        }
+    }
+
+    public int getShardCount() {
+        return shards.size();
+    }
+
+    public int shardOf(long id) {
+        return (int) Math.floorMod(id, (long) shards.size());
+    }
+
+    public Optional<Employee> findById(long id) {
+        int shard = shardOf(id);
+        return shards.get(shard)
+                .query("select * from employees where id = ?", LOCAL_ROW, localKey(id))
+                .stream()
+                .findFirst()
+                .map(employee -> toGlobal(employee, shard));
+    }
+
+    /**
+     * Reads the given employees with one query per shard that holds any of them.
+     */
+    public List<Employee> findAllById(Collection<Long> ids) {
+        List<List<Long>> localKeys = new ArrayList<>(shards.size());
+        for (int shard = 0; shard < shards.size(); shard++) {
+            localKeys.add(new ArrayList<>());
+        }
+        ids.forEach(id -> localKeys.get(shardOf(id)).add(localKey(id)));
+        return scatter(shard -> {
+            List<Long> keys = localKeys.get(shard);
+            if (keys.isEmpty()) {
+                return new ArrayList<>();
+            }
+            String placeholders = String.join(", ", Collections.nCopies(keys.size(), "?"));
+            return shards.get(shard).query("select * from employees where id in (" + placeholders + ")",
+                    LOCAL_ROW, keys.toArray());
+        });
+    }
+
+    public Optional<Employee> findByEmail(String email) {
+        return shards.get(emailShard(email))
+                .queryForList("select employee_id from employee_emails where email = ?", Long.class, email)
+                .stream()
+                .findFirst()
+                .flatMap(this::findById);
+    }
+
+    public List<Employee> findByName(String firstName, String lastName) {
+        return scatter(shard -> shards.get(shard).query(
+                "select * from employees where first_name = ? and last_name = ?", LOCAL_ROW, firstName, lastName));
+    }
+
+    public List<Employee> findAll() {
+        return scatter(shard -> shards.get(shard).query("select * from employees", LOCAL_ROW));
+    }
+
+    /**
+     * Reads the next {@code limit} employees after {@code afterId} in id order. Each shard
+     * seeks its primary key from the local key just below the cursor.
+     */
+    public List<Employee> findAfter(long afterId, int limit) {
+        List<Employee> merged = scatter(shard -> shards.get(shard).query(
+                "select * from employees where id > ? order by id limit ?", LOCAL_ROW,
+                Math.floorDiv(afterId - shard, (long) shards.size()), limit));
+        return merged.size() > limit ? new ArrayList<>(merged.subList(0, limit)) : merged;
+    }
+
+    /**
+     * Reads the next {@code limit} rows in sort order from every shard and merges them. Each
+     * shard seeks its own index from the cursor; the id tie-breaker is translated to the
+     * shard's local keys, which sort in the same order as the global ids they encode.
+     *
+     * The merge compares the sort keys the shards compute under their own collation
+     * (WEIGHT_STRING on MySQL, where names and emails compare case-insensitively), so the
+     * merged order is the one every shard's index and keyset predicate use. Other databases
+     * are assumed to compare strings as Java does, like H2's default binary collation.
+     */
+    public List<Employee> findSorted(EmployeeSort sort, Employee after, int limit) {
+        List<String> columns = new ArrayList<>();
+        for (String property : sort.getProperties()) {
+            columns.add(property.replaceAll("([A-Z])", "_$1").toLowerCase());
+        }
+        StringBuilder select = new StringBuilder("select *");
+        for (int i = 0; i < columns.size(); i++) {
+            select.append(", ").append(sortKey(columns.get(i))).append(" as sort_key_").append(i);
+        }
+        select.append(" from employees");
+        String orderBy = " order by " + String.join(", ", columns) + ", id limit " + limit;
+        List<SortedRow> merged = gather(shard -> {
+            RowMapper<SortedRow> mapper = (rs, rowNum) -> {
+                Object[] keys = new Object[columns.size()];
+                for (int i = 0; i < keys.length; i++) {
+                    keys[i] = rs.getObject("sort_key_" + i);
+                }
+                return new SortedRow(toGlobal(LOCAL_ROW.mapRow(rs, rowNum), shard), keys);
+            };
+            if (after == null) {
+                return shards.get(shard).query(select + orderBy, mapper);
+            }
+            List<Object> args = new ArrayList<>();
+            String where = keysetAfter(columns, sort, after, Math.floorDiv(after.getId() - shard, (long) shards.size()), args);
+            return shards.get(shard).query(select + " where " + where + orderBy, mapper, args.toArray());
+        });
+        merged.sort(SortedRow::compareTo);
+        return merged.stream()
+                .limit(limit)
+                .map(row -> row.employee)
+                .collect(Collectors.toList());
+    }
+
+    private String sortKey(String column) {
+        Boolean useWeightStrings = weightStrings;
+        if (useWeightStrings == null) {
+            String product = shards.get(0).execute(
+                    (ConnectionCallback<String>) connection -> connection.getMetaData().getDatabaseProductName());
+            useWeightStrings = product.toLowerCase().contains("mysql") || product.toLowerCase().contains("mariadb");
+            weightStrings = useWeightStrings;
+        }
+        return useWeightStrings ? "weight_string(" + column + ")" : column;
+    }
+
+    // same shape as the JPA keyset predicate: c1 >= ? and (c1 > ? or (c1 = ? and (... id > ?)))
+    private static String keysetAfter(List<String> columns, EmployeeSort sort, Employee after, long localId, List<Object> args) {
+        List<String> properties = sort.getProperties();
+        List<Object> nested = new ArrayList<>();
+        String predicate = "id > ?";
+        nested.add(localId);
+        for (int i = columns.size() - 1; i >= 0; i--) {
+            Object value = EmployeeFields.project(after, List.of(properties.get(i))).get(properties.get(i));
+            predicate = "(" + columns.get(i) + " > ? or (" + columns.get(i) + " = ? and " + predicate + "))";
+            nested.add(0, value);
+            nested.add(0, value);
+        }
+        args.add(EmployeeFields.project(after, List.of(properties.get(0))).get(properties.get(0)));
+        args.addAll(nested);
+        return columns.get(0) + " >= ? and " + predicate;
+    }
+
+    /**
+     * Stores a new employee and returns it with its global id.
+     *
+     * @throws DuplicateKeyException if another employee already has the email
+     */
+    public Employee insert(Employee employee) {
+        int shard = (int) (nextInsertShard.getAndIncrement() % shards.size());
+        KeyHolder keyHolder = new GeneratedKeyHolder();
+        shards.get(shard).update(connection -> {
+            PreparedStatement statement = connection.prepareStatement(
+                    "insert into employees (first_name, last_name, email, updated_at) values (?, ?, ?, ?)",
+                    Statement.RETURN_GENERATED_KEYS);
+            statement.setString(1, employee.getFirstName());
+            statement.setString(2, employee.getLastName());
+            statement.setString(3, employee.getEmail());
+            statement.setLong(4, System.currentTimeMillis());
+            return statement;
+        }, keyHolder);
+        long localKey = keyHolder.getKey().longValue();
+        Employee created = employee.toBuilder().id(localKey * shards.size() + shard).build();
+        try {
+            claimEmail(created.getEmail(), created.getId());
+        } catch (DuplicateKeyException e) {
+            shards.get(shard).update("delete from employees where id = ?", localKey);
+            throw e;
+        }
+        return created;
+    }
+
+    /**
+     * Overwrites an existing employee, moving its email claim when the email changed.
+     * Returns empty if there is no employee with that id.
+     *
+     * @throws DuplicateKeyException if another employee already has the new email
+     */
+    public Optional<Employee> update(Employee employee) {
+        Optional<Employee> existing = findById(employee.getId());
+        if (!existing.isPresent()) {
+            return Optional.empty();
+        }
+        String oldEmail = existing.get().getEmail();
+        boolean emailChanged = !oldEmail.equals(employee.getEmail());
+        if (emailChanged) {
+            claimEmail(employee.getEmail(), employee.getId());
+        }
+        shards.get(shardOf(employee.getId())).update(
+                "update employees set first_name = ?, last_name = ?, email = ?, updated_at = ? where id = ?",
+                employee.getFirstName(), employee.getLastName(), employee.getEmail(), System.currentTimeMillis(),
+                localKey(employee.getId()));
+        if (emailChanged) {
+            releaseEmail(oldEmail, employee.getId());
+        }
+        return Optional.of(employee);
+    }
+
+    public void delete(long id) {
+        int shard = shardOf(id);
+        Optional<Employee> deleted = transactions.get(shard).execute(status -> {
+            Optional<Employee> employee = findById(id);
+            // only the delete that removed the row writes a tombstone
+            if (!employee.isPresent() || shards.get(shard).update("delete from employees where id = ?", localKey(id)) == 0) {
+                return Optional.<Employee>empty();
+            }
+            shards.get(shard).update("insert into employee_tombstones (employee_id, deleted_at) values (?, ?)", id,
+                    System.currentTimeMillis());
+            return employee;
+        });
+        deleted.ifPresent(employee -> releaseEmail(employee.getEmail(), id));
+    }
+
+    /**
+     * Returns the employees written after {@code since} (epoch millis), in id order. A sync
+     * from 0 also returns rows stamped 0, which were created before the updated_at column existed.
+     */
+    public List<Employee> findModifiedSince(long since) {
+        long after = since == 0 ? -1 : since;
+        return scatter(shard -> shards.get(shard).query(
+                "select * from employees where updated_at > ? order by updated_at, id", LOCAL_ROW, after));
+    }
+
+    /**
+     * Returns the ids of the employees deleted after {@code since} (epoch millis).
+     */
+    public List<Long> findDeletedSince(long since) {
+        List<Long> deleted = gather(shard -> shards.get(shard).queryForList(
+                "select employee_id from employee_tombstones where deleted_at > ? order by deleted_at, employee_id",
+                Long.class, since));
+        deleted.sort(Comparator.naturalOrder());
+        return deleted;
+    }
+
+    /**
+     * Moves every employee with an email in {@code fromDomain} to {@code toDomain} and
+     * returns the moved employees. Each shard's rows change with one UPDATE. The directory is
+     * updated per email, because a new email usually belongs on a different directory shard.
+     * All new emails are claimed before any row changes, so a conflict leaves nothing moved.
+     *
+     * @throws DuplicateKeyException if a new email already belongs to another employee
+     */
+    public List<Employee> rewriteEmailDomain(String fromDomain, String toDomain) {
+        String pattern = "%@" + fromDomain.replace("!", "!!").replace("%", "!%").replace("_", "!_");
+        List<Employee> affected = scatter(shard -> shards.get(shard)
+                .query("select * from employees where email like ? escape '!'", LOCAL_ROW, pattern));
+        List<Employee> moved = new ArrayList<>(affected.size());
+        try {
+            for (Employee employee : affected) {
+                String email = employee.getEmail();
+                Employee target = employee.toBuilder()
+                        .email(email.substring(0, email.length() - fromDomain.length()) + toDomain)
+                        .build();
+                claimEmail(target.getEmail(), target.getId());
+                moved.add(target);
+            }
+        } catch (DuplicateKeyException e) {
+            moved.forEach(employee -> releaseEmail(employee.getEmail(), employee.getId()));
+            throw e;
+        }
+        scatter(shard -> {
+            shards.get(shard).update("update employees set email = concat(substring(email, 1, char_length(email) - ?), ?),"
+                    + " updated_at = ? where email like ? escape '!'", fromDomain.length(), toDomain,
+                    System.currentTimeMillis(), pattern);
+            return new ArrayList<>();
+        });
+        affected.forEach(employee -> releaseEmail(employee.getEmail(), employee.getId()));
+        return moved;
+    }
+
+    /**
+     * Stops the fan-out threads and closes the shards' Hikari pools. Other data sources (an
+     * embedded test database, say) are left to whoever created them.
+     */
+    public void shutdown() {
+        fanOut.shutdown();
+        for (DataSource dataSource : dataSources) {
+            try {
+                if (dataSource.isWrapperFor(HikariDataSource.class)) {
+                    dataSource.unwrap(HikariDataSource.class).close();
+                }
+            } catch (SQLException | RuntimeException e) {
+                log.warn("Failed to close shard pool", e);
+            }
+        }
+    }
+
+    private void claimEmail(String email, long id) {
+        JdbcTemplate directory = shards.get(emailShard(email));
+        try {
+            directory.update("insert into employee_emails (email, employee_id) values (?, ?)", email, id);
+        } catch (DuplicateKeyException e) {
+            // rows are written before their claim, so a claim naming no row was left by a delete
+            List<Long> owner = directory.queryForList(
+                    "select employee_id from employee_emails where email = ?", Long.class, email);
+            if (owner.isEmpty() || findById(owner.get(0)).isPresent() || directory.update(
+                    "update employee_emails set employee_id = ? where email = ? and employee_id = ?",
+                    id, email, owner.get(0)) == 0) {
+                throw e;
+            }
+        }
+    }
+
+    private void releaseEmail(String email, long id) {
+        shards.get(emailShard(email)).update("delete from employee_emails where email = ? and employee_id = ?", email, id);
+    }
+
+    private int emailShard(String email) {
+        return Math.floorMod(email.hashCode(), shards.size());
+    }
+
+    private long localKey(long id) {
+        return id / shards.size();
+    }
+
+    private Employee toGlobal(Employee local, int shard) {
+        local.setId(local.getId() * shards.size() + shard);
+        return local;
+    }
+
+    private List<Employee> scatter(Function<Integer, List<Employee>> query) {
+        List<Employee> merged = gather(shard -> {
+            List<Employee> employees = query.apply(shard);
+            employees.forEach(employee -> toGlobal(employee, shard));
+            return employees;
+        });
+        merged.sort(Comparator.comparingLong(Employee::getId));
+        return merged;
+    }
+
+    // runs the query on every shard in parallel, under the caller's read deadline, and concatenates the results
+    private <T> List<T> gather(Function<Integer, List<T>> query) {
+        Long deadline = QueryDeadline.current();
+        List<Future<List<T>>> futures = new ArrayList<>(shards.size());
+        for (int shard = 0; shard < shards.size(); shard++) {
+            int target = shard;
+            futures.add(fanOut.submit(() -> deadline == null
+                    ? query.apply(target)
+                    : QueryDeadline.call(deadline, () -> query.apply(target))));
+        }
+        List<T> merged = new ArrayList<>();
+        try {
+            for (Future<List<T>> future : futures) {
+                merged.addAll(future.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while querying shards", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+        return merged;
+    }
+
+    private static final class SortedRow implements Comparable<SortedRow> {
+
+        final Employee employee;
+
+        // the collation sort key of each sort column: byte[] weights on MySQL, else the string
+        final Object[] keys;
+
+        SortedRow(Employee employee, Object[] keys) {
+            this.employee = employee;
+            this.keys = keys;
+        }
+
+        @Override
+        public int compareTo(SortedRow other) {
+            for (int i = 0; i < keys.length; i++) {
+                int result = compareKeys(keys[i], other.keys[i]);
+                if (result != 0) {
+                    return result;
+                }
+            }
+            return Long.compare(employee.getId(), other.employee.getId());
+        }
+
+        // nulls first, like MySQL and H2 in ascending order
+        private static int compareKeys(Object left, Object right) {
+            if (left == null || right == null) {
+                return left == null ? (right == null ? 0 : -1) : 1;
+            }
+            if (left instanceof byte[]) {
+                return Arrays.compareUnsigned((byte[]) left, (byte[]) right);
+            }
+            return ((String) left).compareTo((String) right);
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package net.javaguides.springboot.stats;
+
+import java.util.Map;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Response of GET /api/employees/stats. The breakdowns are ordered by count, highest first.
+ */
+@Getter
+@AllArgsConstructor
+public class EmployeeStatsSnapshot {
+
+    private final long total;
+
+    private final Map<String, Long> emailDomains;
+
+    private final Map<String, Long> lastNames;
+}
@@ -0,0 +1,37 @@
+package net.javaguides.springboot.view;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * Result of comparing the in-memory employee view with the database.
+ */
+@Getter
+@ToString
+public class ConsistencyReport {
+
+    private final int databaseSize;
+
+    private final int viewSize;
+
+    // in the database but not in the view
+    private final List<Long> missing = new ArrayList<>();
+
+    // in both, but with different values
+    private final List<Long> stale = new ArrayList<>();
+
+    // in the view but no longer in the database
+    private final List<Long> unexpected = new ArrayList<>();
+
+    public ConsistencyReport(int databaseSize, int viewSize) {
+        this.databaseSize = databaseSize;
+        this.viewSize = viewSize;
+    }
+
+    public boolean isConsistent() {
+        return missing.isEmpty() && stale.isEmpty() && unexpected.isEmpty();
+    }
+}
@@ -0,0 +1,26 @@
+package net.javaguides.springboot.view;
+
+import java.util.Optional;
+import java.util.function.Consumer;
+
+import net.javaguides.springboot.model.Employee;
+
+/**
+ * Row storage behind {@link EmployeeView}, keyed by employee id. Implementations hand out
+ * fresh {@link Employee} instances and don't need to be thread-safe; the view serializes
+ * writers and excludes them from readers.
+ */
+interface EmployeeStore {
+
+    Optional<Employee> get(long id);
+
+    void put(Employee employee);
+
+    void remove(long id);
+
+    int size();
+
+    void forEach(Consumer<Employee> action);
+
+    void clear();
+}
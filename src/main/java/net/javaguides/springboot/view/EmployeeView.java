@@ -0,0 +1,345 @@
+package net.javaguides.springboot.view;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import javax.annotation.PostConstruct;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import net.javaguides.springboot.event.EmployeeChangedEvent;
+import net.javaguides.springboot.model.Employee;
+import net.javaguides.springboot.repository.EmployeeRepository;
+
+/**
+ * Optional in-memory copy of the whole employees table, with secondary indexes on email and
+ * on first + last name. When enabled (employees.view.enabled=true) it is loaded once at
+ * startup and then kept current from {@link EmployeeChangedEvent}s after each commit, so the
+ * service can answer every read without a database round trip.
+ *
+ * Rows live in an {@link EmployeeStore}: detached entities on the heap by default, or compact
+ * UTF-8 records in direct buffers with employees.view.storage=off-heap. The secondary indexes
+ * only hold 64-bit hashes of their keys, so strings are kept once, in the store, and every
+ * index hit is verified against the stored row. Reads always get a fresh copy, because
+ * callers (e.g. the update endpoint) mutate the employee they get back.
+ *
+ * A change made on another instance arrives as a remote invalidation without a row. The
+ * employee is dropped at once and read again from the database by the next read that needs
+ * it. If that read fails, the view keeps the id pending, answers from the rows it holds and
+ * tries again after {@link #RELOAD_RETRY_MILLIS}. A database outage can therefore leave the
+ * view incomplete, but never stale, and never fails a view read.
+ */
+@Component
+public class EmployeeView {
+
+    private static final Logger log = LoggerFactory.getLogger(EmployeeView.class);
+
+    static final long RELOAD_RETRY_MILLIS = 1000;
+
+    private final EmployeeRepository employeeRepository;
+
+    private final boolean enabled;
+
+    private final EmployeeStore store;
+
+    private final LongHashIndex byEmail = new LongHashIndex(1024);
+
+    private final LongHashIndex byName = new LongHashIndex(1024);
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // invalidated employee id -> generation, guarded by the lock; a reload only lands if the
+    // generation it started from is still current
+    private final Map<Long, Long> invalidated = new HashMap<>();
+
+    private long generation;
+
+    // after a failed reload, reads skip the database until then
+    private volatile long reloadRetryAtMillis;
+
+    public EmployeeView(EmployeeRepository employeeRepository,
+                        @Value("${employees.view.enabled:false}") boolean enabled,
+                        @Value("${employees.view.storage:heap}") String storage,
+                        @Value("${employees.view.off-heap-chunk-bytes:67108864}") int offHeapChunkBytes) {
+        this.employeeRepository = employeeRepository;
+        this.enabled = enabled;
+        this.store = "off-heap".equals(storage) ? new OffHeapEmployeeStore(offHeapChunkBytes) : new HeapEmployeeStore();
+    }
+
+    @PostConstruct
+    public void load() {
+        if (!enabled) {
+            return;
+        }
+        long start = System.nanoTime();
+        List<Employee> employees = employeeRepository.findAll();
+        Lock writeLock = lock.writeLock();
+        writeLock.lock();
+        try {
+            store.clear();
+            byEmail.clear();
+            byName.clear();
+            invalidated.clear();
+            employees.forEach(this::put);
+        } finally {
+            writeLock.unlock();
+        }
+        log.info("Loaded {} employees into the in-memory view in {} ms",
+                employees.size(), (System.nanoTime() - start) / 1_000_000);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public int size() {
+        Lock readLock = lock.readLock();
+        readLock.lock();
+        try {
+            return store.size();
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    public Optional<Employee> findById(long id) {
+        reloadInvalidated(id);
+        Lock readLock = lock.readLock();
+        readLock.lock();
+        try {
+            return store.get(id);
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    public Optional<Employee> findByEmail(String email) {
+        if (email == null) {
+            return Optional.empty();
+        }
+        reloadInvalidated(null);
+        Lock readLock = lock.readLock();
+        readLock.lock();
+        try {
+            List<Employee> matches = new ArrayList<>(1);
+            byEmail.forEach(hash(email), id -> store.get(id)
+                    .filter(employee -> email.equals(employee.getEmail()))
+                    .ifPresent(matches::add));
+            return matches.stream().findFirst();
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    public List<Employee> findByName(String firstName, String lastName) {
+        reloadInvalidated(null);
+        Lock readLock = lock.readLock();
+        readLock.lock();
+        try {
+            List<Employee> matches = new ArrayList<>();
+            byName.forEach(hash(firstName, lastName), id -> store.get(id)
+                    .filter(employee -> Objects.equals(firstName, employee.getFirstName())
+                            && Objects.equals(lastName, employee.getLastName()))
+                    .ifPresent(matches::add));
+            return matches;
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    public List<Employee> findAll() {
+        reloadInvalidated(null);
+        Lock readLock = lock.readLock();
+        readLock.lock();
+        try {
+            List<Employee> employees = new ArrayList<>(store.size());
+            store.forEach(employees::add);
+            employees.sort(Comparator.comparingLong(Employee::getId));
+            return employees;
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    public List<Employee> findAllById(Collection<Long> ids) {
+        reloadInvalidated(null);
+        Lock readLock = lock.readLock();
+        readLock.lock();
+        try {
+            List<Employee> employees = new ArrayList<>(ids.size());
+            for (Long id : ids) {
+                store.get(id).ifPresent(employees::add);
+            }
+            return employees;
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onEmployeeChanged(EmployeeChangedEvent event) {
+        if (!enabled) {
+            return;
+        }
+        apply(event);
+    }
+
+    void apply(EmployeeChangedEvent event) {
+        if (event.isRemote() && event.getEmployee() != null) {
+            // the bus read this row through the view, which reloaded it already
+            return;
+        }
+        long id = event.getEmployeeId();
+        Lock writeLock = lock.writeLock();
+        writeLock.lock();
+        try {
+            remove(id);
+            if (event.getEmployee() != null) {
+                put(event.getEmployee());
+            }
+            if (event.isRemote() && event.getType() != EmployeeChangedEvent.Type.DELETED) {
+                invalidated.put(id, ++generation);
+            } else if (invalidated.containsKey(id)) {
+                // a reload already running may have read the row before this change
+                invalidated.put(id, ++generation);
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Reads the invalidated employees ({@code id}, or all of them when null) from the database
+     * outside the lock, then stores each one whose invalidation is still the one it read for.
+     */
+    private void reloadInvalidated(Long id) {
+        if (!enabled) {
+            return;
+        }
+        Map<Long, Long> reloading = new HashMap<>();
+        Lock readLock = lock.readLock();
+        readLock.lock();
+        try {
+            if (id == null) {
+                reloading.putAll(invalidated);
+            } else if (invalidated.containsKey(id)) {
+                reloading.put(id, invalidated.get(id));
+            }
+        } finally {
+            readLock.unlock();
+        }
+        if (reloading.isEmpty() || System.currentTimeMillis() < reloadRetryAtMillis) {
+            return;
+        }
+        Map<Long, Employee> current;
+        try {
+            current = employeeRepository.findAllById(reloading.keySet()).stream()
+                    .collect(Collectors.toMap(Employee::getId, Function.identity()));
+        } catch (RuntimeException e) {
+            reloadRetryAtMillis = System.currentTimeMillis() + RELOAD_RETRY_MILLIS;
+            log.warn("Reloading {} invalidated employees failed, serving the view without them", reloading.size(), e);
+            return;
+        }
+        Lock writeLock = lock.writeLock();
+        writeLock.lock();
+        try {
+            reloading.forEach((reloadedId, reloadedGeneration) -> {
+                if (invalidated.remove(reloadedId, reloadedGeneration)) {
+                    remove(reloadedId);
+                    Employee employee = current.get(reloadedId);
+                    if (employee != null) {
+                        put(employee);
+                    }
+                }
+            });
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Compares the view with a fresh read of the employees table.
+     */
+    public ConsistencyReport checkConsistency() {
+        Map<Long, Employee> database = employeeRepository.findAll().stream()
+                .collect(Collectors.toMap(Employee::getId, Function.identity()));
+        List<Employee> cached = findAll();
+        ConsistencyReport report = new ConsistencyReport(database.size(), cached.size());
+        Set<Long> cachedIds = new HashSet<>();
+        for (Employee employee : cached) {
+            cachedIds.add(employee.getId());
+            Employee stored = database.get(employee.getId());
+            if (stored == null) {
+                report.getUnexpected().add(employee.getId());
+            } else if (!sameValues(employee, stored)) {
+                report.getStale().add(employee.getId());
+            }
+        }
+        database.keySet().stream()
+                .filter(id -> !cachedIds.contains(id))
+                .sorted()
+                .forEach(report.getMissing()::add);
+        if (!report.isConsistent()) {
+            log.warn("Employee view is inconsistent with the database: {}", report);
+        }
+        return report;
+    }
+
+    // callers hold the write lock
+    private void put(Employee employee) {
+        store.put(employee);
+        byEmail.add(hash(employee.getEmail()), employee.getId());
+        byName.add(hash(employee.getFirstName(), employee.getLastName()), employee.getId());
+    }
+
+    // callers hold the write lock
+    private void remove(long id) {
+        Optional<Employee> previous = store.get(id);
+        if (!previous.isPresent()) {
+            return;
+        }
+        store.remove(id);
+        byEmail.remove(hash(previous.get().getEmail()), id);
+        byName.remove(hash(previous.get().getFirstName(), previous.get().getLastName()), id);
+    }
+
+    private static long hash(String firstName, String lastName) {
+        return hash(firstName) * 31 + hash(lastName);
+    }
+
+    // 64-bit FNV-1a over the UTF-16 code units
+    private static long hash(String value) {
+        if (value == null) {
+            return 0;
+        }
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < value.length(); i++) {
+            hash ^= value.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    private static boolean sameValues(Employee left, Employee right) {
+        return Objects.equals(left.getFirstName(), right.getFirstName())
+                && Objects.equals(left.getLastName(), right.getLastName())
+                && Objects.equals(left.getEmail(), right.getEmail());
+    }
+}
@@ -0,0 +1,49 @@
+package net.javaguides.springboot.view;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Consumer;
+
+import net.javaguides.springboot.model.Employee;
+
+/**
+ * Keeps detached {@link Employee} copies on the heap.
+ */
+class HeapEmployeeStore implements EmployeeStore {
+
+    private final Map<Long, Employee> employees = new HashMap<>();
+
+    @Override
+    public Optional<Employee> get(long id) {
+        Employee employee = employees.get(id);
+        return employee == null ? Optional.empty() : Optional.of(employee.toBuilder().build());
+    }
+
+    @Override
+    public void put(Employee employee) {
+        employees.put(employee.getId(), employee.toBuilder().build());
+    }
+
+    @Override
+    public void remove(long id) {
+        employees.remove(id);
+    }
+
+    @Override
+    public int size() {
+        return employees.size();
+    }
+
+    @Override
+    public void forEach(Consumer<Employee> action) {
+        for (Employee employee : employees.values()) {
+            action.accept(employee.toBuilder().build());
+        }
+    }
+
+    @Override
+    public void clear() {
+        employees.clear();
+    }
+}
@@ -0,0 +1,190 @@
+package net.javaguides.springboot.view;
+
+import java.util.Arrays;
+import java.util.function.LongConsumer;
+
+/**
+ * Open-addressing hash table from primitive long keys to non-negative long values, so the
+ * view's indexes cost two array slots per entry instead of boxed map nodes.
+ *
+ * It can be used as a plain map ({@link #put}, {@link #get}, {@link #remove(long)}) or as a
+ * multimap where the same key holds several values ({@link #add}, {@link #forEach},
+ * {@link #remove(long, long)}); don't mix the two styles on one instance.
+ *
+ * Not thread-safe: {@link EmployeeView} guards every access with its lock.
+ */
+class LongHashIndex {
+
+    private static final long EMPTY = -1L;
+
+    private long[] keys;
+
+    private long[] values;
+
+    private int size;
+
+    private int mask;
+
+    LongHashIndex(int expectedSize) {
+        allocate(tableSizeFor(expectedSize));
+    }
+
+    int size() {
+        return size;
+    }
+
+    void clear() {
+        Arrays.fill(values, EMPTY);
+        size = 0;
+    }
+
+    /**
+     * Returns the (first) value stored for the key, or -1 if there is none.
+     */
+    long get(long key) {
+        for (int slot = slot(key); values[slot] != EMPTY; slot = (slot + 1) & mask) {
+            if (keys[slot] == key) {
+                return values[slot];
+            }
+        }
+        return EMPTY;
+    }
+
+    /**
+     * Stores the value, replacing an existing value for the same key. Returns the previous
+     * value or -1.
+     */
+    long put(long key, long value) {
+        checkValue(value);
+        int slot = slot(key);
+        for (; values[slot] != EMPTY; slot = (slot + 1) & mask) {
+            if (keys[slot] == key) {
+                long previous = values[slot];
+                values[slot] = value;
+                return previous;
+            }
+        }
+        insertAt(slot, key, value);
+        return EMPTY;
+    }
+
+    /**
+     * Adds another value for the key, keeping existing ones.
+     */
+    void add(long key, long value) {
+        checkValue(value);
+        int slot = slot(key);
+        while (values[slot] != EMPTY) {
+            slot = (slot + 1) & mask;
+        }
+        insertAt(slot, key, value);
+    }
+
+    void forEach(long key, LongConsumer action) {
+        for (int slot = slot(key); values[slot] != EMPTY; slot = (slot + 1) & mask) {
+            if (keys[slot] == key) {
+                action.accept(values[slot]);
+            }
+        }
+    }
+
+    void forEachValue(LongConsumer action) {
+        for (long value : values) {
+            if (value != EMPTY) {
+                action.accept(value);
+            }
+        }
+    }
+
+    /**
+     * Removes the key, returning its value or -1.
+     */
+    long remove(long key) {
+        for (int slot = slot(key); values[slot] != EMPTY; slot = (slot + 1) & mask) {
+            if (keys[slot] == key) {
+                long previous = values[slot];
+                deleteAt(slot);
+                return previous;
+            }
+        }
+        return EMPTY;
+    }
+
+    /**
+     * Removes one key/value pair from a multimap.
+     */
+    boolean remove(long key, long value) {
+        for (int slot = slot(key); values[slot] != EMPTY; slot = (slot + 1) & mask) {
+            if (keys[slot] == key && values[slot] == value) {
+                deleteAt(slot);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void insertAt(int slot, long key, long value) {
+        keys[slot] = key;
+        values[slot] = value;
+        if (++size > (mask + 1) / 2) {
+            rehash();
+        }
+    }
+
+    // backward-shift deletion keeps probe sequences intact without tombstones
+    private void deleteAt(int slot) {
+        int hole = slot;
+        for (int next = (hole + 1) & mask; values[next] != EMPTY; next = (next + 1) & mask) {
+            int home = slot(keys[next]);
+            if (((next - home) & mask) >= ((next - hole) & mask)) {
+                keys[hole] = keys[next];
+                values[hole] = values[next];
+                hole = next;
+            }
+        }
+        values[hole] = EMPTY;
+        size--;
+    }
+
+    private void rehash() {
+        long[] oldKeys = keys;
+        long[] oldValues = values;
+        allocate(oldKeys.length * 2);
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldValues[i] != EMPTY) {
+                int slot = slot(oldKeys[i]);
+                while (values[slot] != EMPTY) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = oldKeys[i];
+                values[slot] = oldValues[i];
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        values = new long[capacity];
+        Arrays.fill(values, EMPTY);
+        mask = capacity - 1;
+    }
+
+    private int slot(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32)) & mask;
+    }
+
+    private static void checkValue(long value) {
+        if (value < 0) {
+            throw new IllegalArgumentException("Values must not be negative: " + value);
+        }
+    }
+
+    private static int tableSizeFor(int expectedSize) {
+        int capacity = 16;
+        while (capacity < expectedSize * 2) {
+            capacity <<= 1;
+        }
+        return capacity;
+    }
+}
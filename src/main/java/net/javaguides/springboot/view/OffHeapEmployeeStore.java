@@ -0,0 +1,246 @@
+package net.javaguides.springboot.view;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Consumer;
+
+import net.javaguides.springboot.model.Employee;
+
+/**
+ * Stores employees in direct (off-heap) buffers instead of as {@link Employee} objects.
+ *
+ * Each row is one length-prefixed record:
+ * <pre>
+ *   int   record length
+ *   long  id
+ *   u16   first name length, UTF-8 bytes
+ *   u16   last name length,  UTF-8 bytes
+ *   u16   email length,      UTF-8 bytes
+ * </pre>
+ * A length of 0xFFFF encodes null. Records are appended to fixed-size chunks and located
+ * through a primitive id-to-address index, so the heap only holds two long arrays no matter
+ * how many rows are stored. Updates and deletes leave dead records behind; once they
+ * outweigh the live ones the live records are compacted in place, and the chunks that frees
+ * are reused for later writes rather than allocated again. Rows are decoded lazily on read.
+ */
+class OffHeapEmployeeStore implements EmployeeStore {
+
+    private static final int HEADER_BYTES = Integer.BYTES + Long.BYTES;
+
+    private static final int NULL_LENGTH = 0xFFFF;
+
+    private final int chunkSize;
+
+    private final List<ByteBuffer> chunks = new ArrayList<>();
+
+    // emptied chunks, cleared and ready to be written again
+    private final List<ByteBuffer> spares = new ArrayList<>();
+
+    private LongHashIndex addresses = new LongHashIndex(1024);
+
+    private long liveBytes;
+
+    private long deadBytes;
+
+    OffHeapEmployeeStore(int chunkSize) {
+        this.chunkSize = chunkSize;
+    }
+
+    @Override
+    public Optional<Employee> get(long id) {
+        long address = addresses.get(id);
+        return address < 0 ? Optional.empty() : Optional.of(decode(address));
+    }
+
+    @Override
+    public void put(Employee employee) {
+        byte[] firstName = encode(employee.getFirstName());
+        byte[] lastName = encode(employee.getLastName());
+        byte[] email = encode(employee.getEmail());
+        int length = HEADER_BYTES + 3 * Short.BYTES + byteLength(firstName) + byteLength(lastName) + byteLength(email);
+        if (length > chunkSize) {
+            throw new IllegalArgumentException("Employee " + employee.getId() + " does not fit in a " + chunkSize + " byte chunk");
+        }
+
+        ByteBuffer chunk = writableChunk(length);
+        long address = ((long) (chunks.size() - 1) << 32) | chunk.position();
+        chunk.putInt(length).putLong(employee.getId());
+        putField(chunk, firstName);
+        putField(chunk, lastName);
+        putField(chunk, email);
+
+        liveBytes += length;
+        long previous = addresses.put(employee.getId(), address);
+        if (previous >= 0) {
+            release(previous);
+        }
+    }
+
+    @Override
+    public void remove(long id) {
+        long previous = addresses.remove(id);
+        if (previous >= 0) {
+            release(previous);
+        }
+    }
+
+    @Override
+    public int size() {
+        return addresses.size();
+    }
+
+    @Override
+    public void forEach(Consumer<Employee> action) {
+        addresses.forEachValue(address -> action.accept(decode(address)));
+    }
+
+    @Override
+    public void clear() {
+        // a reload usually refills about as many chunks as it empties
+        chunks.forEach(chunk -> spares.add(chunk.clear()));
+        chunks.clear();
+        addresses = new LongHashIndex(1024);
+        liveBytes = 0;
+        deadBytes = 0;
+    }
+
+    long getLiveBytes() {
+        return liveBytes;
+    }
+
+    long getAllocatedBytes() {
+        return (long) (chunks.size() + spares.size()) * chunkSize;
+    }
+
+    private void release(long address) {
+        int length = chunk(address).getInt(offset(address));
+        liveBytes -= length;
+        deadBytes += length;
+        if (deadBytes > liveBytes && deadBytes > chunkSize) {
+            compact();
+        }
+    }
+
+    // slides the live records to the front of the existing chunks, in address order, so a
+    // record is only ever copied to an earlier position and never over one not yet moved;
+    // the chunks left empty become spares instead of garbage waiting for a GC to free them
+    private void compact() {
+        long[] live = new long[addresses.size()];
+        int[] count = { 0 };
+        addresses.forEachValue(address -> live[count[0]++] = address);
+        Arrays.sort(live);
+
+        byte[] record = new byte[256];
+        int target = 0;
+        ByteBuffer writer = chunks.get(0);
+        writer.position(0);
+        for (long address : live) {
+            ByteBuffer source = chunk(address);
+            int offset = offset(address);
+            int length = source.getInt(offset);
+            long id = source.getLong(offset + Integer.BYTES);
+            if (record.length < length) {
+                record = new byte[length];
+            }
+            source.duplicate().position(offset).get(record, 0, length);
+            if (writer.remaining() < length) {
+                writer = chunks.get(++target);
+                writer.position(0);
+            }
+            addresses.put(id, ((long) target << 32) | writer.position());
+            writer.put(record, 0, length);
+        }
+
+        List<ByteBuffer> emptied = chunks.subList(target + 1, chunks.size());
+        for (ByteBuffer chunk : emptied) {
+            // keeps enough spares to refill the chunks in use; the rest are dropped for the GC
+            if (spares.size() <= target) {
+                spares.add(chunk.clear());
+            }
+        }
+        emptied.clear();
+        deadBytes = 0;
+    }
+
+    private ByteBuffer writableChunk(int length) {
+        ByteBuffer chunk = chunks.isEmpty() ? null : chunks.get(chunks.size() - 1);
+        if (chunk == null || chunk.remaining() < length) {
+            chunk = spares.isEmpty() ? ByteBuffer.allocateDirect(chunkSize) : spares.remove(spares.size() - 1);
+            chunks.add(chunk);
+        }
+        return chunk;
+    }
+
+    private Employee decode(long address) {
+        ByteBuffer chunk = chunk(address);
+        int offset = offset(address);
+        int length = chunk.getInt(offset);
+        long id = chunk.getLong(offset + Integer.BYTES);
+        byte[] fields = new byte[length - HEADER_BYTES];
+        chunk.duplicate().position(offset + HEADER_BYTES).get(fields);
+
+        int position = 0;
+        int firstNameLength = readLength(fields, position);
+        String firstName = readField(fields, position += Short.BYTES, firstNameLength);
+        position += byteLength(firstNameLength);
+        int lastNameLength = readLength(fields, position);
+        String lastName = readField(fields, position += Short.BYTES, lastNameLength);
+        position += byteLength(lastNameLength);
+        int emailLength = readLength(fields, position);
+        String email = readField(fields, position + Short.BYTES, emailLength);
+
+        return Employee.builder()
+                .id(id)
+                .firstName(firstName)
+                .lastName(lastName)
+                .email(email)
+                .build();
+    }
+
+    private ByteBuffer chunk(long address) {
+        return chunks.get((int) (address >>> 32));
+    }
+
+    private static int offset(long address) {
+        return (int) address;
+    }
+
+    private static byte[] encode(String value) {
+        if (value == null) {
+            return null;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length >= NULL_LENGTH) {
+            throw new IllegalArgumentException("Field is too long to store: " + bytes.length + " bytes");
+        }
+        return bytes;
+    }
+
+    private static void putField(ByteBuffer chunk, byte[] bytes) {
+        if (bytes == null) {
+            chunk.putShort((short) NULL_LENGTH);
+        } else {
+            chunk.putShort((short) bytes.length).put(bytes);
+        }
+    }
+
+    private static int byteLength(byte[] bytes) {
+        return bytes == null ? 0 : bytes.length;
+    }
+
+    private static int byteLength(int storedLength) {
+        return storedLength == NULL_LENGTH ? 0 : storedLength;
+    }
+
+    private static int readLength(byte[] fields, int position) {
+        return ((fields[position] & 0xFF) << 8) | (fields[position + 1] & 0xFF);
+    }
+
+    private static String readField(byte[] fields, int position, int length) {
+        return length == NULL_LENGTH ? null : new String(fields, position, length, StandardCharsets.UTF_8);
+    }
+}
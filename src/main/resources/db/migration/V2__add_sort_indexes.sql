@@ -0,0 +1,3 @@
+-- keyset listing walks these in order: ?sort=lastName,firstName and ?sort=email
+create index idx_employees_name_id on employees (last_name, first_name, id);
+create index idx_employees_email_id on employees (email, id);
@@ -0,0 +1,2 @@
+-- upsert by email (insert ... on duplicate key update / merge ... key) needs the database to own uniqueness
+create unique index uk_employees_email on employees (email);
@@ -0,0 +1,16 @@
+create table if not exists employees (
+    id bigint not null auto_increment,
+    first_name varchar(255) not null,
+    last_name varchar(255) not null,
+    email varchar(255) not null,
+    primary key (id)
+);
+
+create index idx_employees_name on employees (first_name, last_name);
+
+-- owned by the shard the email hashes to; the primary key makes emails unique across shards
+create table if not exists employee_emails (
+    email varchar(255) not null,
+    employee_id bigint not null,
+    primary key (email)
+);
@@ -0,0 +1,11 @@
+-- delta sync: ?modifiedSince=<watermark> walks employees by (updated_at, id) and deletions by deleted_at
+alter table employees add column updated_at bigint not null default 0;
+create index idx_employees_updated_at_id on employees (updated_at, id);
+
+-- keyed by global id, on the shard that held the row
+create table if not exists employee_tombstones (
+    employee_id bigint not null,
+    deleted_at bigint not null,
+    primary key (employee_id)
+);
+create index idx_employee_tombstones_deleted_at on employee_tombstones (deleted_at, employee_id);
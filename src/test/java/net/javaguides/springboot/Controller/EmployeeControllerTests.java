@@ -2,16 +2,23 @@ package net.javaguides.springboot.Controller;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
 
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.test.web.servlet.ResultActions;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+import org.springframework.dao.DataAccessResourceFailureException;
 
 import static org.mockito.ArgumentMatchers.*;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.hamcrest.CoreMatchers.containsString;
 import static org.hamcrest.CoreMatchers.is;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 import static org.mockito.BDDMockito.*;
@@ -19,12 +26,28 @@ import static org.springframework.test.web.servlet.request.MockMvcRequestBuilder
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import net.javaguides.springboot.concurrent.DatabaseExecutor;
+import net.javaguides.springboot.feed.EmployeeChangeFeed;
+import net.javaguides.springboot.json.EmployeeResponseCache;
+import net.javaguides.springboot.model.EmailDomainChange;
 import net.javaguides.springboot.model.Employee;
+import net.javaguides.springboot.model.EmployeeDelta;
+import net.javaguides.springboot.model.EmployeeSort;
+import net.javaguides.springboot.model.EmployeeUpsertResult;
+import net.javaguides.springboot.resilience.ResilientEmployeeReads;
+import net.javaguides.springboot.search.EmployeeSearchIndex;
 import net.javaguides.springboot.service.EmployeeService;
+import net.javaguides.springboot.service.EmployeeStreamService;
+import net.javaguides.springboot.stats.EmployeeStats;
+import net.javaguides.springboot.stats.EmployeeStatsSnapshot;
+import reactor.core.publisher.Flux;
 
 @WebMvcTest
+@Import({ DatabaseExecutor.class, ResilientEmployeeReads.class, EmployeeResponseCache.class, SimpleMeterRegistry.class })
 public class EmployeeControllerTests {
 
     @Autowired
@@ -33,9 +56,31 @@ public class EmployeeControllerTests {
     @MockBean
     private EmployeeService employeeService;
 
+    @MockBean
+    private EmployeeStreamService employeeStreamService;
+
+    @MockBean
+    private EmployeeSearchIndex employeeSearchIndex;
+
+    @MockBean
+    private EmployeeStats employeeStats;
+
+    @MockBean
+    private EmployeeChangeFeed employeeChangeFeed;
+
     @Autowired
     private ObjectMapper objectMapper;
 
+    private final ObjectMapper cborMapper = new ObjectMapper(new CBORFactory());
+
+    // controller methods complete on the database executor, so dispatch again once they are done
+    private ResultActions performAsync(MockHttpServletRequestBuilder requestBuilder) throws Exception {
+        MvcResult result = mockMvc.perform(requestBuilder)
+            .andExpect(request().asyncStarted())
+            .andReturn();
+        return mockMvc.perform(asyncDispatch(result));
+    }
+
     @Test
     public void givenEmployeeObject_whenCreateEmployee_thenReturnSavedEmployee() throws JsonProcessingException, Exception {
 
@@ -48,7 +93,7 @@ public class EmployeeControllerTests {
         given(employeeService.saveEmployee(any(Employee.class)))
                 .will((invocation) -> invocation.getArgument(0));
 
-        ResultActions response = mockMvc.perform(post("/api/employees")
+        ResultActions response = performAsync(post("/api/employees")
             .contentType(MediaType.APPLICATION_JSON)
             .content(objectMapper.writeValueAsString(employee)));
 
@@ -78,12 +123,148 @@ public class EmployeeControllerTests {
         
         given(employeeService.getAllEmployees()).willReturn(employeeList);
 
-        ResultActions response = mockMvc.perform(get("/api/employees"));
+        ResultActions response = performAsync(get("/api/employees"));
 
         response.andExpect(status().isOk())
             .andExpect(jsonPath("$.size()", is(2)));
     }
 
+    @Test
+    public void givenListOfEmployees_whenStreamAllEmployees_thenReturnOneJsonLinePerEmployee() throws Exception {
+        Employee employee = Employee.builder()
+        .id(1l)
+        .firstName("Matthias")
+        .lastName("Holcombe")
+        .email("test@email.com")
+        .build();
+
+        Employee employee2 = Employee.builder()
+        .id(2l)
+        .firstName("bob")
+        .lastName("bobert")
+        .email("test2@email.com")
+        .build();
+
+        given(employeeStreamService.streamAllEmployees()).willReturn(Flux.just(employee, employee2));
+
+        ResultActions response = performAsync(get("/api/employees/stream")
+            .accept(MediaType.APPLICATION_NDJSON));
+
+        String body = response.andExpect(status().isOk())
+            .andReturn().getResponse().getContentAsString();
+        String[] lines = body.split("\n");
+        assertThat(lines).hasSize(2);
+        assertThat(objectMapper.readValue(lines[1], Employee.class).getEmail()).isEqualTo("test2@email.com");
+    }
+
+    @Test
+    public void givenQuery_whenSearchEmployees_thenReturnMatches() throws Exception {
+        Employee employee = Employee.builder()
+        .id(1l)
+        .firstName("Matthias")
+        .lastName("Holcombe")
+        .email("test@email.com")
+        .build();
+
+        given(employeeSearchIndex.isEnabled()).willReturn(true);
+        given(employeeSearchIndex.search("matt", 5)).willReturn(List.of(employee));
+
+        ResultActions response = performAsync(get("/api/employees/search").param("q", "matt").param("limit", "5"));
+
+        response.andExpect(status().isOk())
+            .andExpect(jsonPath("$.size()", is(1)))
+            .andExpect(jsonPath("$[0].firstName", is("Matthias")));
+    }
+
+    @Test
+    public void givenFullPage_whenGetSortedEmployees_thenLinkToNextPage() throws Exception {
+        Employee employee = Employee.builder()
+        .id(1l)
+        .firstName("Matthias")
+        .lastName("Holcombe")
+        .email("test@email.com")
+        .build();
+
+        Employee employee2 = Employee.builder()
+        .id(2l)
+        .firstName("bob")
+        .lastName("bobert")
+        .email("test2@email.com")
+        .build();
+
+        given(employeeService.getEmployeesSorted(EmployeeSort.NAME, null, 2)).willReturn(List.of(employee, employee2));
+
+        ResultActions response = performAsync(get("/api/employees")
+            .param("sort", "lastName,firstName")
+            .param("limit", "2"));
+
+        String cursor = EmployeeSort.NAME.cursorAfter(employee2);
+        response.andExpect(status().isOk())
+            .andExpect(jsonPath("$.size()", is(2)))
+            .andExpect(header().string("Link", containsString("after=" + cursor)));
+    }
+
+    @Test
+    public void givenWatermark_whenGetEmployeesModifiedSince_thenReturnChangedDeletedAndWatermark() throws Exception {
+        Employee employee = Employee.builder()
+        .id(1l)
+        .firstName("Matthias")
+        .lastName("Holcombe")
+        .email("test@email.com")
+        .build();
+
+        given(employeeService.getChangesSince(1000l)).willReturn(new EmployeeDelta(List.of(employee), List.of(2l), 5000l));
+
+        ResultActions response = performAsync(get("/api/employees").param("modifiedSince", "1000"));
+
+        response.andExpect(status().isOk())
+            .andExpect(jsonPath("$.changed.size()", is(1)))
+            .andExpect(jsonPath("$.changed[0].email", is("test@email.com")))
+            .andExpect(jsonPath("$.changed[0].updatedAt").doesNotExist())
+            .andExpect(jsonPath("$.deleted[0]", is(2)))
+            .andExpect(jsonPath("$.watermark", is(5000)));
+    }
+
+    @Test
+    public void givenUnknownSort_whenGetSortedEmployees_thenReturnBadRequest() throws Exception {
+        ResultActions response = mockMvc.perform(get("/api/employees").param("sort", "salary"));
+
+        response.andExpect(status().isBadRequest());
+    }
+
+    @Test
+    public void givenCounters_whenGetStats_thenReturnTotalAndBreakdowns() throws Exception {
+        given(employeeStats.snapshot(3)).willReturn(new EmployeeStatsSnapshot(5,
+            Map.of("email.com", 4l), Map.of("Holcombe", 2l)));
+
+        ResultActions response = mockMvc.perform(get("/api/employees/stats").param("top", "3"));
+
+        response.andExpect(status().isOk())
+            .andExpect(jsonPath("$.total", is(5)))
+            .andExpect(jsonPath("$.emailDomains['email.com']", is(4)))
+            .andExpect(jsonPath("$.lastNames.Holcombe", is(2)));
+    }
+
+    @Test
+    public void givenFields_whenGetAllEmployees_thenReturnOnlyRequestedFields() throws Exception {
+        given(employeeService.getAllEmployees(List.of("id", "email")))
+            .willReturn(List.of(Map.of("id", 1l, "email", "test@email.com")));
+
+        ResultActions response = performAsync(get("/api/employees").param("fields", "id,email"));
+
+        response.andExpect(status().isOk())
+            .andExpect(jsonPath("$.size()", is(1)))
+            .andExpect(jsonPath("$[0].email", is("test@email.com")))
+            .andExpect(jsonPath("$[0].firstName").doesNotExist());
+    }
+
+    @Test
+    public void givenUnknownField_whenGetAllEmployees_thenReturnBadRequest() throws Exception {
+        ResultActions response = mockMvc.perform(get("/api/employees").param("fields", "id,salary"));
+
+        response.andExpect(status().isBadRequest());
+    }
+
     @Test
     public void givenEmployeeId_whenGetEmployeeById_thenReturnEmployee() throws Exception {
         Employee employee = Employee.builder()
@@ -95,7 +276,7 @@ public class EmployeeControllerTests {
 
         given(employeeService.getEmployeeById(employee.getId())).willReturn(Optional.of(employee));
 
-        ResultActions response = mockMvc.perform(get("/api/employees/{id}", employee.getId()));
+        ResultActions response = performAsync(get("/api/employees/{id}", employee.getId()));
 
         response.andExpect(status().isOk())
             .andExpect(jsonPath("$.firstName", is("Matthias")))
@@ -103,16 +284,90 @@ public class EmployeeControllerTests {
             .andExpect(jsonPath("$.email", is("test@email.com")));
     }
 
+    @Test
+    public void givenEmployeeReadBefore_whenGetEmployeeById_thenServedFromCachedBytes() throws Exception {
+        Employee employee = Employee.builder()
+        .id(7l)
+        .firstName("Matthias")
+        .lastName("Holcombe")
+        .email("test@email.com")
+        .build();
+
+        given(employeeService.getEmployeeById(employee.getId())).willReturn(Optional.of(employee));
+
+        performAsync(get("/api/employees/{id}", employee.getId())).andExpect(status().isOk());
+        ResultActions response = performAsync(get("/api/employees/{id}", employee.getId()));
+
+        response.andExpect(status().isOk())
+            .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_JSON))
+            .andExpect(jsonPath("$.id", is(7)))
+            .andExpect(jsonPath("$.email", is("test@email.com")));
+        then(employeeService).should(times(1)).getEmployeeById(7l);
+    }
+
+    @Test
+    public void givenCborAccept_whenGetEmployeeById_thenReturnCborEmployee() throws Exception {
+        Employee employee = Employee.builder()
+        .id(1l)
+        .firstName("Matthias")
+        .lastName("Holcombe")
+        .email("test@email.com")
+        .build();
+
+        given(employeeService.getEmployeeById(employee.getId())).willReturn(Optional.of(employee));
+
+        ResultActions response = performAsync(get("/api/employees/{id}", employee.getId())
+            .accept(MediaType.APPLICATION_CBOR));
+
+        byte[] body = response.andExpect(status().isOk())
+            .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_CBOR))
+            .andReturn().getResponse().getContentAsByteArray();
+        Employee returnedEmployee = cborMapper.readValue(body, Employee.class);
+        assertThat(returnedEmployee.getFirstName()).isEqualTo("Matthias");
+        assertThat(returnedEmployee.getEmail()).isEqualTo("test@email.com");
+    }
+
+    @Test
+    public void givenCborEmployeeObject_whenCreateEmployee_thenReturnSavedEmployee() throws Exception {
+        Employee employee = Employee.builder()
+                .firstName("Matthias")
+                .lastName("Holcombe")
+                .email("test@email.com")
+                .build();
+
+        given(employeeService.saveEmployee(any(Employee.class)))
+                .will((invocation) -> invocation.getArgument(0));
+
+        ResultActions response = performAsync(post("/api/employees")
+            .contentType(MediaType.APPLICATION_CBOR)
+            .accept(MediaType.APPLICATION_JSON)
+            .content(cborMapper.writeValueAsBytes(employee)));
+
+        response.andExpect(status().isCreated())
+            .andExpect(jsonPath("$.firstName", is("Matthias")))
+            .andExpect(jsonPath("$.email", is("test@email.com")));
+    }
+
     @Test
     public void givenInvalidEmployeeID_whenGetEmployeeById_thenReturnNotFound() throws Exception {
         given(employeeService.getEmployeeById(100l)).willReturn(Optional.empty());
 
-        ResultActions response = mockMvc.perform(get("/api/employees/{id}", "100"));
+        ResultActions response = performAsync(get("/api/employees/{id}", "100"));
 
         response.andExpect(status().isNotFound());
 
     }
 
+    @Test
+    public void givenFailingDatabaseAndNothingCached_whenGetEmployeeById_thenReturnServiceUnavailable() throws Exception {
+        given(employeeService.getEmployeeById(42l)).willThrow(new DataAccessResourceFailureException("connection refused"));
+
+        ResultActions response = performAsync(get("/api/employees/{id}", "42"));
+
+        response.andExpect(status().isServiceUnavailable())
+            .andExpect(header().exists("Retry-After"));
+    }
+
     @Test
     public void givenUpdatedEmployee_whenUpdateEmployee_thenReturnUpdatedEmployee() throws JsonProcessingException, Exception {
         Employee savedEmployee = Employee.builder()
@@ -131,7 +386,7 @@ public class EmployeeControllerTests {
         given(employeeService.updateEmployee(any(Employee.class)))
                 .will((invocation) -> invocation.getArgument(0));
 
-        ResultActions response = mockMvc.perform(put("/api/employees/{id}", 1l)
+        ResultActions response = performAsync(put("/api/employees/{id}", 1l)
             .contentType(MediaType.APPLICATION_JSON)
             .content(objectMapper.writeValueAsString(updatedEmployee)));
 
@@ -151,18 +406,79 @@ public class EmployeeControllerTests {
         .build();
         
         given(employeeService.getEmployeeById(1l)).willReturn(Optional.empty());
-        ResultActions response = mockMvc.perform(put("/api/employees/{id}", 1l)
+        ResultActions response = performAsync(put("/api/employees/{id}", 1l)
             .contentType(MediaType.APPLICATION_JSON)
             .content(objectMapper.writeValueAsString(updatedEmployee)));
 
         response.andExpect(status().isNotFound());        
     }
 
+    @Test
+    public void givenNewEmail_whenUpsertEmployeeByEmail_thenReturnCreated() throws Exception {
+        Employee employee = Employee.builder()
+        .firstName("Matthias")
+        .lastName("Holcombe")
+        .build();
+
+        given(employeeService.upsertEmployees(anyList())).will(invocation -> {
+            List<Employee> employees = invocation.getArgument(0);
+            return new EmployeeUpsertResult(List.of(employees.get(0).toBuilder().id(7l).build()), List.of());
+        });
+
+        ResultActions response = performAsync(put("/api/employees/by-email/{email}", "test@email.com")
+            .contentType(MediaType.APPLICATION_JSON)
+            .content(objectMapper.writeValueAsString(employee)));
+
+        response.andExpect(status().isCreated())
+            .andExpect(jsonPath("$.id", is(7)))
+            .andExpect(jsonPath("$.email", is("test@email.com")));
+    }
+
+    @Test
+    public void givenRoster_whenUpsertEmployeesByEmail_thenReportInsertedAndUpdated() throws Exception {
+        Employee employee = Employee.builder()
+        .id(1l)
+        .firstName("Matthias")
+        .lastName("Holcombe")
+        .email("test@email.com")
+        .build();
+
+        Employee employee2 = Employee.builder()
+        .id(2l)
+        .firstName("bob")
+        .lastName("bobert")
+        .email("test2@email.com")
+        .build();
+
+        given(employeeService.upsertEmployees(anyList()))
+            .willReturn(new EmployeeUpsertResult(List.of(employee), List.of(employee2)));
+
+        ResultActions response = performAsync(put("/api/employees/by-email")
+            .contentType(MediaType.APPLICATION_JSON)
+            .content(objectMapper.writeValueAsString(List.of(employee, employee2))));
+
+        response.andExpect(status().isOk())
+            .andExpect(jsonPath("$.inserted[0].email", is("test@email.com")))
+            .andExpect(jsonPath("$.updated[0].email", is("test2@email.com")));
+    }
+
+    @Test
+    public void givenDomainChange_whenChangeEmailDomain_thenReturnUpdatedCount() throws Exception {
+        given(employeeService.changeEmailDomain("email.com", "example.org")).willReturn(42);
+
+        ResultActions response = performAsync(patch("/api/employees/email-domain")
+            .contentType(MediaType.APPLICATION_JSON)
+            .content(objectMapper.writeValueAsString(new EmailDomainChange("email.com", "example.org"))));
+
+        response.andExpect(status().isOk())
+            .andExpect(jsonPath("$.updated", is(42)));
+    }
+
     @Test
     public void givenEmployeeId_whenDeleteEmployee_thenReturnSuccess() throws Exception {
         willDoNothing().given(employeeService).deleteEmployee(1l);
 
-        ResultActions response = mockMvc.perform(delete("/api/employees/{id}", 1l));
+        ResultActions response = performAsync(delete("/api/employees/{id}", 1l));
         response.andExpect(status().isOk())
             .andExpect(jsonPath("$", is("Deleted Successfully")));
     }
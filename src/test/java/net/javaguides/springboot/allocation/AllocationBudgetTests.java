@@ -0,0 +1,202 @@
+package net.javaguides.springboot.allocation;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import net.javaguides.springboot.concurrent.DatabaseExecutor;
+import net.javaguides.springboot.controller.EmployeeController;
+import net.javaguides.springboot.json.EmployeeJsonCodec;
+import net.javaguides.springboot.json.EmployeeResponseCache;
+import net.javaguides.springboot.model.Employee;
+import net.javaguides.springboot.repository.EmployeeRepository;
+import net.javaguides.springboot.repository.EmployeeTombstoneRepository;
+import net.javaguides.springboot.resilience.ResilientEmployeeReads;
+import net.javaguides.springboot.service.impl.EmployeeServiceImpl;
+import net.javaguides.springboot.view.EmployeeView;
+
+/**
+ * Fails the build when the create, get and list paths start allocating more per request.
+ *
+ * Each path runs through the real controller, service, in-memory view, database executor and
+ * JSON encoding; only the database itself is replaced, by stubs that allocate nothing of
+ * their own. Budgets are in allocation-budgets.properties and can be overridden with a system
+ * property of the same name. When a change legitimately needs more, raise the budget in the
+ * same commit and say why.
+ */
+public class AllocationBudgetTests {
+
+    private static final Logger log = LoggerFactory.getLogger(AllocationBudgetTests.class);
+
+    private static final int EMPLOYEES = 1000;
+
+    private static final String[] WORKER_THREADS = { "employee-db-", "CompletableFutureDelayScheduler" };
+
+    private static final byte[] NEW_EMPLOYEE = ("{\"firstName\":\"Matthias\",\"lastName\":\"Holcombe\","
+            + "\"email\":\"new@email.com\"}").getBytes(StandardCharsets.UTF_8);
+
+    private final Properties budgets = new Properties();
+
+    private final HttpHeaders jsonRequest = new HttpHeaders();
+
+    private DatabaseExecutor databaseExecutor;
+
+    private ResilientEmployeeReads resilientEmployeeReads;
+
+    @BeforeEach
+    public void setup() throws IOException {
+        assumeTrue(AllocationMeter.isSupported(), "per-thread allocation counters are not available on this JVM");
+        try (InputStream in = getClass().getResourceAsStream("/allocation-budgets.properties")) {
+            budgets.load(in);
+        }
+    }
+
+    @AfterEach
+    public void tearDown() {
+        if (resilientEmployeeReads != null) {
+            resilientEmployeeReads.shutdown();
+        }
+        if (databaseExecutor != null) {
+            databaseExecutor.shutdown();
+        }
+    }
+
+    @DisplayName("test that creating an employee stays within its allocation budget")
+    @Test
+    public void givenCreateEmployee_whenMeasured_thenWithinBudget() {
+        EmployeeController controller = controller(false);
+
+        long bytes = AllocationMeter.bytesPerOperation(2_000, 2_000, () -> {
+            Employee created = controller.createEmployee(EmployeeJsonCodec.read(NEW_EMPLOYEE)).join();
+            write(created);
+        }, WORKER_THREADS);
+
+        assertWithinBudget("allocation.budget.create-employee-bytes", bytes);
+    }
+
+    @DisplayName("test that getting an employee by id stays within its allocation budget")
+    @Test
+    public void givenGetEmployeeById_whenMeasured_thenWithinBudget() {
+        EmployeeController controller = controller(false);
+
+        long bytes = AllocationMeter.bytesPerOperation(2_000, 2_000,
+                () -> write(controller.getEmployeeById(EMPLOYEES / 2, jsonRequest).join()), WORKER_THREADS);
+
+        assertWithinBudget("allocation.budget.get-employee-by-id-bytes", bytes);
+    }
+
+    @DisplayName("test that listing employees stays within its allocation budget per 1,000 employees")
+    @Test
+    public void givenGetAllEmployees_whenMeasured_thenWithinBudget() {
+        EmployeeController controller = controller(false);
+
+        long bytes = AllocationMeter.bytesPerOperation(200, 200,
+                () -> write(controller.getAllEmployees(jsonRequest).join()), WORKER_THREADS);
+
+        assertWithinBudget("allocation.budget.list-employees-per-1000-bytes", bytes * 1000 / EMPLOYEES);
+    }
+
+    @DisplayName("test that a cached employee list stays within its allocation budget")
+    @Test
+    public void givenCachedEmployeeList_whenMeasured_thenWithinBudget() {
+        EmployeeController controller = controller(true);
+
+        long bytes = AllocationMeter.bytesPerOperation(2_000, 2_000,
+                () -> write(controller.getAllEmployees(jsonRequest).join()), WORKER_THREADS);
+
+        assertWithinBudget("allocation.budget.list-employees-cached-bytes", bytes);
+    }
+
+    private void assertWithinBudget(String name, long bytes) {
+        long budget = Long.parseLong(System.getProperty(name, budgets.getProperty(name)));
+        log.info("{}: {} bytes per operation (budget {})", name, bytes, budget);
+        assertThat(bytes).as("bytes allocated per operation, see %s", name).isLessThanOrEqualTo(budget);
+    }
+
+    private EmployeeController controller(boolean responseCache) {
+        List<Employee> employees = new ArrayList<>(EMPLOYEES);
+        for (int i = 1; i <= EMPLOYEES; i++) {
+            employees.add(Employee.builder()
+                    .id(i)
+                    .firstName("First" + i)
+                    .lastName("Last" + i)
+                    .email("employee" + i + "@email.com")
+                    .build());
+        }
+        EmployeeRepository repository = repository(employees);
+        EmployeeView view = new EmployeeView(repository, true, "heap", 1 << 20);
+        view.load();
+        EmployeeServiceImpl service = new EmployeeServiceImpl(repository, event -> { }, view,
+                stub(EmployeeTombstoneRepository.class));
+        databaseExecutor = new DatabaseExecutor(2, 100, new SimpleMeterRegistry());
+        resilientEmployeeReads = new ResilientEmployeeReads(service, databaseExecutor,
+                2000, 100, 5, 5, 10000, new SimpleMeterRegistry());
+
+        EmployeeController controller = new EmployeeController();
+        ReflectionTestUtils.setField(controller, "employeeService", service);
+        ReflectionTestUtils.setField(controller, "databaseExecutor", databaseExecutor);
+        ReflectionTestUtils.setField(controller, "resilientEmployeeReads", resilientEmployeeReads);
+        ReflectionTestUtils.setField(controller, "employeeResponseCache", new EmployeeResponseCache(responseCache, 100, true, 1024));
+        return controller;
+    }
+
+    // save() hands back its argument with an id, like a persist; findAll() seeds the view
+    private static EmployeeRepository repository(List<Employee> employees) {
+        return (EmployeeRepository) Proxy.newProxyInstance(EmployeeRepository.class.getClassLoader(),
+                new Class<?>[] { EmployeeRepository.class }, (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "save":
+                            Employee employee = (Employee) args[0];
+                            employee.setId(EMPLOYEES + 1);
+                            return employee;
+                        case "findAll":
+                            return employees;
+                        default:
+                            throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+    }
+
+    private static <T> T stub(Class<T> type) {
+        return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] { type }, (proxy, method, args) -> {
+            throw new UnsupportedOperationException(method.getName());
+        }));
+    }
+
+    // what the message converters do with the body, minus the socket
+    private static void write(Object body) {
+        try {
+            if (body instanceof ResponseEntity) {
+                write(((ResponseEntity<?>) body).getBody());
+            } else if (body instanceof byte[]) {
+                OutputStream.nullOutputStream().write((byte[]) body);
+            } else if (body instanceof Employee) {
+                EmployeeJsonCodec.write((Employee) body, OutputStream.nullOutputStream());
+            } else {
+                throw new IllegalArgumentException("Unexpected body " + body);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package net.javaguides.springboot.allocation;
+
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+
+/**
+ * Measures heap bytes allocated per operation with the JVM's per-thread allocation counters
+ * (com.sun.management.ThreadMXBean). Work that hops to pool threads is counted by naming
+ * those threads; they must already exist when measuring starts, which the warm-up takes
+ * care of.
+ *
+ * Allocation counts are close to deterministic once the JIT has settled, unlike timings, so
+ * they can be asserted on in a normal test run. The result is the lowest of a few rounds,
+ * which filters out one-off allocations such as a late compilation or a pool thread
+ * growing its queue.
+ */
+final class AllocationMeter {
+
+    private static final com.sun.management.ThreadMXBean THREADS =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    private static final int ROUNDS = 3;
+
+    private AllocationMeter() {
+    }
+
+    static boolean isSupported() {
+        if (!THREADS.isThreadAllocatedMemorySupported()) {
+            return false;
+        }
+        THREADS.setThreadAllocatedMemoryEnabled(true);
+        return true;
+    }
+
+    static long bytesPerOperation(int warmups, int iterations, Runnable operation, String... threadNamePrefixes) {
+        for (int i = 0; i < warmups; i++) {
+            operation.run();
+        }
+        long[] threadIds = threadIds(threadNamePrefixes);
+        long lowest = Long.MAX_VALUE;
+        for (int round = 0; round < ROUNDS; round++) {
+            long before = allocatedBytes(threadIds);
+            for (int i = 0; i < iterations; i++) {
+                operation.run();
+            }
+            lowest = Math.min(lowest, (allocatedBytes(threadIds) - before) / iterations);
+        }
+        return lowest;
+    }
+
+    private static long allocatedBytes(long[] threadIds) {
+        // threads that have died since report -1
+        return Arrays.stream(THREADS.getThreadAllocatedBytes(threadIds)).filter(bytes -> bytes > 0).sum();
+    }
+
+    private static long[] threadIds(String... threadNamePrefixes) {
+        return Thread.getAllStackTraces().keySet().stream()
+                .filter(thread -> thread == Thread.currentThread()
+                        || Arrays.stream(threadNamePrefixes).anyMatch(prefix -> thread.getName().startsWith(prefix)))
+                .mapToLong(Thread::getId)
+                .toArray();
+    }
+}
@@ -0,0 +1,198 @@
+package net.javaguides.springboot.audit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import net.javaguides.springboot.event.EmployeeChangedEvent;
+import net.javaguides.springboot.model.Employee;
+
+public class AuditJournalTests {
+
+    private static final Logger log = LoggerFactory.getLogger(AuditJournalTests.class);
+
+    @TempDir
+    Path directory;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private AuditJournal journal;
+
+    private Employee employee;
+
+    @BeforeEach
+    public void setup() throws Exception {
+        journal = new AuditJournal(directory, 16, 50, meterRegistry);
+        employee = Employee.builder()
+                .id(1L)
+                .firstName("Ramesh")
+                .lastName("Fadatare")
+                .email("ramesh@gmail.com")
+                .build();
+    }
+
+    @AfterEach
+    public void close() {
+        journal.close();
+    }
+
+    @DisplayName("test that appended records are read back in order with their values")
+    @Test
+    public void givenAppendedRecords_whenRead_thenSameRecordsInOrder() {
+        journal.append(EmployeeChangedEvent.Type.CREATED, 1L, employee);
+        journal.append(EmployeeChangedEvent.Type.DELETED, 1L, null);
+
+        List<AuditRecord> records = journal.read(0, 10);
+
+        assertThat(records).extracting(AuditRecord::getSequence).containsExactly(0L, 1L);
+        assertThat(records.get(0).getType()).isEqualTo(EmployeeChangedEvent.Type.CREATED);
+        assertThat(records.get(0).getEmail()).isEqualTo("ramesh@gmail.com");
+        assertThat(records.get(0).isTruncated()).isFalse();
+        assertThat(records.get(1).getType()).isEqualTo(EmployeeChangedEvent.Type.DELETED);
+        assertThat(records.get(1).getFirstName()).isEmpty();
+    }
+
+    @DisplayName("test that values too long for a record are truncated but keep the full hash")
+    @Test
+    public void givenLongValues_whenAppended_thenTruncatedWithFullHash() {
+        Employee longer = employee.toBuilder().email("x".repeat(300) + "@gmail.com").build();
+        Employee other = employee.toBuilder().email("x".repeat(300) + "@yahoo.com").build();
+        journal.append(EmployeeChangedEvent.Type.UPDATED, 1L, longer);
+        journal.append(EmployeeChangedEvent.Type.UPDATED, 1L, other);
+
+        List<AuditRecord> records = journal.read(0, 10);
+
+        assertThat(records).allSatisfy(record -> assertThat(record.isTruncated()).isTrue());
+        assertThat(records.get(0).getFirstName()).isEqualTo("Ramesh");
+        assertThat(records.get(0).getEmail()).isEqualTo(records.get(1).getEmail());
+        assertThat(records.get(0).getValuesHash()).isNotEqualTo(records.get(1).getValuesHash());
+    }
+
+    @DisplayName("test that the journal rotates segments and replays across them")
+    @Test
+    public void givenMoreRecordsThanASegment_whenReplayed_thenAllRecordsFromOffset() throws Exception {
+        for (int i = 0; i < 40; i++) {
+            journal.append(EmployeeChangedEvent.Type.UPDATED, i, employee);
+        }
+
+        List<AuditRecord> replayed = new ArrayList<>();
+        journal.replay(10, replayed::add);
+
+        assertThat(segmentFiles()).isEqualTo(3);
+        assertThat(replayed).hasSize(30);
+        assertThat(replayed.get(0).getEmployeeId()).isEqualTo(10L);
+        assertThat(replayed.get(29).getEmployeeId()).isEqualTo(39L);
+    }
+
+    @DisplayName("test that a reopened journal keeps its records and continues the sequence")
+    @Test
+    public void givenReopenedJournal_whenAppended_thenSequenceContinues() throws Exception {
+        for (int i = 0; i < 20; i++) {
+            journal.append(EmployeeChangedEvent.Type.CREATED, i, employee);
+        }
+        journal.close();
+
+        journal = new AuditJournal(directory, 16, 50, meterRegistry);
+        long sequence = journal.append(EmployeeChangedEvent.Type.DELETED, 3L, null);
+
+        assertThat(sequence).isEqualTo(20L);
+        assertThat(journal.read(0, 100)).hasSize(21);
+    }
+
+    @DisplayName("test that compaction drops only whole segments before the sequence")
+    @Test
+    public void givenCompaction_whenRead_thenOlderSegmentsGone() throws Exception {
+        for (int i = 0; i < 40; i++) {
+            journal.append(EmployeeChangedEvent.Type.UPDATED, i, employee);
+        }
+
+        long removed = journal.compact(35);
+
+        assertThat(removed).isEqualTo(32L);
+        assertThat(segmentFiles()).isEqualTo(1);
+        assertThat(journal.read(0, 100)).extracting(AuditRecord::getSequence).startsWith(32L).hasSize(8);
+    }
+
+    @DisplayName("test that an append whose segment cannot be created claims no slot and is counted as failed")
+    @Test
+    public void givenSegmentCreationFails_whenAppending_thenNoHoleLeft() throws Exception {
+        for (int i = 0; i < 16; i++) {
+            journal.append(EmployeeChangedEvent.Type.UPDATED, i, employee);
+        }
+        // the next segment file can't be created while the directory is a regular file
+        Path moved = directory.resolveSibling(directory.getFileName() + "-moved");
+        Files.move(directory, moved);
+        Files.createFile(directory);
+
+        journal.onEmployeeChanged(EmployeeChangedEvent.updated(employee));
+
+        assertThat(meterRegistry.counter("employees.audit.append.failures").count()).isEqualTo(1);
+        assertThat(journal.getNextSequence()).isEqualTo(16L);
+        Files.delete(directory);
+        Files.move(moved, directory);
+        journal.append(EmployeeChangedEvent.Type.DELETED, 1L, null);
+        assertThat(journal.read(0, 100)).extracting(AuditRecord::getSequence).hasSize(17).endsWith(16L);
+    }
+
+    @DisplayName("test that concurrent appends cost a few microseconds each and lose nothing")
+    @Test
+    public void givenConcurrentWriters_whenAppending_thenFastAndComplete() throws Exception {
+        journal.close();
+        journal = new AuditJournal(directory.resolve("throughput"), 65536, 100, meterRegistry);
+        int threads = 4;
+        int appends = 50_000;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            // warm-up round, then a measured one
+            runAppends(executor, threads, appends);
+            long nanos = runAppends(executor, threads, appends);
+            double nanosPerAppend = (double) nanos / (threads * appends);
+            log.info("Audit journal: {} ns per append with {} threads", String.format("%.0f", nanosPerAppend), threads);
+
+            assertThat(journal.read(0, Integer.MAX_VALUE)).hasSize(2 * threads * appends);
+            // generous, so that a slow CI machine doesn't fail it; a regression to
+            // per-append locking or fsync is far above it
+            assertThat(nanosPerAppend).isLessThan(20_000);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private long runAppends(ExecutorService executor, int threads, int appends) throws Exception {
+        long start = System.nanoTime();
+        List<Future<?>> writers = new ArrayList<>();
+        for (int thread = 0; thread < threads; thread++) {
+            writers.add(executor.submit(() -> {
+                for (int i = 0; i < appends; i++) {
+                    journal.append(EmployeeChangedEvent.Type.UPDATED, i, employee);
+                }
+            }));
+        }
+        for (Future<?> writer : writers) {
+            writer.get();
+        }
+        return System.nanoTime() - start;
+    }
+
+    private long segmentFiles() throws Exception {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(file -> file.getFileName().toString().endsWith(".audit")).count();
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package net.javaguides.springboot.feed;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.List;
+import java.util.Optional;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import net.javaguides.springboot.event.EmployeeChangedEvent;
+import net.javaguides.springboot.model.Employee;
+
+public class EmployeeChangeFeedTests {
+
+    private EmployeeChangeFeed changeFeed;
+
+    @BeforeEach
+    public void setup() {
+        changeFeed = new EmployeeChangeFeed(4, 1, 16, 1000);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        changeFeed.shutdown();
+    }
+
+    private Employee employee(long id) {
+        return Employee.builder()
+                .id(id)
+                .firstName("Matthias")
+                .lastName("Holcombe")
+                .email("test" + id + "@email.com")
+                .build();
+    }
+
+    @DisplayName("test for replaying changes after a sequence")
+    @Test
+    public void givenAppendedChanges_whenChangesAfter_thenReturnChangesInOrder() {
+        changeFeed.append(EmployeeChangedEvent.created(employee(1)));
+        changeFeed.append(EmployeeChangedEvent.updated(employee(1)));
+        changeFeed.append(EmployeeChangedEvent.deleted(1));
+
+        Optional<List<EmployeeChange>> changes = changeFeed.changesAfter(1, 10);
+
+        assertThat(changes).isPresent();
+        assertThat(changes.get()).extracting(EmployeeChange::getSequence).containsExactly(2L, 3L);
+        assertThat(changes.get().get(1).getType()).isEqualTo(EmployeeChangedEvent.Type.DELETED);
+        assertThat(changes.get().get(1).getEmployee()).isNull();
+    }
+
+    @DisplayName("test for a consumer that is caught up")
+    @Test
+    public void givenCaughtUpSequence_whenChangesAfter_thenReturnEmpty() {
+        changeFeed.append(EmployeeChangedEvent.created(employee(1)));
+
+        Optional<List<EmployeeChange>> changes = changeFeed.changesAfter(changeFeed.getLastSequence(), 10);
+
+        assertThat(changes).isPresent();
+        assertThat(changes.get()).isEmpty();
+    }
+
+    @DisplayName("test for a consumer that fell behind the ring buffer")
+    @Test
+    public void givenOverwrittenSequence_whenChangesAfter_thenResyncRequired() {
+        for (long id = 1; id <= 6; id++) {
+            changeFeed.append(EmployeeChangedEvent.created(employee(id)));
+        }
+
+        assertThat(changeFeed.changesAfter(1, 10)).isEmpty();
+        assertThat(changeFeed.changesAfter(2, 10)).isPresent();
+        assertThat(changeFeed.changesAfter(2, 10).get()).hasSize(4);
+    }
+
+    @DisplayName("test for a sequence from the future")
+    @Test
+    public void givenUnknownSequence_whenChangesAfter_thenResyncRequired() {
+        changeFeed.append(EmployeeChangedEvent.created(employee(1)));
+
+        assertThat(changeFeed.changesAfter(42, 10)).isEmpty();
+    }
+}
@@ -12,7 +12,9 @@ import org.springframework.http.MediaType;
 import org.springframework.test.context.DynamicPropertyRegistry;
 import org.springframework.test.context.DynamicPropertySource;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.test.web.servlet.ResultActions;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
 import org.testcontainers.containers.MySQLContainer;
 import org.testcontainers.junit.jupiter.Container;
 import org.testcontainers.junit.jupiter.Testcontainers;
@@ -55,6 +57,13 @@ public class EmployeeControllerIT extends AbstractContainerBaseTest {
     @Autowired
     private ObjectMapper objectMapper;
 
+    private ResultActions performAsync(MockHttpServletRequestBuilder requestBuilder) throws Exception {
+        MvcResult result = mockMvc.perform(requestBuilder)
+            .andExpect(request().asyncStarted())
+            .andReturn();
+        return mockMvc.perform(asyncDispatch(result));
+    }
+
     @BeforeEach
     void setup() {
         employeeRepository.deleteAll();
@@ -69,7 +78,7 @@ public class EmployeeControllerIT extends AbstractContainerBaseTest {
                 .email("test@email.com")
                 .build();
 
-        ResultActions response = mockMvc.perform(post("/api/employees")
+        ResultActions response = performAsync(post("/api/employees")
             .contentType(MediaType.APPLICATION_JSON)
             .content(objectMapper.writeValueAsString(employee)));
 
@@ -99,7 +108,7 @@ public class EmployeeControllerIT extends AbstractContainerBaseTest {
 
         employeeRepository.saveAll(employeeList);
 
-        ResultActions response = mockMvc.perform(get("/api/employees"));
+        ResultActions response = performAsync(get("/api/employees"));
 
         response.andExpect(status().isOk())
             .andExpect(jsonPath("$.size()", is(2)));
@@ -115,7 +124,7 @@ public class EmployeeControllerIT extends AbstractContainerBaseTest {
 
         employeeRepository.save(employee);
 
-        ResultActions response = mockMvc.perform(get("/api/employees/{id}", employee.getId()));
+        ResultActions response = performAsync(get("/api/employees/{id}", employee.getId()));
 
         response.andExpect(status().isOk())
             .andExpect(jsonPath("$.firstName", is("Matthias")))
@@ -126,7 +135,7 @@ public class EmployeeControllerIT extends AbstractContainerBaseTest {
     @Test
     public void givenInvalidEmployeeID_whenGetEmployeeById_thenReturnNotFound() throws Exception {
 
-        ResultActions response = mockMvc.perform(get("/api/employees/{id}", "100000000"));
+        ResultActions response = performAsync(get("/api/employees/{id}", "100000000"));
 
         response.andExpect(status().isNotFound());
     }
@@ -147,7 +156,7 @@ public class EmployeeControllerIT extends AbstractContainerBaseTest {
         
         employeeRepository.save(savedEmployee);
 
-        ResultActions response = mockMvc.perform(put("/api/employees/{id}", savedEmployee.getId())
+        ResultActions response = performAsync(put("/api/employees/{id}", savedEmployee.getId())
             .contentType(MediaType.APPLICATION_JSON)
             .content(objectMapper.writeValueAsString(updatedEmployee)));
 
@@ -166,7 +175,7 @@ public class EmployeeControllerIT extends AbstractContainerBaseTest {
         .email("test2@email.com")
         .build();
         
-        ResultActions response = mockMvc.perform(put("/api/employees/{id}", 10000000000l)
+        ResultActions response = performAsync(put("/api/employees/{id}", 10000000000l)
             .contentType(MediaType.APPLICATION_JSON)
             .content(objectMapper.writeValueAsString(updatedEmployee)));
 
@@ -183,7 +192,7 @@ public class EmployeeControllerIT extends AbstractContainerBaseTest {
         .build();
 
         employeeRepository.save(employee);
-        ResultActions response = mockMvc.perform(delete("/api/employees/{id}", employee.getId()));
+        ResultActions response = performAsync(delete("/api/employees/{id}", employee.getId()));
         response.andExpect(status().isOk())
             .andExpect(jsonPath("$", is("Deleted Successfully")));
     }
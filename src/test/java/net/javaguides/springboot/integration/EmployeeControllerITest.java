@@ -10,7 +10,9 @@ import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMock
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.test.web.servlet.ResultActions;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
 
 import net.javaguides.springboot.model.Employee;
 import net.javaguides.springboot.repository.EmployeeRepository;
@@ -37,6 +39,13 @@ public class EmployeeControllerITest {
     @Autowired
     private ObjectMapper objectMapper;
 
+    private ResultActions performAsync(MockHttpServletRequestBuilder requestBuilder) throws Exception {
+        MvcResult result = mockMvc.perform(requestBuilder)
+            .andExpect(request().asyncStarted())
+            .andReturn();
+        return mockMvc.perform(asyncDispatch(result));
+    }
+
     @BeforeEach
     void setup() {
         employeeRepository.deleteAll();
@@ -51,7 +60,7 @@ public class EmployeeControllerITest {
                 .email("test@email.com")
                 .build();
 
-        ResultActions response = mockMvc.perform(post("/api/employees")
+        ResultActions response = performAsync(post("/api/employees")
             .contentType(MediaType.APPLICATION_JSON)
             .content(objectMapper.writeValueAsString(employee)));
 
@@ -81,7 +90,7 @@ public class EmployeeControllerITest {
 
         employeeRepository.saveAll(employeeList);
 
-        ResultActions response = mockMvc.perform(get("/api/employees"));
+        ResultActions response = performAsync(get("/api/employees"));
 
         response.andExpect(status().isOk())
             .andExpect(jsonPath("$.size()", is(2)));
@@ -97,7 +106,7 @@ public class EmployeeControllerITest {
 
         employeeRepository.save(employee);
 
-        ResultActions response = mockMvc.perform(get("/api/employees/{id}", employee.getId()));
+        ResultActions response = performAsync(get("/api/employees/{id}", employee.getId()));
 
         response.andExpect(status().isOk())
             .andExpect(jsonPath("$.firstName", is("Matthias")))
@@ -108,7 +117,7 @@ public class EmployeeControllerITest {
     @Test
     public void givenInvalidEmployeeID_whenGetEmployeeById_thenReturnNotFound() throws Exception {
 
-        ResultActions response = mockMvc.perform(get("/api/employees/{id}", "100000000"));
+        ResultActions response = performAsync(get("/api/employees/{id}", "100000000"));
 
         response.andExpect(status().isNotFound());
     }
@@ -129,7 +138,7 @@ public class EmployeeControllerITest {
         
         employeeRepository.save(savedEmployee);
 
-        ResultActions response = mockMvc.perform(put("/api/employees/{id}", savedEmployee.getId())
+        ResultActions response = performAsync(put("/api/employees/{id}", savedEmployee.getId())
             .contentType(MediaType.APPLICATION_JSON)
             .content(objectMapper.writeValueAsString(updatedEmployee)));
 
@@ -148,7 +157,7 @@ public class EmployeeControllerITest {
         .email("test2@email.com")
         .build();
         
-        ResultActions response = mockMvc.perform(put("/api/employees/{id}", 10000000000l)
+        ResultActions response = performAsync(put("/api/employees/{id}", 10000000000l)
             .contentType(MediaType.APPLICATION_JSON)
             .content(objectMapper.writeValueAsString(updatedEmployee)));
 
@@ -165,7 +174,7 @@ public class EmployeeControllerITest {
         .build();
 
         employeeRepository.save(employee);
-        ResultActions response = mockMvc.perform(delete("/api/employees/{id}", employee.getId()));
+        ResultActions response = performAsync(delete("/api/employees/{id}", employee.getId()));
         response.andExpect(status().isOk())
             .andExpect(jsonPath("$", is("Deleted Successfully")));
     }
@@ -0,0 +1,218 @@
+package net.javaguides.springboot.invalidation;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.after;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.context.ApplicationEventPublisher;
+
+import net.javaguides.springboot.event.EmployeeChangedEvent;
+import net.javaguides.springboot.model.Employee;
+import net.javaguides.springboot.service.EmployeeService;
+
+public class EmployeeInvalidationBusTests {
+
+    private final List<byte[]> sent = new ArrayList<>();
+
+    private LoopbackInvalidationTransport transport;
+
+    private EmployeeService employeeService;
+
+    private ApplicationEventPublisher eventPublisher;
+
+    private ApplicationEventPublisher remotePublisher;
+
+    private EmployeeInvalidationBus bus;
+
+    private EmployeeInvalidationBus remoteBus;
+
+    private Employee employee;
+
+    @BeforeEach
+    public void setup() throws Exception {
+        employee = Employee.builder()
+                .id(1l)
+                .firstName("Matthias")
+                .lastName("Holcombe")
+                .email("test@email.com")
+                .build();
+        employeeService = mock(EmployeeService.class);
+        eventPublisher = mock(ApplicationEventPublisher.class);
+        remotePublisher = mock(ApplicationEventPublisher.class);
+
+        transport = new LoopbackInvalidationTransport();
+        LoopbackInvalidationTransport recorder = transport.join();
+        recorder.start(sent::add);
+
+        // a long flush interval, so the tests decide when batches go out
+        bus = new EmployeeInvalidationBus(transport, employeeService, eventPublisher, 60_000, 2);
+        remoteBus = new EmployeeInvalidationBus(transport.join(), employeeService, remotePublisher, 60_000, 2);
+        bus.start();
+        remoteBus.start();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        bus.shutdown();
+        remoteBus.shutdown();
+    }
+
+    @DisplayName("test that repeated changes to one employee coalesce into one entry")
+    @Test
+    public void givenRepeatedChanges_whenFlush_thenOneEntryPerEmployee() {
+        bus.onEmployeeChanged(EmployeeChangedEvent.created(employee));
+        bus.onEmployeeChanged(EmployeeChangedEvent.updated(employee));
+        bus.onEmployeeChanged(EmployeeChangedEvent.deleted(1l));
+
+        bus.flush();
+
+        assertThat(sent).hasSize(1);
+        assertThat(InvalidationBatch.decode(sent.get(0)).getEntries()).containsOnlyKeys(1l);
+        assertThat(InvalidationBatch.decode(sent.get(0)).getEntries().get(1l).getType())
+                .isEqualTo(EmployeeChangedEvent.Type.DELETED);
+    }
+
+    @DisplayName("test that an employee created and then updated within one flush is sent as created")
+    @Test
+    public void givenCreatedThenUpdated_whenFlush_thenSentAsCreated() {
+        bus.onEmployeeChanged(EmployeeChangedEvent.created(employee));
+        bus.onEmployeeChanged(EmployeeChangedEvent.updated(employee));
+
+        bus.flush();
+
+        assertThat(InvalidationBatch.decode(sent.get(0)).getEntries().get(1l).getType())
+                .isEqualTo(EmployeeChangedEvent.Type.CREATED);
+    }
+
+    @DisplayName("test that pending entries are split into batches of at most max-batch ids")
+    @Test
+    public void givenMoreChangesThanMaxBatch_whenFlush_thenSeveralBatches() {
+        for (long id = 1; id <= 5; id++) {
+            bus.onEmployeeChanged(EmployeeChangedEvent.deleted(id));
+        }
+
+        bus.flush();
+
+        assertThat(sent).hasSize(3);
+        assertThat(sent).allMatch(batch -> InvalidationBatch.decode(batch).getEntries().size() <= 2);
+    }
+
+    @DisplayName("test that a remote node evicts invalidated employees, then republishes them reloaded with their change type")
+    @Test
+    public void givenLocalChanges_whenFlushed_thenRemoteNodeEvictsAndReloads() {
+        given(employeeService.getEmployeesById(anyCollection())).willReturn(List.of(employee));
+
+        bus.onEmployeeChanged(EmployeeChangedEvent.created(employee));
+        bus.onEmployeeChanged(EmployeeChangedEvent.deleted(2l));
+        bus.flush();
+
+        ArgumentCaptor<EmployeeChangedEvent> events = ArgumentCaptor.forClass(EmployeeChangedEvent.class);
+        verify(remotePublisher, timeout(1000).times(3)).publishEvent(events.capture());
+        assertThat(events.getAllValues()).allMatch(EmployeeChangedEvent::isRemote);
+        assertThat(events.getAllValues())
+                .extracting(EmployeeChangedEvent::getEmployeeId, EmployeeChangedEvent::getType,
+                        event -> event.getEmployee() != null)
+                .containsExactly(tuple(1l, EmployeeChangedEvent.Type.CREATED, false),
+                        tuple(2l, EmployeeChangedEvent.Type.DELETED, false),
+                        tuple(1l, EmployeeChangedEvent.Type.CREATED, true));
+        // the sending node ignores its own batch
+        verify(eventPublisher, after(100).never()).publishEvent(any());
+    }
+
+    @DisplayName("test that a failing database doesn't stop the eviction and the reload is retried")
+    @Test
+    public void givenDatabaseFailure_whenBatchReceived_thenEvictedAndReloadRetried() {
+        given(employeeService.getEmployeesById(anyCollection()))
+                .willThrow(new IllegalStateException("database down"))
+                .willReturn(List.of(employee));
+
+        bus.onEmployeeChanged(EmployeeChangedEvent.updated(employee));
+        bus.flush();
+
+        ArgumentCaptor<EmployeeChangedEvent> events = ArgumentCaptor.forClass(EmployeeChangedEvent.class);
+        verify(remotePublisher, timeout(2000).times(2)).publishEvent(events.capture());
+        assertThat(events.getAllValues().get(0).getEmployee()).isNull();
+        assertThat(events.getAllValues().get(1).getEmployee()).isNotNull();
+        verify(employeeService, times(2)).getEmployeesById(anyCollection());
+    }
+
+    @DisplayName("test that a row the read didn't return is reloaded again")
+    @Test
+    public void givenRowMissingFromRead_whenBatchReceived_thenReloadRetried() {
+        given(employeeService.getEmployeesById(anyCollection()))
+                .willReturn(List.of())
+                .willReturn(List.of(employee));
+
+        bus.onEmployeeChanged(EmployeeChangedEvent.updated(employee));
+        bus.flush();
+
+        ArgumentCaptor<EmployeeChangedEvent> events = ArgumentCaptor.forClass(EmployeeChangedEvent.class);
+        verify(remotePublisher, timeout(2000).times(2)).publishEvent(events.capture());
+        assertThat(events.getAllValues().get(1).getEmployee()).isNotNull();
+        verify(employeeService, times(2)).getEmployeesById(anyCollection());
+    }
+
+    @DisplayName("test that a batch older than one already applied from the same node is dropped")
+    @Test
+    public void givenOutOfOrderBatches_whenReceived_thenOlderDropped() {
+        remoteBus.receive(new InvalidationBatch(42l,
+                Map.of(2l, new InvalidationBatch.Entry(200l, EmployeeChangedEvent.Type.DELETED))).encode());
+        remoteBus.receive(new InvalidationBatch(42l,
+                Map.of(2l, new InvalidationBatch.Entry(100l, EmployeeChangedEvent.Type.CREATED))).encode());
+
+        ArgumentCaptor<EmployeeChangedEvent> events = ArgumentCaptor.forClass(EmployeeChangedEvent.class);
+        verify(remotePublisher, after(300).times(1)).publishEvent(events.capture());
+        assertThat(events.getValue().getType()).isEqualTo(EmployeeChangedEvent.Type.DELETED);
+        verifyNoInteractions(employeeService);
+    }
+
+    @DisplayName("test that remote events are not sent out again")
+    @Test
+    public void givenRemoteEvent_whenFlush_thenNothingSent() {
+        remoteBus.onEmployeeChanged(EmployeeChangedEvent.updated(employee).toRemote());
+
+        remoteBus.flush();
+
+        assertThat(sent).isEmpty();
+    }
+
+    @DisplayName("test that a batch survives encoding and malformed batches are rejected")
+    @Test
+    public void givenBatch_whenEncodedAndDecoded_thenSameEntries() {
+        InvalidationBatch batch = new InvalidationBatch(42l,
+                Map.of(7l, new InvalidationBatch.Entry(100l, EmployeeChangedEvent.Type.UPDATED)));
+
+        InvalidationBatch decoded = InvalidationBatch.decode(batch.encode());
+
+        assertThat(decoded.getNodeId()).isEqualTo(42l);
+        assertThat(decoded.getEntries().get(7l).getVersion()).isEqualTo(100l);
+        assertThat(decoded.getEntries().get(7l).getType()).isEqualTo(EmployeeChangedEvent.Type.UPDATED);
+        Assertions.assertThrows(IllegalArgumentException.class, () -> {
+            InvalidationBatch.decode(new byte[] {2, 0, 0});
+        });
+        // the format without change types is no longer understood
+        Assertions.assertThrows(IllegalArgumentException.class, () -> {
+            InvalidationBatch.decode(new byte[] {1, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0});
+        });
+        verify(employeeService, never()).getEmployeesById(anyCollection());
+    }
+}
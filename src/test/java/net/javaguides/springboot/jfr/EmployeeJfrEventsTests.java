@@ -0,0 +1,138 @@
+package net.javaguides.springboot.jfr;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.mock;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.aop.framework.ProxyFactory;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.HandlerMapping;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import net.javaguides.springboot.model.Employee;
+import net.javaguides.springboot.repository.EmployeeRepository;
+import net.javaguides.springboot.service.EmployeeService;
+
+public class EmployeeJfrEventsTests {
+
+    private EmployeeService employeeService;
+
+    private EmployeeRepository employeeRepository;
+
+    private Employee employee;
+
+    @BeforeEach
+    public void setup() {
+        employee = Employee.builder()
+                .id(7l)
+                .firstName("Matthias")
+                .lastName("Holcombe")
+                .email("test@email.com")
+                .build();
+
+        EmployeeService serviceTarget = mock(EmployeeService.class);
+        EmployeeRepository repositoryTarget = mock(EmployeeRepository.class);
+        given(repositoryTarget.findById(anyLong())).willReturn(Optional.of(employee));
+        employeeRepository = proxy(repositoryTarget, EmployeeRepository.class, true);
+        given(serviceTarget.getEmployeeById(anyLong())).will(invocation -> employeeRepository.findById(invocation.getArgument(0)));
+        given(serviceTarget.getAllEmployees()).willReturn(List.of(employee, employee));
+        employeeService = proxy(serviceTarget, EmployeeService.class, false);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T proxy(T target, Class<T> type, boolean repository) {
+        ProxyFactory factory = new ProxyFactory(target);
+        factory.addInterface(type);
+        factory.addAdvice(new EmployeeEventInterceptor(repository));
+        return (T) factory.getProxy();
+    }
+
+    private List<RecordedEvent> record(Runnable work) throws Exception {
+        Path file = Files.createTempFile("employees-", ".jfr");
+        try (Recording recording = new Recording()) {
+            recording.enable(EmployeeOperationEvent.class);
+            recording.enable(EmployeeServiceEvent.class);
+            recording.enable(EmployeeQueryEvent.class);
+            recording.start();
+            work.run();
+            recording.stop();
+            recording.dump(file);
+            return RecordingFile.readAllEvents(file).stream()
+                    .filter(event -> event.getEventType().getName().startsWith("net.javaguides.springboot."))
+                    .collect(Collectors.toList());
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @DisplayName("test that service and repository calls emit events with id and rows")
+    @Test
+    public void givenRecording_whenServiceCalled_thenServiceAndQueryEvents() throws Exception {
+        List<RecordedEvent> events = record(() -> employeeService.getEmployeeById(7l));
+
+        assertThat(events).extracting(event -> event.getEventType().getName())
+                .containsExactlyInAnyOrder("net.javaguides.springboot.EmployeeService", "net.javaguides.springboot.EmployeeQuery");
+        assertThat(events).allSatisfy(event -> {
+            assertThat(event.getString("operation")).isIn("getEmployeeById", "findById");
+            assertThat(event.getLong("employeeId")).isEqualTo(7l);
+            assertThat(event.getLong("rows")).isEqualTo(1l);
+        });
+    }
+
+    @DisplayName("test that a request event adds up rows and database time of its service calls")
+    @Test
+    public void givenRecording_whenRequestHandled_thenOperationEventWithTotals() throws Exception {
+        EmployeeOperationRecorder recorder = new EmployeeOperationRecorder();
+        HandlerMethod handler = new HandlerMethod(employeeService, EmployeeService.class.getMethod("getEmployeeById", long.class));
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/employees/7");
+        request.setAttribute(HandlerMapping.URI_TEMPLATE_VARIABLES_ATTRIBUTE, Map.of("id", "7"));
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        List<RecordedEvent> events = record(() -> {
+            recorder.preHandle(request, response, handler);
+            employeeService.getEmployeeById(7l);
+            employeeService.getAllEmployees();
+            OperationRecording.current().addSerializationNanos(1_000);
+            recorder.afterCompletion(request, response, handler, null);
+        });
+
+        RecordedEvent operation = events.stream()
+                .filter(event -> event.getEventType().getName().equals("net.javaguides.springboot.EmployeeOperation"))
+                .findFirst().get();
+        assertThat(operation.getString("operation")).isEqualTo("getEmployeeById");
+        assertThat(operation.getLong("employeeId")).isEqualTo(7l);
+        assertThat(operation.getLong("rows")).isEqualTo(3l);
+        assertThat(operation.getDuration("databaseTime").toNanos()).isPositive();
+        assertThat(operation.getDuration("serializationTime").toNanos()).isEqualTo(1_000);
+        assertThat(operation.getInt("status")).isEqualTo(200);
+        assertThat(OperationRecording.current()).isNull();
+    }
+
+    @DisplayName("test that nothing is recorded or attached without a running recording")
+    @Test
+    public void givenNoRecording_whenRequestHandled_thenNoRecordingAttached() throws Exception {
+        EmployeeOperationRecorder recorder = new EmployeeOperationRecorder();
+        HandlerMethod handler = new HandlerMethod(employeeService, EmployeeService.class.getMethod("getAllEmployees"));
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/employees");
+
+        recorder.preHandle(request, new MockHttpServletResponse(), handler);
+
+        assertThat(OperationRecording.current()).isNull();
+        assertThat(employeeService.getAllEmployees()).hasSize(2);
+    }
+}
@@ -0,0 +1,75 @@
+package net.javaguides.springboot.json;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import net.javaguides.springboot.model.Employee;
+
+public class EmployeeJsonCodecTests {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private final Employee employee = Employee.builder()
+            .id(1l)
+            .firstName("Matthias \"Matt\"")
+            .lastName("Holcombé\t\u0001😀")
+            .email("test@email.com")
+            .build();
+
+    @DisplayName("test that a single employee is written exactly like Jackson writes it")
+    @Test
+    public void givenEmployee_whenWrite_thenSameBytesAsJackson() throws Exception {
+        assertThat(EmployeeJsonCodec.toBytes(employee)).isEqualTo(objectMapper.writeValueAsBytes(employee));
+    }
+
+    @DisplayName("test that a list of employees is written exactly like Jackson writes it")
+    @Test
+    public void givenEmployeeList_whenWriteList_thenSameBytesAsJackson() throws Exception {
+        List<Employee> employees = List.of(employee, employee.toBuilder().id(2l).firstName(null).build());
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        EmployeeJsonCodec.writeList(employees, out);
+
+        assertThat(out.toByteArray()).isEqualTo(objectMapper.writeValueAsBytes(employees));
+    }
+
+    @DisplayName("test that Jackson output reads back into the same employee")
+    @Test
+    public void givenJacksonJson_whenRead_thenReturnEmployee() throws Exception {
+        Employee read = EmployeeJsonCodec.read(objectMapper.writeValueAsBytes(employee));
+
+        assertThat(read.getId()).isEqualTo(1l);
+        assertThat(read.getFirstName()).isEqualTo(employee.getFirstName());
+        assertThat(read.getLastName()).isEqualTo(employee.getLastName());
+        assertThat(read.getEmail()).isEqualTo(employee.getEmail());
+    }
+
+    @DisplayName("test that unknown properties are skipped")
+    @Test
+    public void givenUnknownProperties_whenRead_thenIgnoreThem() {
+        String json = "{ \"extra\": {\"nested\": [1, \"}\", null]}, \"firstName\": \"Bob\", \"flag\": true, \"email\": \"b\\u00e9@email.com\" }";
+
+        Employee read = EmployeeJsonCodec.read(json.getBytes(StandardCharsets.UTF_8));
+
+        assertThat(read.getFirstName()).isEqualTo("Bob");
+        assertThat(read.getEmail()).isEqualTo("bé@email.com");
+        assertThat(read.getLastName()).isNull();
+    }
+
+    @DisplayName("test that malformed JSON is rejected")
+    @Test
+    public void givenTruncatedJson_whenRead_thenThrowException() {
+        Assertions.assertThrows(IllegalArgumentException.class, () -> {
+            EmployeeJsonCodec.read("{\"id\":1,".getBytes(StandardCharsets.UTF_8));
+        });
+    }
+}
@@ -0,0 +1,105 @@
+package net.javaguides.springboot.json;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import net.javaguides.springboot.event.EmployeeChangedEvent;
+import net.javaguides.springboot.model.Employee;
+
+public class EmployeeResponseCacheTests {
+
+    private EmployeeResponseCache cache;
+
+    private Employee employee;
+
+    @BeforeEach
+    public void setup() {
+        cache = new EmployeeResponseCache(true, 2, true, 64);
+        employee = Employee.builder()
+                .id(1L)
+                .firstName("Ramesh")
+                .lastName("Fadatare")
+                .email("ramesh@gmail.com")
+                .build();
+    }
+
+    @DisplayName("test that the list is served from the same bytes until an employee changes")
+    @Test
+    public void givenCachedList_whenEmployeeChanged_thenListDropped() {
+        EncodedJson body = cache.putAll(cache.version(), List.of(employee));
+
+        assertThat(cache.getAll()).isSameAs(body);
+        assertThat(new String(body.getBytes(), StandardCharsets.UTF_8))
+                .isEqualTo("[" + new String(EmployeeJsonCodec.toBytes(employee), StandardCharsets.UTF_8) + "]");
+
+        cache.onEmployeeChanged(EmployeeChangedEvent.deleted(2L));
+
+        assertThat(cache.getAll()).isNull();
+    }
+
+    @DisplayName("test that a body read before a change is returned but not kept")
+    @Test
+    public void givenChangeDuringRead_whenPut_thenNotCached() {
+        long version = cache.version();
+        cache.onEmployeeChanged(EmployeeChangedEvent.updated(employee));
+
+        EncodedJson list = cache.putAll(version, List.of(employee));
+        EncodedJson single = cache.putEmployee(version, employee);
+
+        assertThat(list).isNotNull();
+        assertThat(single).isNotNull();
+        assertThat(cache.getAll()).isNull();
+        assertThat(cache.getEmployee(1L)).isNull();
+    }
+
+    @DisplayName("test that hot employees survive changes to other employees and are bounded")
+    @Test
+    public void givenHotEmployees_whenOtherEmployeeChanged_thenStillCached() {
+        cache.putEmployee(cache.version(), employee);
+        cache.putEmployee(cache.version(), employee.toBuilder().id(2L).build());
+
+        cache.onEmployeeChanged(EmployeeChangedEvent.deleted(2L));
+        assertThat(cache.getEmployee(1L)).isNotNull();
+        assertThat(cache.getEmployee(2L)).isNull();
+
+        cache.putEmployee(cache.version(), employee.toBuilder().id(3L).build());
+        cache.putEmployee(cache.version(), employee.toBuilder().id(4L).build());
+        assertThat(cache.getEmployee(1L)).isNull();
+        assertThat(cache.getEmployee(4L)).isNotNull();
+    }
+
+    @DisplayName("test that large lists get a gzip variant that decompresses to the same JSON")
+    @Test
+    public void givenLargeList_whenGzipped_thenSameJson() throws Exception {
+        EncodedJson body = cache.putAll(cache.version(), List.of(employee, employee.toBuilder().id(2L).build()));
+
+        byte[] gzipped = body.getGzipped();
+
+        assertThat(gzipped).isNotNull();
+        assertThat(body.getGzipped()).isSameAs(gzipped);
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(gzipped))) {
+            assertThat(in.readAllBytes()).isEqualTo(body.getBytes());
+        }
+        assertThat(cache.putAll(cache.version(), List.of()).getGzipped()).isNull();
+    }
+
+    @DisplayName("test that a disabled cache still encodes but keeps nothing")
+    @Test
+    public void givenDisabledCache_whenPut_thenNothingCached() {
+        cache = new EmployeeResponseCache(false, 2, true, 64);
+
+        cache.putAll(cache.version(), List.of(employee));
+        cache.putEmployee(cache.version(), employee);
+
+        assertThat(cache.getAll()).isNull();
+        assertThat(cache.getEmployee(1L)).isNull();
+    }
+}
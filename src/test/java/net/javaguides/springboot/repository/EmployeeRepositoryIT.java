@@ -1,5 +1,6 @@
 package net.javaguides.springboot.repository;
 
+import java.util.ArrayList;
 import java.util.List;
 
 import org.assertj.core.api.Assertions;
@@ -11,9 +12,11 @@ import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
 import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
 
 import net.javaguides.springboot.integration.AbstractContainerBaseTest;
 import net.javaguides.springboot.model.Employee;
+import net.javaguides.springboot.model.EmployeeSort;
 
 @DataJpaTest
 @AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
@@ -22,6 +25,9 @@ public class EmployeeRepositoryIT extends AbstractContainerBaseTest {
     @Autowired
     private EmployeeRepository employeeRepository;
 
+    @Autowired
+    private TestEntityManager testEntityManager;
+
     private Employee employee;
 
     @BeforeEach
@@ -139,5 +145,52 @@ public class EmployeeRepositoryIT extends AbstractContainerBaseTest {
         Employee foundEmployee = employeeRepository.findByNativeSQL("Matthias", "Holcombe");
 
         assertThat(foundEmployee).isNotNull();
-    }    
+    }
+
+    @DisplayName("test that MySQL walks the sort indexes without a filesort")
+    @Test
+    public void givenManyEmployees_whenExplainSortedQueries_thenNoFilesort() {
+        List<Employee> employees = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            employees.add(Employee.builder()
+                    .firstName("first" + (i % 37))
+                    .lastName("last" + (i % 53))
+                    .email("test" + i + "@email.com")
+                    .build());
+        }
+        employeeRepository.saveAllAndFlush(employees);
+
+        Object[] byName = explain("select * from employees where last_name >= 'last2' and (last_name > 'last2'"
+                + " or (last_name = 'last2' and (first_name > 'first5' or (first_name = 'first5' and id > 10))))"
+                + " order by last_name, first_name, id limit 100");
+        Object[] byEmail = explain("select * from employees order by email, id limit 100");
+
+        // columns 6 and 11 of MySQL's EXPLAIN are key and Extra
+        assertThat(byName[6]).isEqualTo("idx_employees_name_id");
+        assertThat(String.valueOf(byName[11])).doesNotContain("filesort");
+        assertThat(byEmail[6]).isEqualTo("idx_employees_email_id");
+        assertThat(String.valueOf(byEmail[11])).doesNotContain("filesort");
+    }
+
+    @DisplayName("test that sorted pages follow MySQL's case-insensitive collation and cover every row once")
+    @Test
+    public void givenMixedCaseEmails_whenPagingSorted_thenCollationOrder() {
+        for (String email : List.of("b@x.com", "A@x.com", "a@y.com", "C@x.com")) {
+            employeeRepository.save(Employee.builder().firstName("first").lastName("last").email(email).build());
+        }
+        employeeRepository.flush();
+
+        List<Employee> first = employeeRepository.findSorted(EmployeeSort.EMAIL, null, 2);
+        List<Employee> second = employeeRepository.findSorted(EmployeeSort.EMAIL, first.get(1), 2);
+
+        assertThat(first).extracting(Employee::getEmail).containsExactly("A@x.com", "a@y.com");
+        assertThat(second).extracting(Employee::getEmail).containsExactly("b@x.com", "C@x.com");
+    }
+
+    private Object[] explain(String sql) {
+        return (Object[]) testEntityManager.getEntityManager()
+                .createNativeQuery("explain " + sql)
+                .getResultList()
+                .get(0);
+    }
 }
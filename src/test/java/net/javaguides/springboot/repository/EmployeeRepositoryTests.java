@@ -1,17 +1,24 @@
 package net.javaguides.springboot.repository;
 
 import java.util.List;
+import java.util.Map;
 
 import org.assertj.core.api.Assertions;
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.dao.InvalidDataAccessResourceUsageException;
 
 import net.javaguides.springboot.model.Employee;
+import net.javaguides.springboot.model.EmployeeSort;
+import net.javaguides.springboot.model.EmployeeTombstone;
+import net.javaguides.springboot.model.EmployeeUpsertResult;
 
 @DataJpaTest
 public class EmployeeRepositoryTests {
@@ -19,6 +26,12 @@ public class EmployeeRepositoryTests {
     @Autowired
     private EmployeeRepository employeeRepository;
 
+    @Autowired
+    private EmployeeTombstoneRepository tombstoneRepository;
+
+    @Autowired
+    private TestEntityManager testEntityManager;
+
     private Employee employee;
 
     @BeforeEach
@@ -136,5 +149,152 @@ public class EmployeeRepositoryTests {
         Employee foundEmployee = employeeRepository.findByNativeSQL("Matthias", "Holcombe");
 
         assertThat(foundEmployee).isNotNull();
-    }    
+    }
+
+    @DisplayName("test for projection of requested fields")
+    @Test
+    public void givenEmployeeObject_whenFindAllProjected_thenReturnOnlyRequestedFields() {
+        employeeRepository.save(employee);
+
+        List<Map<String, Object>> projected = employeeRepository.findAllProjected(List.of("id", "email"));
+
+        assertThat(projected).hasSize(1);
+        assertThat(projected.get(0)).containsOnlyKeys("id", "email");
+        assertThat(projected.get(0).get("email")).isEqualTo("test@email.com");
+    }
+
+    @DisplayName("test for projection of a single employee by id")
+    @Test
+    public void givenEmployeeObject_whenFindProjectedById_thenReturnRequestedFields() {
+        employeeRepository.save(employee);
+
+        Map<String, Object> projected = employeeRepository.findProjectedById(employee.getId(), List.of("lastName")).get();
+
+        assertThat(projected).containsEntry("lastName", "Holcombe");
+        assertThat(employeeRepository.findProjectedById(employee.getId() + 1, List.of("lastName"))).isEmpty();
+    }
+
+    @DisplayName("test for keyset pages in last name, first name order")
+    @Test
+    public void givenEmployees_whenFindSortedPageByPage_thenEveryEmployeeOnceInOrder() {
+        String[][] names = { { "Zed", "Adams" }, { "Amy", "Baker" }, { "Bob", "Adams" }, { "Amy", "Adams" }, { "Cal", "Baker" } };
+        for (int i = 0; i < names.length; i++) {
+            employeeRepository.save(Employee.builder()
+                    .firstName(names[i][0])
+                    .lastName(names[i][1])
+                    .email("test" + i + "@email.com")
+                    .build());
+        }
+        employeeRepository.save(Employee.builder().firstName("Amy").lastName("Adams").email("test9@email.com").build());
+
+        List<Employee> first = employeeRepository.findSorted(EmployeeSort.NAME, null, 4);
+        List<Employee> second = employeeRepository.findSorted(EmployeeSort.NAME, first.get(3), 4);
+
+        assertThat(first).extracting(Employee::getFirstName).containsExactly("Amy", "Amy", "Bob", "Zed");
+        assertThat(first.get(0).getId()).isLessThan(first.get(1).getId());
+        assertThat(second).extracting(Employee::getFirstName).containsExactly("Amy", "Cal");
+    }
+
+    // H2's plan only shows the indexes exist; EmployeeRepositoryIT checks MySQL's
+    @DisplayName("test that sorted listing walks the composite indexes instead of sorting")
+    @Test
+    public void givenManyEmployees_whenExplainSortedQueries_thenIndexSorted() {
+        for (int i = 0; i < 500; i++) {
+            employeeRepository.save(Employee.builder()
+                    .firstName("first" + (i % 37))
+                    .lastName("last" + (i % 53))
+                    .email("test" + i + "@email.com")
+                    .build());
+        }
+        employeeRepository.flush();
+
+        String byName = explain("select * from employees where last_name >= 'last2' and (last_name > 'last2'"
+                + " or (last_name = 'last2' and (first_name > 'first5' or (first_name = 'first5' and id > 10))))"
+                + " order by last_name, first_name, id limit 100");
+        String byEmail = explain("select * from employees order by email, id limit 100");
+
+        assertThat(byName).containsIgnoringCase("idx_employees_name_id").contains("index sorted");
+        assertThat(byEmail).containsIgnoringCase("idx_employees_email_id").contains("index sorted");
+    }
+
+    @DisplayName("test for rewriting an email domain with one update")
+    @Test
+    public void givenEmployeesInDomain_whenRewriteEmailDomain_thenOnlyThoseChange() {
+        employeeRepository.save(employee);
+        employeeRepository.save(Employee.builder().firstName("bob").lastName("bobert").email("bob@other.com").build());
+
+        assertThat(employeeRepository.findByEmailPatternForUpdate("%@email.com")).hasSize(1);
+        assertThat(employeeRepository.countEmailDomainConflicts("%@email.com", 9, "other.com")).isEqualTo(0);
+
+        int updated = employeeRepository.rewriteEmailDomain("%@email.com", 9, "other.com", System.currentTimeMillis());
+
+        assertThat(updated).isEqualTo(1);
+        assertThat(employeeRepository.findByEmail("test@other.com")).isPresent();
+        assertThat(employeeRepository.findByEmail("bob@other.com")).isPresent();
+        assertThat(employeeRepository.countEmailDomainConflicts("%@other.com", 9, "other.com")).isEqualTo(2);
+    }
+
+    @DisplayName("test for finding employees written and deleted after a watermark")
+    @Test
+    public void givenWrittenAndDeletedEmployees_whenFindAfterWatermark_thenOnlyNewerRows() {
+        Employee employee2 = Employee.builder().firstName("bob").lastName("bobert").email("bob@other.com").build();
+        employeeRepository.save(employee);
+        employeeRepository.save(employee2);
+        testEntityManager.flush();
+        tombstoneRepository.save(new EmployeeTombstone(99L, employee2.getUpdatedAt()));
+
+        assertThat(employee.getUpdatedAt()).isPositive();
+        assertThat(employeeRepository.findByUpdatedAtGreaterThanOrderByUpdatedAtAscIdAsc(0))
+                .extracting(Employee::getEmail).containsExactly("test@email.com", "bob@other.com");
+        assertThat(employeeRepository.findByUpdatedAtGreaterThanOrderByUpdatedAtAscIdAsc(employee2.getUpdatedAt())).isEmpty();
+        assertThat(tombstoneRepository.findEmployeeIdsDeletedAfter(0)).containsExactly(99L);
+        assertThat(tombstoneRepository.findEmployeeIdsDeletedAfter(employee2.getUpdatedAt())).isEmpty();
+    }
+
+    @DisplayName("test that a sync from 0 includes rows written before updated_at existed")
+    @Test
+    public void givenRowStampedZero_whenFindModifiedSinceZero_thenIncluded() {
+        employeeRepository.save(employee);
+        testEntityManager.getEntityManager()
+                .createNativeQuery("insert into employees (first_name, last_name, email, updated_at)"
+                        + " values ('bob', 'bobert', 'bob@other.com', 0)")
+                .executeUpdate();
+
+        assertThat(employeeRepository.findModifiedSince(0))
+                .extracting(Employee::getEmail).containsExactly("bob@other.com", "test@email.com");
+        assertThat(employeeRepository.findModifiedSince(employee.getUpdatedAt() - 1))
+                .extracting(Employee::getEmail).containsExactly("test@email.com");
+    }
+
+    @DisplayName("test that upsert picks MySQL syntax for MariaDB and rejects unknown databases")
+    @Test
+    public void givenDatabaseProduct_whenUpsertStatement_thenMatchingDialectOrError() {
+        assertThat(EmployeeRepositoryCustomImpl.upsertStatement("MySQL")).contains("on duplicate key update");
+        assertThat(EmployeeRepositoryCustomImpl.upsertStatement("MariaDB")).contains("on duplicate key update");
+        assertThat(EmployeeRepositoryCustomImpl.upsertStatement("H2")).startsWith("merge into");
+        assertThatThrownBy(() -> EmployeeRepositoryCustomImpl.upsertStatement("PostgreSQL"))
+                .isInstanceOf(InvalidDataAccessResourceUsageException.class)
+                .hasMessageContaining("PostgreSQL");
+    }
+
+    @DisplayName("test for upsert by email reporting inserted and updated rows")
+    @Test
+    public void givenExistingAndNewEmails_whenUpsertByEmail_thenInsertOrUpdate() {
+        employeeRepository.save(employee);
+
+        EmployeeUpsertResult result = employeeRepository.upsertByEmail(List.of(
+                Employee.builder().firstName("Matt").lastName("Holcombe").email("test@email.com").build(),
+                Employee.builder().firstName("bob").lastName("bobert").email("bob@email.com").build()));
+
+        assertThat(result.getUpdated()).extracting(Employee::getId).containsExactly(employee.getId());
+        assertThat(result.getInserted()).extracting(Employee::getEmail).containsExactly("bob@email.com");
+        assertThat(employeeRepository.count()).isEqualTo(2);
+        assertThat(result.getUpdated().get(0).getFirstName()).isEqualTo("Matt");
+    }
+
+    private String explain(String sql) {
+        return String.valueOf(testEntityManager.getEntityManager()
+                .createNativeQuery("explain " + sql)
+                .getSingleResult());
+    }
 }
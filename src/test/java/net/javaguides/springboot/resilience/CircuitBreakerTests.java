@@ -0,0 +1,79 @@
+package net.javaguides.springboot.resilience;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+public class CircuitBreakerTests {
+
+    private final AtomicLong now = new AtomicLong();
+
+    private CircuitBreaker circuitBreaker;
+
+    @BeforeEach
+    public void setup() {
+        circuitBreaker = new CircuitBreaker(2, 1000, now::get);
+    }
+
+    private void fail() {
+        assertThat(circuitBreaker.tryAcquire()).isTrue();
+        circuitBreaker.onFailure();
+    }
+
+    @DisplayName("test that the breaker opens after the threshold and refuses calls")
+    @Test
+    public void givenConsecutiveFailures_whenThresholdReached_thenOpen() {
+        fail();
+        assertThat(circuitBreaker.getState()).isEqualTo(CircuitBreaker.State.CLOSED);
+
+        fail();
+
+        assertThat(circuitBreaker.getState()).isEqualTo(CircuitBreaker.State.OPEN);
+        assertThat(circuitBreaker.tryAcquire()).isFalse();
+    }
+
+    @DisplayName("test that a success resets the failure count")
+    @Test
+    public void givenSuccessBetweenFailures_whenFailAgain_thenStayClosed() {
+        fail();
+        assertThat(circuitBreaker.tryAcquire()).isTrue();
+        circuitBreaker.onSuccess();
+        fail();
+
+        assertThat(circuitBreaker.getState()).isEqualTo(CircuitBreaker.State.CLOSED);
+    }
+
+    @DisplayName("test that only one probe goes through after the open period")
+    @Test
+    public void givenOpenBreaker_whenPeriodElapses_thenSingleProbe() {
+        fail();
+        fail();
+        now.addAndGet(TimeUnit.MILLISECONDS.toNanos(1000));
+
+        assertThat(circuitBreaker.tryAcquire()).isTrue();
+        assertThat(circuitBreaker.getState()).isEqualTo(CircuitBreaker.State.HALF_OPEN);
+        assertThat(circuitBreaker.tryAcquire()).isFalse();
+
+        circuitBreaker.onSuccess();
+        assertThat(circuitBreaker.getState()).isEqualTo(CircuitBreaker.State.CLOSED);
+    }
+
+    @DisplayName("test that a failed probe re-opens the breaker for another period")
+    @Test
+    public void givenHalfOpenBreaker_whenProbeFails_thenOpenAgain() {
+        fail();
+        fail();
+        now.addAndGet(TimeUnit.MILLISECONDS.toNanos(1000));
+
+        fail();
+
+        assertThat(circuitBreaker.getState()).isEqualTo(CircuitBreaker.State.OPEN);
+        now.addAndGet(TimeUnit.MILLISECONDS.toNanos(999));
+        assertThat(circuitBreaker.tryAcquire()).isFalse();
+    }
+}
@@ -0,0 +1,77 @@
+package net.javaguides.springboot.resilience;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.sql.DataSource;
+
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+/**
+ * Wraps a real DataSource and, on demand, makes new connections fail or hang until
+ * {@link #heal()} is called, the way a browned-out database does.
+ */
+class FaultInjectingDataSource extends DelegatingDataSource {
+
+    enum Mode {
+        HEALTHY, FAIL, HANG
+    }
+
+    private volatile Mode mode = Mode.HEALTHY;
+
+    private volatile CountDownLatch hung = new CountDownLatch(0);
+
+    private final AtomicInteger connectionAttempts = new AtomicInteger();
+
+    FaultInjectingDataSource(DataSource target) {
+        super(target);
+    }
+
+    void fail() {
+        mode = Mode.FAIL;
+    }
+
+    void hang() {
+        hung = new CountDownLatch(1);
+        mode = Mode.HANG;
+    }
+
+    void heal() {
+        mode = Mode.HEALTHY;
+        hung.countDown();
+    }
+
+    int getConnectionAttempts() {
+        return connectionAttempts.get();
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        injectFault();
+        return super.getConnection();
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        injectFault();
+        return super.getConnection(username, password);
+    }
+
+    private void injectFault() throws SQLException {
+        connectionAttempts.incrementAndGet();
+        if (mode == Mode.FAIL) {
+            throw new SQLTransientConnectionException("Injected connection failure");
+        }
+        if (mode == Mode.HANG) {
+            try {
+                hung.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new SQLTransientConnectionException("Interrupted while hanging", e);
+            }
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package net.javaguides.springboot.resilience;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+
+public class QueryDeadlineDataSourceTests {
+
+    private EmbeddedDatabase database;
+
+    private QueryDeadlineDataSource dataSource;
+
+    @BeforeEach
+    public void setup() {
+        database = new EmbeddedDatabaseBuilder()
+                .setType(EmbeddedDatabaseType.H2)
+                .generateUniqueName(true)
+                .build();
+        dataSource = new QueryDeadlineDataSource(database);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        database.shutdown();
+    }
+
+    private int queryTimeout() {
+        try (Connection connection = dataSource.getConnection();
+                PreparedStatement statement = connection.prepareStatement("select 1")) {
+            return statement.getQueryTimeout();
+        } catch (SQLException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @DisplayName("test that statements get the time left to the deadline, rounded up to whole seconds")
+    @Test
+    public void givenDeadline_whenStatementCreated_thenQueryTimeoutSet() {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(300);
+
+        assertThat(QueryDeadline.call(deadline, this::queryTimeout)).isEqualTo(1);
+        assertThat(QueryDeadline.call(System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(2500), this::queryTimeout))
+                .isEqualTo(3);
+    }
+
+    @DisplayName("test that statements created outside a deadline keep the driver default")
+    @Test
+    public void givenNoDeadline_whenStatementCreated_thenNoQueryTimeout() {
+        assertThat(queryTimeout()).isZero();
+        assertThat(QueryDeadline.current()).isNull();
+    }
+
+    @DisplayName("test that a read whose deadline already passed doesn't reach the database")
+    @Test
+    public void givenPassedDeadline_whenCalled_thenQueryTimeout() {
+        assertThatThrownBy(() -> QueryDeadline.call(System.nanoTime() - 1, this::queryTimeout))
+                .isInstanceOf(QueryTimeoutException.class);
+        assertThat(QueryDeadline.current()).isNull();
+    }
+}
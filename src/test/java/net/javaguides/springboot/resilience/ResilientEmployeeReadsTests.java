@@ -0,0 +1,175 @@
+package net.javaguides.springboot.resilience;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import javax.sql.DataSource;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import net.javaguides.springboot.concurrent.DatabaseExecutor;
+import net.javaguides.springboot.config.QueryDeadlineConfig;
+import net.javaguides.springboot.exception.DatabaseUnavailableException;
+import net.javaguides.springboot.model.Employee;
+import net.javaguides.springboot.repository.EmployeeRepository;
+import net.javaguides.springboot.repository.EmployeeTombstoneRepository;
+import net.javaguides.springboot.service.impl.EmployeeServiceImpl;
+import net.javaguides.springboot.view.EmployeeView;
+
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+// reads run on the database executor, so the rows have to be committed for them to see them
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_EACH_TEST_METHOD)
+@Import({ EmployeeServiceImpl.class, EmployeeView.class, DatabaseExecutor.class, ResilientEmployeeReads.class,
+        QueryDeadlineConfig.class, ResilientEmployeeReadsTests.FaultInjectionConfig.class })
+@TestPropertySource(properties = {
+        "employees.reads.timeout-ms=300",
+        "employees.reads.breaker.failure-threshold=3",
+        "employees.reads.breaker.open-ms=2000"
+})
+public class ResilientEmployeeReadsTests {
+
+    @TestConfiguration
+    static class FaultInjectionConfig {
+
+        @Bean
+        FaultInjectingDataSource dataSource() {
+            return new FaultInjectingDataSource(new EmbeddedDatabaseBuilder()
+                    .setType(EmbeddedDatabaseType.H2)
+                    .generateUniqueName(true)
+                    .build());
+        }
+
+        @Bean
+        MeterRegistry meterRegistry() {
+            return new SimpleMeterRegistry();
+        }
+    }
+
+    private FaultInjectingDataSource dataSource;
+
+    @Autowired
+    private EmployeeRepository employeeRepository;
+
+    @Autowired
+    private EmployeeTombstoneRepository tombstoneRepository;
+
+    @Autowired
+    private DatabaseExecutor databaseExecutor;
+
+    @Autowired
+    private ResilientEmployeeReads resilientEmployeeReads;
+
+    @BeforeEach
+    public void setup(@Autowired DataSource dataSource) throws SQLException {
+        // wrapped by QueryDeadlineConfig
+        this.dataSource = dataSource.unwrap(FaultInjectingDataSource.class);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        dataSource.heal();
+    }
+
+    private Employee saveEmployee() {
+        return employeeRepository.save(Employee.builder()
+                .firstName("Matthias")
+                .lastName("Holcombe")
+                .email("test@email.com")
+                .build());
+    }
+
+    @DisplayName("test that a hanging database is answered from the last known value within the timeout")
+    @Test
+    public void givenCachedEmployee_whenDatabaseHangs_thenServeStaleValue() throws Exception {
+        Employee employee = saveEmployee();
+        ReadResult<Optional<Employee>> fresh = resilientEmployeeReads.getEmployeeById(employee.getId()).get();
+        assertThat(fresh.isStale()).isFalse();
+
+        dataSource.hang();
+        long start = System.nanoTime();
+        ReadResult<Optional<Employee>> stale = resilientEmployeeReads.getEmployeeById(employee.getId()).get(5, TimeUnit.SECONDS);
+
+        assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)).isLessThan(2000);
+        assertThat(stale.isStale()).isTrue();
+        assertThat(stale.getValue()).hasValueSatisfying(cached -> assertThat(cached.getEmail()).isEqualTo("test@email.com"));
+    }
+
+    @DisplayName("test that a failing database with nothing cached fails fast")
+    @Test
+    public void givenNothingCached_whenDatabaseFails_thenDatabaseUnavailable() {
+        dataSource.fail();
+
+        assertThatThrownBy(() -> resilientEmployeeReads.getEmployeeById(1l).get(5, TimeUnit.SECONDS))
+                .hasCauseInstanceOf(DatabaseUnavailableException.class);
+    }
+
+    @DisplayName("test that repeated failures open the circuit and a background refresh closes it again")
+    @Test
+    public void givenRepeatedFailures_whenThresholdReached_thenCircuitOpensUntilDatabaseRecovers() throws Exception {
+        saveEmployee();
+        assertThat(resilientEmployeeReads.getAllEmployees().get().getValue()).hasSize(1);
+
+        dataSource.fail();
+        for (int i = 0; i < 3; i++) {
+            assertThat(resilientEmployeeReads.getAllEmployees().get(5, TimeUnit.SECONDS).isStale()).isTrue();
+        }
+        assertThat(resilientEmployeeReads.getCircuitState()).isEqualTo(CircuitBreaker.State.OPEN);
+
+        int attempts = dataSource.getConnectionAttempts();
+        ReadResult<List<Employee>> whileOpen = resilientEmployeeReads.getAllEmployees().get(5, TimeUnit.SECONDS);
+        assertThat(whileOpen.isStale()).isTrue();
+        assertThat(whileOpen.getValue()).hasSize(1);
+        assertThat(dataSource.getConnectionAttempts()).isEqualTo(attempts);
+
+        dataSource.heal();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (resilientEmployeeReads.getCircuitState() != CircuitBreaker.State.CLOSED && System.nanoTime() < deadline) {
+            Thread.sleep(50);
+        }
+        assertThat(resilientEmployeeReads.getCircuitState()).isEqualTo(CircuitBreaker.State.CLOSED);
+        assertThat(resilientEmployeeReads.getAllEmployees().get(5, TimeUnit.SECONDS).isStale()).isFalse();
+    }
+
+    @DisplayName("test that a read the view answers doesn't need a database connection")
+    @Test
+    public void givenViewHoldsEmployee_whenDatabaseFails_thenServedFresh() throws Exception {
+        Employee employee = saveEmployee();
+        EmployeeView view = new EmployeeView(employeeRepository, true, "heap", 1 << 20);
+        view.load();
+        ResilientEmployeeReads viewReads = new ResilientEmployeeReads(
+                new EmployeeServiceImpl(employeeRepository, event -> { }, view, tombstoneRepository),
+                databaseExecutor, 300, 100, 5, 3, 2000, new SimpleMeterRegistry());
+        dataSource.fail();
+        int attempts = dataSource.getConnectionAttempts();
+
+        ReadResult<Optional<Employee>> read = viewReads.getEmployeeById(employee.getId()).get(5, TimeUnit.SECONDS);
+
+        assertThat(read.isStale()).isFalse();
+        assertThat(read.getValue()).hasValueSatisfying(found -> assertThat(found.getEmail()).isEqualTo("test@email.com"));
+        assertThat(dataSource.getConnectionAttempts()).isEqualTo(attempts);
+    }
+}
@@ -0,0 +1,105 @@
+package net.javaguides.springboot.search;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.lenient;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import net.javaguides.springboot.event.EmployeeChangedEvent;
+import net.javaguides.springboot.model.Employee;
+import net.javaguides.springboot.service.EmployeeService;
+
+@ExtendWith(MockitoExtension.class)
+public class EmployeeSearchIndexTests {
+
+    @Mock
+    private EmployeeService employeeService;
+
+    private EmployeeSearchIndex searchIndex;
+
+    @BeforeEach
+    public void setup() {
+        List<Employee> employees = List.of(
+                Employee.builder().id(1l).firstName("Matthias").lastName("Holcombe").email("mholcombe@email.com").build(),
+                Employee.builder().id(2l).firstName("Matt").lastName("Smith").email("msmith@email.com").build(),
+                Employee.builder().id(3l).firstName("Bob").lastName("Bobert").email("bob@email.com").build(),
+                Employee.builder().id(4l).firstName("Alice").lastName("Jones").email("alice@email.com").build());
+        given(employeeService.getAllEmployees()).willReturn(employees.subList(0, 3));
+        // result rows are read back by id, in whatever order the service returns them
+        lenient().when(employeeService.getEmployeesById(anyCollection())).thenAnswer(invocation -> {
+            Collection<Long> ids = invocation.getArgument(0);
+            return employees.stream().filter(employee -> ids.contains(employee.getId())).collect(Collectors.toList());
+        });
+        searchIndex = new EmployeeSearchIndex(employeeService, true, 10000);
+        searchIndex.load();
+    }
+
+    private static List<Long> ids(List<Employee> employees) {
+        return employees.stream().map(Employee::getId).collect(Collectors.toList());
+    }
+
+    @DisplayName("test that a disabled index loads nothing and refuses searches")
+    @Test
+    public void givenDisabled_whenSearch_thenRefused() {
+        EmployeeSearchIndex disabled = new EmployeeSearchIndex(employeeService, false, 10000);
+        disabled.load();
+
+        assertThat(disabled.size()).isZero();
+        assertThatThrownBy(() -> disabled.search("matt", 10)).isInstanceOf(IllegalStateException.class);
+    }
+
+    @DisplayName("test that exact terms rank above prefixes")
+    @Test
+    public void givenPrefix_whenSearch_thenExactMatchFirst() {
+        assertThat(ids(searchIndex.search("Matt", 10))).containsExactly(2l, 1l);
+        assertThat(ids(searchIndex.search("Matt", 1))).containsExactly(2l);
+    }
+
+    @DisplayName("test that every query word has to match")
+    @Test
+    public void givenTwoWords_whenSearch_thenIntersect() {
+        assertThat(ids(searchIndex.search("matt hol", 10))).containsExactly(1l);
+        assertThat(ids(searchIndex.search("bob smith", 10))).isEmpty();
+    }
+
+    @DisplayName("test that email parts are searchable")
+    @Test
+    public void givenEmailPrefix_whenSearch_thenMatch() {
+        assertThat(ids(searchIndex.search("msmi", 10))).containsExactly(2l);
+        assertThat(ids(searchIndex.search("bob@email.com", 10))).containsExactly(3l);
+    }
+
+    @DisplayName("test that a typo still finds the employee")
+    @Test
+    public void givenTypo_whenSearch_thenFuzzyMatch() {
+        assertThat(ids(searchIndex.search("holcmbe", 10))).containsExactly(1l);
+        assertThat(ids(searchIndex.search("bbo", 10))).containsExactly(3l);
+    }
+
+    @DisplayName("test that the index follows saves, updates and deletes")
+    @Test
+    public void givenChanges_whenSearch_thenReflectLatestState() {
+        searchIndex.onEmployeeChanged(EmployeeChangedEvent.created(
+                Employee.builder().id(4l).firstName("Alice").lastName("Jones").email("alice@email.com").build()));
+        searchIndex.onEmployeeChanged(EmployeeChangedEvent.updated(
+                Employee.builder().id(3l).firstName("Robert").lastName("Bobert").email("bob@email.com").build()));
+        searchIndex.onEmployeeChanged(EmployeeChangedEvent.deleted(2l));
+
+        assertThat(ids(searchIndex.search("alice", 10))).containsExactly(4l);
+        assertThat(ids(searchIndex.search("robert", 10))).containsExactly(3l);
+        assertThat(ids(searchIndex.search("smith", 10))).isEmpty();
+        assertThat(searchIndex.size()).isEqualTo(3);
+    }
+}
@@ -1,5 +1,6 @@
 package net.javaguides.springboot.service;
 
+import java.lang.reflect.Method;
 import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
@@ -12,6 +13,8 @@ import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.BDDMockito.given;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
@@ -21,11 +24,19 @@ import org.mockito.BDDMockito;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.transaction.annotation.Transactional;
 
+import net.javaguides.springboot.event.EmployeeChangedEvent;
 import net.javaguides.springboot.exception.ResourceNotFoundException;
 import net.javaguides.springboot.model.Employee;
+import net.javaguides.springboot.model.EmployeeDelta;
+import net.javaguides.springboot.model.EmployeeTombstone;
+import net.javaguides.springboot.model.EmployeeUpsertResult;
 import net.javaguides.springboot.repository.EmployeeRepository;
+import net.javaguides.springboot.repository.EmployeeTombstoneRepository;
 import net.javaguides.springboot.service.impl.EmployeeServiceImpl;
+import net.javaguides.springboot.view.EmployeeView;
 
 @ExtendWith(MockitoExtension.class)
 public class EmployeeServiceTests {
@@ -33,6 +44,15 @@ public class EmployeeServiceTests {
     @Mock
     private EmployeeRepository employeeRepository;
 
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    @Mock
+    private EmployeeView employeeView;
+
+    @Mock
+    private EmployeeTombstoneRepository tombstoneRepository;
+
     @InjectMocks
     private EmployeeServiceImpl employeeService;
 
@@ -65,6 +85,7 @@ public class EmployeeServiceTests {
         Employee returnedEmployee = employeeService.saveEmployee(employee);
 
         assertThat(returnedEmployee).isNotNull();
+        verify(eventPublisher, times(1)).publishEvent(any(EmployeeChangedEvent.class));
     }
 
     @DisplayName("test for save employee method with email already exists exception")
@@ -121,6 +142,19 @@ public class EmployeeServiceTests {
         assertThat(returnEmployee).isPresent();
     }
 
+    @DisplayName("test for get employee by id served from the in-memory view")
+    @Test
+    public void givenViewEnabled_whenGetById_thenDontQueryRepository() {
+
+        given(employeeView.isEnabled()).willReturn(true);
+        given(employeeView.findById(employee.getId())).willReturn(Optional.of(employee));
+
+        Optional<Employee> returnEmployee = employeeService.getEmployeeById(employee.getId());
+
+        assertThat(returnEmployee).isPresent();
+        verify(employeeRepository, never()).findById(any(Long.class));
+    }
+
     @DisplayName("test for update employee")
     @Test
     public void givenEmployee_whenUpdate_thenReturnUpdatedEmployee() {
@@ -142,5 +176,82 @@ public class EmployeeServiceTests {
         employeeService.deleteEmployee(employee.getId());
 
         verify(employeeRepository, times(1)).deleteById(employee.getId());
+        verify(tombstoneRepository, times(1)).save(any(EmployeeTombstone.class));
+        verify(eventPublisher, times(1)).publishEvent(any(EmployeeChangedEvent.class));
+    }
+
+    @DisplayName("test for delta sync returning changes and a watermark that trails the read")
+    @Test
+    public void givenChangesAfterWatermark_whenGetChangesSince_thenChangedDeletedAndNewWatermark() {
+        given(employeeRepository.findModifiedSince(0)).willReturn(List.of(employee));
+        given(tombstoneRepository.findEmployeeIdsDeletedAfter(0)).willReturn(List.of(2l));
+        long before = System.currentTimeMillis();
+
+        EmployeeDelta delta = employeeService.getChangesSince(0);
+
+        assertThat(delta.getChanged()).containsExactly(employee);
+        assertThat(delta.getDeleted()).containsExactly(2l);
+        assertThat(delta.getWatermark()).isBetween(before - EmployeeDelta.COMMIT_WINDOW_MILLIS, System.currentTimeMillis());
+        verify(employeeView, never()).findAll();
+    }
+
+    @DisplayName("test for email domain change publishing one update per affected employee")
+    @Test
+    public void givenEmployeesInDomain_whenChangeEmailDomain_thenBulkUpdateAndEvents() {
+
+        Employee employee2 = Employee.builder()
+                .id(2l)
+                .firstName("bob")
+                .lastName("bobert")
+                .email("test2@email.com")
+                .build();
+
+        given(employeeRepository.findByEmailPatternForUpdate("%@email.com")).willReturn(List.of(employee, employee2));
+        given(employeeRepository.countEmailDomainConflicts("%@email.com", 9, "example.org")).willReturn(0l);
+        given(employeeRepository.rewriteEmailDomain(eq("%@email.com"), eq(9), eq("example.org"), anyLong())).willReturn(2);
+
+        int updated = employeeService.changeEmailDomain("email.com", "example.org");
+
+        assertThat(updated).isEqualTo(2);
+        assertThat(employee2.getEmail()).isEqualTo("test2@example.org");
+        verify(eventPublisher, times(2)).publishEvent(any(EmployeeChangedEvent.class));
+    }
+
+    @DisplayName("test for upsert by email publishing created and updated events")
+    @Test
+    public void givenRoster_whenUpsertEmployees_thenPublishEventPerRow() {
+
+        Employee employee2 = Employee.builder()
+                .id(2l)
+                .firstName("bob")
+                .lastName("bobert")
+                .email("test2@email.com")
+                .build();
+
+        given(employeeRepository.upsertByEmail(List.of(employee, employee2)))
+                .willReturn(new EmployeeUpsertResult(List.of(employee2), List.of(employee)));
+
+        EmployeeUpsertResult result = employeeService.upsertEmployees(List.of(employee, employee2));
+
+        assertThat(result.getInserted()).containsExactly(employee2);
+        verify(eventPublisher, times(2)).publishEvent(any(EmployeeChangedEvent.class));
+    }
+
+    @DisplayName("test that every write is bounded by a timeout the delta sync commit window covers")
+    @Test
+    public void givenWriteMethods_whenInspected_thenTransactionTimeoutWithinCommitWindow() throws Exception {
+        List<Method> writes = List.of(
+                EmployeeServiceImpl.class.getMethod("saveEmployee", Employee.class),
+                EmployeeServiceImpl.class.getMethod("updateEmployee", Employee.class),
+                EmployeeServiceImpl.class.getMethod("deleteEmployee", long.class),
+                EmployeeServiceImpl.class.getMethod("upsertEmployees", List.class),
+                EmployeeServiceImpl.class.getMethod("changeEmailDomain", String.class, String.class));
+
+        for (Method write : writes) {
+            Transactional transactional = write.getAnnotation(Transactional.class);
+            assertThat(transactional).as(write.getName()).isNotNull();
+            assertThat(transactional.timeout()).as(write.getName()).isBetween(1, EmployeeDelta.WRITE_TIMEOUT_SECONDS);
+        }
+        assertThat(EmployeeDelta.COMMIT_WINDOW_MILLIS).isGreaterThan(EmployeeDelta.WRITE_TIMEOUT_SECONDS * 1000L);
     }
 }
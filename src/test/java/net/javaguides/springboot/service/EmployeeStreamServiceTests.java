@@ -0,0 +1,66 @@
+package net.javaguides.springboot.service;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+import static org.mockito.BDDMockito.given;
+
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import net.javaguides.springboot.concurrent.DatabaseExecutor;
+import net.javaguides.springboot.model.Employee;
+import net.javaguides.springboot.service.impl.EmployeeStreamServiceImpl;
+
+@ExtendWith(MockitoExtension.class)
+public class EmployeeStreamServiceTests {
+
+    @Mock
+    private EmployeeService employeeService;
+
+    private DatabaseExecutor databaseExecutor;
+
+    private EmployeeStreamService employeeStreamService;
+
+    @BeforeEach
+    public void setup() {
+        databaseExecutor = new DatabaseExecutor(2, 16, new SimpleMeterRegistry());
+        employeeStreamService = new EmployeeStreamServiceImpl(employeeService, databaseExecutor, 2);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        databaseExecutor.shutdown();
+    }
+
+    private static Employee employee(long id) {
+        return Employee.builder()
+                .id(id)
+                .firstName("Matthias")
+                .lastName("Holcombe")
+                .email("test" + id + "@email.com")
+                .build();
+    }
+
+    @DisplayName("test that the collection is streamed in keyset pages until a short page")
+    @Test
+    public void givenThreeEmployees_whenStreamAllEmployees_thenReadTwoPages() {
+        given(employeeService.getEmployeesAfter(0l, 2))
+                .willReturn(List.of(employee(1), employee(2)));
+        given(employeeService.getEmployeesAfter(2l, 2))
+                .willReturn(List.of(employee(3)));
+
+        List<Employee> employees = employeeStreamService.streamAllEmployees().collectList().block();
+
+        assertThat(employees).extracting(Employee::getId).containsExactly(1l, 2l, 3l);
+    }
+}
@@ -0,0 +1,210 @@
+package net.javaguides.springboot.shard;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import javax.sql.DataSource;
+
+import com.zaxxer.hikari.HikariDataSource;
+
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import net.javaguides.springboot.model.Employee;
+import net.javaguides.springboot.model.EmployeeSort;
+import net.javaguides.springboot.resilience.QueryDeadlineDataSource;
+
+public class ShardedEmployeeStoreTests {
+
+    private static final int SHARDS = 3;
+
+    private final List<DataSource> dataSources = new ArrayList<>();
+
+    private ShardedEmployeeStore store;
+
+    @BeforeEach
+    public void setup() {
+        String run = UUID.randomUUID().toString();
+        for (int shard = 0; shard < SHARDS; shard++) {
+            JdbcDataSource dataSource = new JdbcDataSource();
+            dataSource.setURL("jdbc:h2:mem:shard" + shard + "-" + run + ";DB_CLOSE_DELAY=-1");
+            dataSources.add(dataSource);
+        }
+        store = new ShardedEmployeeStore(dataSources);
+        store.migrate();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        store.shutdown();
+    }
+
+    private static Employee employee(String firstName, String email) {
+        return Employee.builder()
+                .firstName(firstName)
+                .lastName("Holcombe")
+                .email(email)
+                .build();
+    }
+
+    @DisplayName("test that inserts spread over the shards and are found by their id")
+    @Test
+    public void givenEmployees_whenInsert_thenRoutedByIdAcrossShards() {
+        List<Employee> created = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            created.add(store.insert(employee("Matthias" + i, "test" + i + "@email.com")));
+        }
+
+        assertThat(created).extracting(employee -> store.shardOf(employee.getId())).containsOnly(0, 1, 2);
+        for (Employee employee : created) {
+            assertThat(store.findById(employee.getId()).get().getEmail()).isEqualTo(employee.getEmail());
+        }
+    }
+
+    @DisplayName("test that scatter-gather reads merge every shard in id order")
+    @Test
+    public void givenEmployeesOnAllShards_whenFindAllAndFindByName_thenMerged() {
+        for (int i = 0; i < 6; i++) {
+            store.insert(employee(i % 2 == 0 ? "Matthias" : "Bob", "test" + i + "@email.com"));
+        }
+
+        List<Employee> all = store.findAll();
+
+        assertThat(all).hasSize(6);
+        assertThat(all).isSortedAccordingTo((a, b) -> Long.compare(a.getId(), b.getId()));
+        assertThat(store.findByName("Matthias", "Holcombe")).hasSize(3);
+    }
+
+    @DisplayName("test that an email is unique across shards")
+    @Test
+    public void givenExistingEmail_whenInsertOnAnotherShard_thenThrowsAndLeavesNoRow() {
+        store.insert(employee("Matthias", "test@email.com"));
+
+        Assertions.assertThrows(DuplicateKeyException.class, () -> {
+            store.insert(employee("Bob", "test@email.com"));
+        });
+
+        assertThat(store.findAll()).hasSize(1);
+        assertThat(store.findByEmail("test@email.com").get().getFirstName()).isEqualTo("Matthias");
+    }
+
+    @DisplayName("test that update moves the email claim and delete releases it")
+    @Test
+    public void givenEmployee_whenEmailUpdatedAndDeleted_thenDirectoryFollows() {
+        Employee created = store.insert(employee("Matthias", "test@email.com"));
+
+        store.update(created.toBuilder().email("test2@email.com").build());
+
+        assertThat(store.findByEmail("test@email.com")).isEmpty();
+        assertThat(store.findByEmail("test2@email.com").get().getId()).isEqualTo(created.getId());
+
+        store.delete(created.getId());
+
+        assertThat(store.findById(created.getId())).isEmpty();
+        store.insert(employee("Bob", "test2@email.com"));
+    }
+
+    @DisplayName("test that a delete whose tombstone fails leaves the row and its email claim in place")
+    @Test
+    public void givenTombstoneFailure_whenDelete_thenRolledBack() {
+        Employee created = store.insert(employee("Matthias", "test@email.com"));
+        new JdbcTemplate(dataSources.get(store.shardOf(created.getId())))
+                .update("insert into employee_tombstones (employee_id, deleted_at) values (?, ?)", created.getId(), 0l);
+
+        Assertions.assertThrows(DuplicateKeyException.class, () -> {
+            store.delete(created.getId());
+        });
+
+        assertThat(store.findById(created.getId())).isPresent();
+        assertThat(store.findByEmail("test@email.com").get().getId()).isEqualTo(created.getId());
+    }
+
+    @DisplayName("test that id-ordered pages are merged across shards and continue from a cursor")
+    @Test
+    public void givenEmployeesOnAllShards_whenFindAfter_thenGlobalIdOrder() {
+        List<Long> ids = new ArrayList<>();
+        for (int i = 0; i < 7; i++) {
+            ids.add(store.insert(employee("Matthias", "test" + i + "@email.com")).getId());
+        }
+        ids.sort(Long::compare);
+
+        List<Employee> first = store.findAfter(0, 4);
+        List<Employee> second = store.findAfter(first.get(3).getId(), 4);
+
+        assertThat(first).extracting(Employee::getId).containsExactlyElementsOf(ids.subList(0, 4));
+        assertThat(second).extracting(Employee::getId).containsExactlyElementsOf(ids.subList(4, 7));
+    }
+
+    @DisplayName("test that sorted pages are merged across shards and continue from a cursor")
+    @Test
+    public void givenEmployeesOnAllShards_whenFindSorted_thenGlobalOrder() {
+        for (int i = 0; i < 7; i++) {
+            store.insert(employee("Matthias", "test" + (7 - i) + "@email.com"));
+        }
+
+        List<Employee> first = store.findSorted(EmployeeSort.EMAIL, null, 4);
+        List<Employee> second = store.findSorted(EmployeeSort.EMAIL, first.get(3), 4);
+
+        assertThat(first).extracting(Employee::getEmail)
+                .containsExactly("test1@email.com", "test2@email.com", "test3@email.com", "test4@email.com");
+        assertThat(second).extracting(Employee::getEmail)
+                .containsExactly("test5@email.com", "test6@email.com", "test7@email.com");
+    }
+
+    @DisplayName("test that an email domain moves on every shard and in the directory")
+    @Test
+    public void givenEmployeesOnAllShards_whenRewriteEmailDomain_thenMovedEverywhere() {
+        for (int i = 0; i < 4; i++) {
+            store.insert(employee("Matthias", "test" + i + "@email.com"));
+        }
+        store.insert(employee("Bob", "bob@other.com"));
+
+        List<Employee> moved = store.rewriteEmailDomain("email.com", "example.org");
+
+        assertThat(moved).hasSize(4);
+        assertThat(store.findByEmail("test0@email.com")).isEmpty();
+        assertThat(store.findByEmail("test3@example.org")).isPresent();
+        assertThat(store.findAll()).extracting(Employee::getEmail).contains("bob@other.com", "test2@example.org");
+    }
+
+    @DisplayName("test that changes and deletes after a watermark are found on every shard")
+    @Test
+    public void givenWritesOnAllShards_whenFindSinceWatermark_thenOnlyLaterChanges() throws Exception {
+        List<Employee> created = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            created.add(store.insert(employee("Matthias", "test" + i + "@email.com")));
+        }
+        Thread.sleep(5);
+        long watermark = System.currentTimeMillis();
+        Thread.sleep(5);
+        store.update(created.get(1).toBuilder().firstName("Bob").build());
+        store.delete(created.get(2).getId());
+
+        assertThat(store.findModifiedSince(0)).hasSize(2);
+        assertThat(store.findModifiedSince(watermark)).extracting(Employee::getId).containsExactly(created.get(1).getId());
+        assertThat(store.findDeletedSince(0)).containsExactly(created.get(2).getId());
+        assertThat(store.findDeletedSince(System.currentTimeMillis() + 1)).isEmpty();
+    }
+
+    @DisplayName("test that shutdown closes the shard pools")
+    @Test
+    public void givenPooledShards_whenShutdown_thenPoolsClosed() {
+        HikariDataSource pool = new HikariDataSource();
+        pool.setJdbcUrl("jdbc:h2:mem:pooled-" + UUID.randomUUID());
+        ShardedEmployeeStore pooled = new ShardedEmployeeStore(List.of(new QueryDeadlineDataSource(pool)));
+        pooled.migrate();
+
+        pooled.shutdown();
+
+        assertThat(pool.isClosed()).isTrue();
+    }
+}
@@ -0,0 +1,81 @@
+package net.javaguides.springboot.stats;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.entry;
+import static org.mockito.BDDMockito.given;
+
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import net.javaguides.springboot.event.EmployeeChangedEvent;
+import net.javaguides.springboot.model.Employee;
+import net.javaguides.springboot.service.EmployeeService;
+
+@ExtendWith(MockitoExtension.class)
+public class EmployeeStatsTests {
+
+    @Mock
+    private EmployeeService employeeService;
+
+    private EmployeeStats employeeStats;
+
+    private Employee employee;
+
+    private Employee employee2;
+
+    @BeforeEach
+    public void setup() {
+        employee = Employee.builder().id(1l).firstName("Matthias").lastName("Holcombe").email("test@email.com").build();
+        employee2 = Employee.builder().id(2l).firstName("Bob").lastName("Bobert").email("bob@other.com").build();
+        given(employeeService.getAllEmployees()).willReturn(List.of(employee, employee2));
+        employeeStats = new EmployeeStats(employeeService);
+        employeeStats.seed();
+    }
+
+    @DisplayName("test that seeding counts every employee")
+    @Test
+    public void givenSeeded_whenSnapshot_thenCountsMatch() {
+        EmployeeStatsSnapshot snapshot = employeeStats.snapshot(10);
+
+        assertThat(snapshot.getTotal()).isEqualTo(2);
+        assertThat(snapshot.getEmailDomains()).containsEntry("email.com", 1l).containsEntry("other.com", 1l);
+    }
+
+    @DisplayName("test that create, update and delete move the counters")
+    @Test
+    public void givenChanges_whenSnapshot_thenCountersFollow() {
+        employeeStats.onEmployeeChanged(EmployeeChangedEvent.created(
+                Employee.builder().id(3l).firstName("Amy").lastName("Holcombe").email("amy@email.com").build()));
+        employeeStats.onEmployeeChanged(EmployeeChangedEvent.updated(employee2.toBuilder().email("bob@email.com").build()));
+        employeeStats.onEmployeeChanged(EmployeeChangedEvent.deleted(1l));
+
+        EmployeeStatsSnapshot snapshot = employeeStats.snapshot(1);
+
+        assertThat(snapshot.getTotal()).isEqualTo(2);
+        assertThat(snapshot.getEmailDomains()).containsExactly(entry("email.com", 2l));
+        assertThat(employeeStats.snapshot(10).getLastNames()).containsEntry("Holcombe", 1l).containsEntry("Bobert", 1l);
+    }
+
+    @DisplayName("test that reconciliation repairs drift but keeps changes made during the read")
+    @Test
+    public void givenDriftAndConcurrentDelete_whenReconcile_thenOnlyDriftCorrected() {
+        Employee missed = Employee.builder().id(4l).firstName("Cal").lastName("Smith").email("cal@email.com").build();
+        given(employeeService.getAllEmployees()).willAnswer(invocation -> {
+            // committed after the read started; the rows returned still include employee 2
+            employeeStats.onEmployeeChanged(EmployeeChangedEvent.deleted(2l));
+            return List.of(employee, employee2, missed);
+        });
+
+        long corrected = employeeStats.reconcile();
+
+        assertThat(corrected).isEqualTo(1);
+        assertThat(employeeStats.snapshot(10).getTotal()).isEqualTo(2);
+        assertThat(employeeStats.snapshot(10).getLastNames()).containsEntry("Smith", 1l).doesNotContainKey("Bobert");
+    }
+}
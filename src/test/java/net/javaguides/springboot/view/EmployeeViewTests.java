@@ -0,0 +1,144 @@
+package net.javaguides.springboot.view;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyIterable;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import net.javaguides.springboot.event.EmployeeChangedEvent;
+import net.javaguides.springboot.model.Employee;
+import net.javaguides.springboot.repository.EmployeeRepository;
+
+@ExtendWith(MockitoExtension.class)
+public class EmployeeViewTests {
+
+    @Mock
+    private EmployeeRepository employeeRepository;
+
+    private EmployeeView employeeView;
+
+    private Employee employee;
+
+    @BeforeEach
+    public void setup() {
+        this.employee = Employee.builder()
+                .id(1l)
+                .firstName("Matthias")
+                .lastName("Holcombe")
+                .email("test@email.com")
+                .build();
+
+        given(employeeRepository.findAll()).willReturn(List.of(employee));
+        employeeView = new EmployeeView(employeeRepository, true, "heap", 1024);
+        employeeView.load();
+    }
+
+    @DisplayName("test for reads served from the loaded view")
+    @Test
+    public void givenLoadedView_whenFind_thenReturnEmployeeFromEveryIndex() {
+        assertThat(employeeView.findById(1l)).isPresent();
+        assertThat(employeeView.findByEmail("test@email.com")).isPresent();
+        assertThat(employeeView.findByName("Matthias", "Holcombe")).hasSize(1);
+        assertThat(employeeView.findAll()).hasSize(1);
+    }
+
+    @DisplayName("test for reads served from an off-heap view")
+    @Test
+    public void givenOffHeapView_whenFind_thenReturnEmployeeFromEveryIndex() {
+        EmployeeView offHeapView = new EmployeeView(employeeRepository, true, "off-heap", 1024);
+        offHeapView.load();
+
+        assertThat(offHeapView.findById(1l).get().getEmail()).isEqualTo("test@email.com");
+        assertThat(offHeapView.findByEmail("test@email.com")).isPresent();
+        assertThat(offHeapView.findByName("Matthias", "Holcombe")).hasSize(1);
+    }
+
+    @DisplayName("test that callers cannot modify the view through returned employees")
+    @Test
+    public void givenLoadedView_whenReturnedEmployeeModified_thenViewUnchanged() {
+        employeeView.findById(1l).get().setEmail("changed@email.com");
+
+        assertThat(employeeView.findById(1l).get().getEmail()).isEqualTo("test@email.com");
+    }
+
+    @DisplayName("test for updating the indexes after an update event")
+    @Test
+    public void givenUpdateEvent_whenApplied_thenIndexesFollow() {
+        Employee updated = employee.toBuilder().email("test2@email.com").lastName("Bobert").build();
+
+        employeeView.onEmployeeChanged(EmployeeChangedEvent.updated(updated));
+
+        assertThat(employeeView.findByEmail("test@email.com")).isEmpty();
+        assertThat(employeeView.findByEmail("test2@email.com")).isPresent();
+        assertThat(employeeView.findByName("Matthias", "Holcombe")).isEmpty();
+        assertThat(employeeView.findByName("Matthias", "Bobert")).hasSize(1);
+    }
+
+    @DisplayName("test for removing an employee after a delete event")
+    @Test
+    public void givenDeleteEvent_whenApplied_thenEmployeeRemoved() {
+        employeeView.onEmployeeChanged(EmployeeChangedEvent.deleted(1l));
+
+        assertThat(employeeView.findById(1l)).isEmpty();
+        assertThat(employeeView.findByEmail("test@email.com")).isEmpty();
+        assertThat(employeeView.size()).isEqualTo(0);
+    }
+
+    @DisplayName("test that a remote invalidation evicts at once and the next read reloads from the database")
+    @Test
+    public void givenRemoteInvalidation_whenRead_thenReloadedLazily() {
+        Employee updated = employee.toBuilder().email("test2@email.com").build();
+        given(employeeRepository.findAllById(anyIterable())).willReturn(List.of(updated));
+
+        employeeView.onEmployeeChanged(EmployeeChangedEvent.invalidated(EmployeeChangedEvent.Type.UPDATED, 1l));
+
+        assertThat(employeeView.size()).isEqualTo(0);
+        assertThat(employeeView.findById(1l).get().getEmail()).isEqualTo("test2@email.com");
+        assertThat(employeeView.findByEmail("test@email.com")).isEmpty();
+    }
+
+    @DisplayName("test that a failed reload serves the rows the view holds and retries later")
+    @Test
+    public void givenDatabaseDown_whenReadAfterInvalidation_thenServedFromViewAndRetried() throws Exception {
+        Employee other = Employee.builder().id(2l).firstName("bob").lastName("bobert").email("bob@email.com").build();
+        employeeView.onEmployeeChanged(EmployeeChangedEvent.created(other));
+        given(employeeRepository.findAllById(anyIterable()))
+                .willThrow(new IllegalStateException("database down"))
+                .willReturn(List.of(employee));
+
+        employeeView.onEmployeeChanged(EmployeeChangedEvent.invalidated(EmployeeChangedEvent.Type.UPDATED, 1l));
+
+        assertThat(employeeView.findAll()).extracting(Employee::getId).containsExactly(2l);
+        assertThat(employeeView.findById(1l)).isEmpty();
+        verify(employeeRepository, times(1)).findAllById(anyIterable());
+
+        Thread.sleep(EmployeeView.RELOAD_RETRY_MILLIS + 50);
+
+        assertThat(employeeView.findAll()).extracting(Employee::getId).containsExactly(1l, 2l);
+    }
+
+    @DisplayName("test for consistency check against the database")
+    @Test
+    public void givenStaleView_whenCheckConsistency_thenReportDifferences() {
+        Employee changed = employee.toBuilder().email("test2@email.com").build();
+        Employee added = Employee.builder().id(2l).firstName("bob").lastName("bobert").email("bob@email.com").build();
+        given(employeeRepository.findAll()).willReturn(List.of(changed, added));
+
+        ConsistencyReport report = employeeView.checkConsistency();
+
+        assertThat(report.isConsistent()).isFalse();
+        assertThat(report.getStale()).containsExactly(1l);
+        assertThat(report.getMissing()).containsExactly(2l);
+        assertThat(report.getUnexpected()).isEmpty();
+    }
+}
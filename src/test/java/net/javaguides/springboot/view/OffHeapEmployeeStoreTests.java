@@ -0,0 +1,111 @@
+package net.javaguides.springboot.view;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import net.javaguides.springboot.model.Employee;
+
+public class OffHeapEmployeeStoreTests {
+
+    private OffHeapEmployeeStore store;
+
+    private Employee employee;
+
+    @BeforeEach
+    public void setup() {
+        store = new OffHeapEmployeeStore(1024);
+        employee = Employee.builder()
+                .id(1l)
+                .firstName("Matthias")
+                .lastName("Holcombé")
+                .email("test@email.com")
+                .build();
+    }
+
+    @DisplayName("test for storing and decoding an employee")
+    @Test
+    public void givenEmployee_whenPutAndGet_thenReturnEqualCopy() {
+        store.put(employee);
+
+        Employee decoded = store.get(1l).get();
+
+        assertThat(decoded).isNotSameAs(employee);
+        assertThat(decoded.getId()).isEqualTo(1l);
+        assertThat(decoded.getFirstName()).isEqualTo("Matthias");
+        assertThat(decoded.getLastName()).isEqualTo("Holcombé");
+        assertThat(decoded.getEmail()).isEqualTo("test@email.com");
+    }
+
+    @DisplayName("test for null fields")
+    @Test
+    public void givenEmployeeWithNullField_whenPutAndGet_thenNullPreserved() {
+        store.put(employee.toBuilder().firstName(null).build());
+
+        assertThat(store.get(1l).get().getFirstName()).isNull();
+    }
+
+    @DisplayName("test for replacing and removing employees")
+    @Test
+    public void givenStoredEmployee_whenReplacedAndRemoved_thenLatestStateVisible() {
+        store.put(employee);
+        store.put(employee.toBuilder().email("test2@email.com").build());
+
+        assertThat(store.size()).isEqualTo(1);
+        assertThat(store.get(1l).get().getEmail()).isEqualTo("test2@email.com");
+
+        store.remove(1l);
+
+        assertThat(store.size()).isEqualTo(0);
+        assertThat(store.get(1l)).isEmpty();
+    }
+
+    @DisplayName("test that dead records are compacted away")
+    @Test
+    public void givenManyUpdates_whenDeadRecordsAccumulate_thenChunksAreCompacted() {
+        for (int round = 0; round < 200; round++) {
+            for (long id = 1; id <= 10; id++) {
+                store.put(employee.toBuilder().id(id).email("test" + round + "@email.com").build());
+            }
+        }
+
+        List<Employee> employees = new ArrayList<>();
+        store.forEach(employees::add);
+
+        assertThat(employees).hasSize(10);
+        assertThat(employees).allMatch(stored -> stored.getEmail().equals("test199@email.com"));
+        assertThat(store.getAllocatedBytes()).isLessThan(8 * 1024);
+    }
+
+    @DisplayName("test that compacting records of varying length in place keeps every live row intact")
+    @Test
+    public void givenUpdatesAndRemovesAcrossChunks_whenCompacted_thenLiveRowsUnchanged() {
+        Map<Long, String> expected = new HashMap<>();
+        for (int round = 0; round < 100; round++) {
+            for (long id = 1; id <= 40; id++) {
+                if ((id + round) % 7 == 0) {
+                    store.remove(id);
+                    expected.remove(id);
+                } else {
+                    String email = "x".repeat((int) ((id * 31 + round) % 60)) + round + "@email.com";
+                    store.put(employee.toBuilder().id(id).email(email).build());
+                    expected.put(id, email);
+                }
+            }
+        }
+
+        Map<Long, String> stored = new HashMap<>();
+        store.forEach(row -> stored.put(row.getId(), row.getEmail()));
+
+        assertThat(stored).isEqualTo(expected);
+        assertThat(store.get(1l).get().getLastName()).isEqualTo("Holcombé");
+        assertThat(store.getAllocatedBytes()).isLessThanOrEqualTo(4 * store.getLiveBytes() + 2 * 1024);
+    }
+}